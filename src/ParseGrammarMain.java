@@ -1,40 +1,269 @@
-import immutable.Grammar;
-import immutable.Report;
-import utilities.FileUtilities;
-import utilities.LogUtilities;
-import generators.GrammarGenerator;
-import generators.ReportGenerator;
-
-/**
- * Just contains the Main method and console output constants and methods.
- * 
- * @author Trironk Kiatkungwanglai
- */
-public class ParseGrammarMain {
-	public static void main(String[] args) throws Exception {
-		
-		String tokenSpecFile = args[0];
-		String grammarSpecFile = args[1];
-		String inputFile = args[2];
-
-		if (args.length == 4 && args[3].equals("-v")) {
-			LogUtilities.activate();
-		}
-		
-		Grammar generatedGrammar = GrammarGenerator.generate(
-				FileUtilities.getFileContents(grammarSpecFile),
-				FileUtilities.getFileContents(tokenSpecFile));
-
-//		Grammar generatedGrammar = GrammarGenerator.generate(
-//				grammar,
-//				FileUtilities.getFileContents(grammarTokenSpecFile));
-		
-		LogUtilities.logln(generatedGrammar);
-
-		Report inputFileReport = ReportGenerator.generate(
-				generatedGrammar,
-				FileUtilities.getFileContents(inputFile));
-		
-		System.out.println(inputFileReport);
-	}
-}
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import immutable.Edit;
+import immutable.Grammar;
+import immutable.GrammarAnalysis;
+import immutable.ParseForest;
+import immutable.ParseTree;
+import immutable.Report;
+import immutable.Rule;
+import immutable.Token;
+import immutable.TokenBuffer;
+import immutable.TokenBufferDiff;
+import utilities.ChannelCursor;
+import utilities.ErrorUtilities;
+import utilities.FileUtilities;
+import utilities.LogUtilities;
+import utilities.ParserException;
+import generators.EarleyReportGenerator;
+import generators.GrammarGenerator;
+import generators.PackratReportGenerator;
+import generators.ParseListener;
+import generators.ReportGenerator;
+import generators.TokenBufferGenerator;
+
+/**
+ * Just contains the Main method and console output constants and methods.
+ * 
+ * The input is parsed by the predictive descent, which lexes it as it goes,
+ * unless "-parser" names another way of parsing it, all of which print the
+ * same Report for the same input:
+ * 	buffer:		the predictive descent over the tokens lexed beforehand
+ * 	packrat:	PackratReportGenerator, with "-memo" outcomes memoized
+ * 	earley:		EarleyReportGenerator, followed by the size of the
+ * 				ParseForest if "-forest" is given
+ * 	tree:		the ParseTree of the tokens, printed as its tokens unless
+ * 				"-tree" is given
+ * 	listener:	the predictive descent, passing the tokens to a listener
+ * 	channel:	the same, reading the input "-window" bytes at a time
+ * 	auto:		the descent, packrat, or earley parser, whichever the
+ * 				GrammarAnalysis picks as the fastest that can parse with
+ * 				the grammar
+ *
+ * "-analyze" prints the GrammarAnalysis of the grammar instead of parsing
+ * the input.
+ * "-map" maps the input into memory whatever its size. "-recover" reports
+ * every error of the buffer and tree parsers rather than stopping at the
+ * first. "-edit OFFSET LENGTH TEXT" parses a tree of the input, then
+ * deletes LENGTH characters at OFFSET, inserts TEXT, and parses the tree
+ * again incrementally.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class ParseGrammarMain {
+	public static void main(String[] args) throws Exception {
+		try {
+			run(args);
+		} catch (ParserException exception) {
+			ErrorUtilities.exit(exception);
+		}
+	}
+	
+	private static void run(String[] args) {
+		
+		String tokenSpecFile = args[0];
+		String grammarSpecFile = args[1];
+		String inputFile = args[2];
+		String parser = "descent";
+		int memoCapacity = PackratReportGenerator.DEFAULT_CAPACITY;
+		int windowCapacity = ChannelCursor.DEFAULT_CAPACITY;
+		boolean map = false;
+		boolean forest = false;
+		boolean tree = false;
+		boolean analyze = false;
+		Edit edit = null;
+		List<ParserException> errors = null;
+
+		// Read the options
+		for (int i = 3; i < args.length; i++) {
+			if (args[i].equals("-v")) {
+				LogUtilities.activate();
+			} else if (args[i].equals("-parser") && i + 1 < args.length) {
+				parser = args[++i];
+			} else if (args[i].equals("-memo") && i + 1 < args.length) {
+				memoCapacity = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-window") && i + 1 < args.length) {
+				windowCapacity = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-map")) {
+				map = true;
+			} else if (args[i].equals("-forest")) {
+				forest = true;
+			} else if (args[i].equals("-tree")) {
+				tree = true;
+			} else if (args[i].equals("-analyze")) {
+				analyze = true;
+			} else if (args[i].equals("-recover")) {
+				errors = new ArrayList<ParserException>();
+			} else if (args[i].equals("-edit") && i + 3 < args.length) {
+				edit = new Edit(Integer.parseInt(args[i + 1]),
+						Integer.parseInt(args[i + 2]), args[i + 3]);
+				parser = "tree";
+				i += 3;
+			} else {
+				ErrorUtilities.throwError("Unknown option: " + args[i]);
+			}
+		}
+		
+		Grammar generatedGrammar = GrammarGenerator.generate(
+				FileUtilities.getFileContents(grammarSpecFile),
+				FileUtilities.getFileContents(tokenSpecFile));
+
+//		Grammar generatedGrammar = GrammarGenerator.generate(
+//				grammar,
+//				FileUtilities.getFileContents(grammarTokenSpecFile));
+		
+		LogUtilities.logln(generatedGrammar);
+
+		GrammarAnalysis analysis = null;
+		if (analyze || parser.equals("auto")) {
+			analysis = GrammarGenerator.analyze(generatedGrammar);
+		}
+		if (analyze) {
+			System.out.println(analysis);
+			return;
+		}
+		if (parser.equals("auto")) {
+			parser = analysis.engine == GrammarAnalysis.Engine.LL1 ?
+					"descent" : analysis.engine.name().toLowerCase();
+		}
+
+		CharSequence contents = map ?
+				FileUtilities.mapFileContents(inputFile) :
+				FileUtilities.getInputContents(inputFile);
+
+		Report inputFileReport;
+		if (parser.equals("descent")) {
+			inputFileReport = ReportGenerator.generate(
+					generatedGrammar,
+					contents);
+		} else if (parser.equals("listener")) {
+			inputFileReport = listen(generatedGrammar, contents, null, 0);
+		} else if (parser.equals("channel")) {
+			inputFileReport = listen(generatedGrammar, null,
+					FileUtilities.getFileChannel(inputFile), windowCapacity);
+		} else {
+			TokenBuffer tokens = TokenBufferGenerator.generate(
+					generatedGrammar.tokenTypes, contents, errors);
+			if (parser.equals("buffer")) {
+				inputFileReport = ReportGenerator.generate(
+						generatedGrammar, tokens, errors);
+			} else if (parser.equals("packrat")) {
+				inputFileReport = PackratReportGenerator.generate(
+						generatedGrammar, tokens, memoCapacity);
+			} else if (parser.equals("earley")) {
+				inputFileReport = EarleyReportGenerator.generate(
+						generatedGrammar, tokens);
+				if (forest) {
+					ParseForest parseForest =
+							EarleyReportGenerator.generateForest(
+									generatedGrammar, tokens);
+					System.out.println(inputFileReport);
+					System.out.println("Forest: " + parseForest.nodeCount +
+							" node(s), " + (parseForest.ambiguous ?
+							"ambiguous" : "unambiguous"));
+					return;
+				}
+			} else if (parser.equals("tree")) {
+				ParseTree parseTree = ReportGenerator.generateTree(
+						generatedGrammar, tokens, errors);
+				if (edit != null) {
+					TokenBufferDiff diff = TokenBufferGenerator.relex(
+							generatedGrammar.tokenTypes, tokens, edit);
+					parseTree = ReportGenerator.generateTree(parseTree,
+							diff);
+				}
+				if (tree) {
+					System.out.print(parseTree);
+					printErrors(errors);
+					return;
+				}
+				inputFileReport = getReport(parseTree);
+			} else {
+				ErrorUtilities.throwError("Unknown parser: " + parser);
+				return;
+			}
+		}
+
+		System.out.println(inputFileReport);
+		printErrors(errors);
+	}
+
+	/**
+	 * Parses the given contents, or the given channel the given number of
+	 * bytes at a time, with a ParseListener, and returns a Report of the
+	 * tokens that it was passed. The listener checks that every Rule it
+	 * enters is exited in order, and prints the first error without
+	 * stopping the program.
+	 */
+	private static Report listen(Grammar grammar, CharSequence contents,
+			ReadableByteChannel channel, int windowCapacity) {
+		final List<Token> tokens = new ArrayList<Token>();
+		final List<Rule> rules = new ArrayList<Rule>();
+		ParseListener listener = new ParseListener() {
+			public void enterRule(Rule rule) {
+				rules.add(rule);
+			}
+
+			public void token(Token token) {
+				tokens.add(token);
+			}
+
+			public void exitRule(Rule rule) {
+				if (rules.isEmpty() ||
+						rules.remove(rules.size() - 1) != rule) {
+					ErrorUtilities.throwError("Exited " + rule.name +
+							" without entering it.");
+				}
+			}
+
+			public void error(String message) {
+				System.out.println("\nERROR: " + message + "\n");
+			}
+		};
+		if (channel == null) {
+			ReportGenerator.generate(grammar, contents, listener);
+		} else {
+			ReportGenerator.generate(grammar, channel,
+					Charset.defaultCharset(), windowCapacity, listener);
+		}
+		return new Report(grammar, tokens);
+	}
+
+	/**
+	 * Returns a Report of the tokens of the given ParseTree, in the order in
+	 * which they were parsed.
+	 */
+	private static Report getReport(ParseTree parseTree) {
+		List<Token> tokens = new ArrayList<Token>();
+		for (int node = 0; node < parseTree.size; node++) {
+			if (parseTree.isRule(node)) {
+				continue;
+			}
+			int start = parseTree.getTokenStart(node);
+			if (start == parseTree.getTokenEnd(node)) {
+				tokens.add(new Token(parseTree.getTokenType(node), ""));
+			} else {
+				tokens.add(parseTree.tokens.getToken(start));
+			}
+		}
+		return new Report(parseTree.grammar, tokens);
+	}
+
+	/**
+	 * Prints the errors that were recovered from, if there were any, and
+	 * exits with an error code.
+	 */
+	private static void printErrors(List<ParserException> errors) {
+		if (errors == null || errors.isEmpty()) {
+			return;
+		}
+		System.out.println(errors.size() + " error(s)");
+		for (ParserException error : errors) {
+			System.out.println("\nERROR: " + error.getMessage() + "\n");
+		}
+		System.exit(1);
+	}
+}
@@ -1,51 +1,214 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
 import immutable.Grammar;
 import immutable.Language;
+import immutable.LazyTransitionTable;
 import immutable.Report;
+import immutable.Token;
+import immutable.TokenBuffer;
+import utilities.Cursor;
+import utilities.ErrorUtilities;
 import utilities.FileUtilities;
 import utilities.LogUtilities;
+import utilities.ParserException;
 import generators.GrammarGenerator;
 import generators.LanguageGenerator;
 import generators.ReportGenerator;
+import generators.TokenBufferGenerator;
+import generators.TokenStream;
 import grammar.defaults.RegExGrammar;
+import language.MatchingMode;
 
 /**
  * Just contains the Main method and console output constants and methods.
  * 
+ * Given more than one input file, every file is parsed in the same process,
+ * recovering from errors, and the errors of each file are printed instead of
+ * its report.
+ * 
+ * The token types are matched as DFAs unless "-mode" names another
+ * MatchingMode, either for all of them (e.g. "-mode NFA") or for a single
+ * one (e.g. "-mode $ID=LAZY_DFA"). The option can be given more than once.
+ * "-cache" sets the number of DFA States that each LAZY_DFA token type caches.
+ * "-bytes" lexes the UTF-8 bytes of every input file without decoding them
+ * first, which only DFA token types support. "-stream" lexes every input file
+ * one token at a time with a TokenStream instead, and prints each token as
+ * soon as it is lexed, in the layout of a Report. "-limit" stops the stream
+ * after the given number of tokens, without lexing the rest of the file.
+ * 
  * @author Trironk Kiatkungwanglai
  */
 public class ParseLanguageMain {
-	
+
 	public static void main(String[] args) throws Exception {
+		try {
+			run(args);
+		} catch (ParserException exception) {
+			ErrorUtilities.exit(exception);
+		}
+	}
+
+	private static void run(String[] args) {
 		String langSpecFile = args[0];
-		String inputFile = args[1];
-		
-		if (args.length == 3 && args[2].equals("-v")) {
-			LogUtilities.activate();
-		}
-		
-        // Get the default regular expression grammar
-        Grammar regExGrammar = RegExGrammar.instance;
-        
-        // Generate language specification report
-        Report langSpecReport = ReportGenerator.generate(
-                        regExGrammar,
-                        FileUtilities.getFileContents(langSpecFile));
-
-        LogUtilities.logln(langSpecReport);
-
-        // Generate NFA state machines
-        Language language = LanguageGenerator.generate(langSpecReport);
-        LogUtilities.logln(language);
-
-        // Generate the Grammar from that Language
-        Grammar grammar = GrammarGenerator.generate(language);
-        
-        // Generate token report
-        Report report = ReportGenerator.generate(
-                        grammar,
-                        FileUtilities.getFileContents(inputFile));
-        
-        // Print the report
-        System.out.println(report);
+		List<String> inputFiles = new ArrayList<String>();
+		MatchingMode mode = MatchingMode.DFA;
+		Map<String, MatchingMode> modes = new HashMap<String, MatchingMode>();
+		int cacheCapacity = LazyTransitionTable.DEFAULT_CAPACITY;
+		boolean bytes = false;
+		boolean stream = false;
+		long limit = Long.MAX_VALUE;
+
+		// Separate the options from the input files
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-v")) {
+				LogUtilities.activate();
+			} else if (args[i].equals("-mode") && i + 1 < args.length) {
+				// Either "-mode NFA" for every token type, or
+				// "-mode $NAME=NFA" for a single one
+				String[] option = args[++i].split("=", 2);
+				if (option.length == 1) {
+					mode = MatchingMode.valueOf(option[0]);
+				} else {
+					modes.put(option[0], MatchingMode.valueOf(option[1]));
+				}
+			} else if (args[i].equals("-cache") && i + 1 < args.length) {
+				cacheCapacity = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-bytes")) {
+				bytes = true;
+			} else if (args[i].equals("-stream")) {
+				stream = true;
+			} else if (args[i].equals("-limit") && i + 1 < args.length) {
+				limit = Long.parseLong(args[++i]);
+			} else {
+				inputFiles.add(args[i]);
+			}
+		}
+
+		if (bytes && stream) {
+			ErrorUtilities.throwError(
+					"A TokenStream cannot lex bytes without decoding them.");
+		}
+		if (limit < Long.MAX_VALUE && stream == false) {
+			ErrorUtilities.throwError(
+					"Only a TokenStream can stop after a number of tokens.");
+		}
+
+		// Get the default regular expression grammar
+		Grammar regExGrammar = RegExGrammar.instance;
+
+		// Generate language specification report
+		Report langSpecReport = ReportGenerator.generate(
+						regExGrammar,
+						FileUtilities.getFileContents(langSpecFile));
+
+		LogUtilities.logln(langSpecReport);
+
+		// Generate NFA state machines
+		Language language = LanguageGenerator.generate(langSpecReport, mode,
+				modes, cacheCapacity);
+		LogUtilities.logln(language);
+
+		// Generate the Grammar from that Language
+		Grammar grammar = GrammarGenerator.generate(language);
+
+		if (inputFiles.size() == 1 && stream) {
+			// Lex the input one token at a time, printing each one right away
+			print(stream(grammar, inputFiles.get(0), null).limit(limit),
+					new File(inputFiles.get(0)).length());
+			return;
+		} else if (inputFiles.size() == 1) {
+			// Lex the input once, then parse the resulting tokens
+			TokenBuffer tokens =
+					lex(grammar, inputFiles.get(0), bytes, null);
+			Report report = ReportGenerator.generate(grammar, tokens);
+
+			// Print the report
+			System.out.println(report);
+			return;
+		}
+
+		// Parse every input, collecting the errors of each one
+		boolean failed = false;
+		for (String inputFile : inputFiles) {
+			List<ParserException> errors = new ArrayList<ParserException>();
+			try {
+				if (stream) {
+					Iterator<Token> tokens =
+							stream(grammar, inputFile, errors).limit(limit)
+							.iterator();
+					while (tokens.hasNext()) {
+						tokens.next();
+					}
+				} else {
+					TokenBuffer tokens =
+							lex(grammar, inputFile, bytes, errors);
+					ReportGenerator.generate(grammar, tokens, errors);
+				}
+			} catch (ParserException exception) {
+				errors.add(exception);
+			}
+
+			System.out.println(inputFile + ": " + errors.size() +
+					" error(s)");
+			for (ParserException error : errors) {
+				System.out.println("\nERROR: " + error.getMessage() + "\n");
+			}
+			failed |= errors.isEmpty() == false;
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Lexes the given input file into the token types of the grammar, either
+	 * from its characters or straight from its UTF-8 bytes, recovering from
+	 * errors unless the list of errors is null.
+	 */
+	private static TokenBuffer lex(Grammar grammar, String inputFile,
+			boolean bytes, List<ParserException> errors) {
+		if (bytes) {
+			return TokenBufferGenerator.generate(grammar.tokenTypes,
+					FileUtilities.mapFile(inputFile), errors);
+		}
+		return TokenBufferGenerator.generate(grammar.tokenTypes,
+				FileUtilities.getInputContents(inputFile), errors);
+	}
+
+	/**
+	 * Returns a Stream that lexes the given input file into the token types
+	 * of the grammar one token at a time, as they are pulled from it,
+	 * recovering from errors unless the list of errors is null.
+	 */
+	private static Stream<Token> stream(Grammar grammar, String inputFile,
+			List<ParserException> errors) {
+		return new TokenStream(grammar.tokenTypes,
+				new Cursor(FileUtilities.getInputContents(inputFile)), errors)
+				.stream();
+	}
+
+	/**
+	 * Prints every token of the stream as soon as it is pulled, in the same
+	 * layout as a Report. Since the number of tokens is not known until the
+	 * stream ends, the index column is as wide as that of a Report of one
+	 * token for every byte of the input file, plus the final new line, which
+	 * is as many tokens as the file can hold.
+	 */
+	private static void print(Stream<Token> stream, long inputLength) {
+		int indexWidth = Report.getIndexWidth(inputLength + 1);
+		Iterator<Token> tokens = stream.iterator();
+		int count = 1;
+		while (tokens.hasNext()) {
+			System.out.println(Report.getLine(count, tokens.next(),
+					indexWidth));
+			count++;
+		}
+		System.out.println();
 	}
 }
@@ -0,0 +1,559 @@
+package generators;
+
+import immutable.Grammar;
+import immutable.ParseForest;
+import immutable.ParseForest.Alternative;
+import immutable.ParseForest.Node;
+import immutable.Report;
+import immutable.Rule;
+import immutable.Token;
+import immutable.TokenBuffer;
+import immutable.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import utilities.ErrorUtilities;
+import utilities.StringUtilities;
+
+/**
+ * This class handles the generation of a Report from a TokenBuffer with any
+ * context free Grammar, including ambiguous and left recursive ones, using
+ * an Earley parser. Each set of Earley items is stored as pairs of integers,
+ * so on mostly deterministic grammars the sets stay small and the parse time
+ * stays nearly linear. Every parse is kept in a ParseForest.
+ *
+ * Note: As when descending predictively, every Rule matches nothing at the
+ * end of the tokens, and a TokenType that matches nothing does not produce a
+ * Token in the Report.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class EarleyReportGenerator {
+
+	/**
+	 * This value is passed when adding an Earley item that does not follow
+	 * from an item before it, such as a prediction.
+	 */
+	private static final int NO_START = -1;
+
+	/**
+	 * Generates a Report of the given tokens. Unlike ReportGenerator, an
+	 * ambiguous Grammar is not an error.
+	 */
+	public static Report generate(Grammar grammar, TokenBuffer tokens) {
+		Chart chart = new Chart(grammar, tokens);
+		chart.parse();
+
+		List<Token> result = new ArrayList<Token>();
+		for (int i = 0; i < tokens.size; i++) {
+			result.add(tokens.getToken(i));
+		}
+		return new Report(grammar, result);
+	}
+
+	/**
+	 * Generates the ParseForest of every parse of the given tokens.
+	 */
+	public static ParseForest generateForest(Grammar grammar,
+			TokenBuffer tokens) {
+		Chart chart = new Chart(grammar, tokens);
+		chart.parse();
+		return chart.getForest();
+	}
+
+	/**
+	 * This class holds the Earley sets of one parse. Every chain of the
+	 * Grammar is numbered as a production, and every position of a dot
+	 * within a production is numbered as a dotted item, so an Earley item is
+	 * just a dotted item and the index of the token where it started.
+	 */
+	private static class Chart {
+		private final Grammar grammar;
+		private final TokenBuffer tokens;
+
+		/**
+		 * The Rule and chain index of each production.
+		 */
+		private final Rule[] productionRules;
+		private final int[] productionChains;
+
+		/**
+		 * The dotted item at the start of each production.
+		 */
+		private final int[] productionStarts;
+
+		/**
+		 * The productions of each Rule, by the index of the Rule.
+		 */
+		private final int[][] ruleProductions;
+
+		/**
+		 * The production of each dotted item, and the Rule or TokenType
+		 * after its dot, or null if the dot is at the end.
+		 */
+		private final int[] itemProductions;
+		private final Object[] nextSymbols;
+
+		/**
+		 * The Earley set before each token, and one after the last token.
+		 */
+		private final ItemSet[] sets;
+
+		/**
+		 * The Rules completed in each Earley set. Each entry is a production
+		 * and the index of the token where it started, or the production
+		 * count plus the index of a Rule that matched nothing at the end of
+		 * the tokens.
+		 */
+		private final ItemSet[] completed;
+
+		private Chart(Grammar grammar, TokenBuffer tokens) {
+			this.grammar = grammar;
+			this.tokens = tokens;
+
+			// Number the rules by their index, and their chains in order
+			Rule[] rules = new Rule[grammar.rules.size()];
+			for (Rule rule : grammar.rules) {
+				rules[rule.index] = rule;
+			}
+			List<Rule> productionRules = new ArrayList<Rule>();
+			List<Integer> productionChains = new ArrayList<Integer>();
+			List<Integer> productionStarts = new ArrayList<Integer>();
+			List<Integer> itemProductions = new ArrayList<Integer>();
+			List<Object> nextSymbols = new ArrayList<Object>();
+			int[][] ruleProductions = new int[rules.length][];
+			for (Rule rule : rules) {
+				ruleProductions[rule.index] =
+						new int[rule.possibleChildren.size()];
+				for (int i = 0; i < rule.possibleChildren.size(); i++) {
+					int production = productionRules.size();
+					ruleProductions[rule.index][i] = production;
+					productionRules.add(rule);
+					productionChains.add(i);
+					productionStarts.add(nextSymbols.size());
+
+					// Number a dotted item before every item and at the end
+					for (Object item : rule.possibleChildren.get(i)) {
+						itemProductions.add(production);
+						nextSymbols.add(item);
+					}
+					itemProductions.add(production);
+					nextSymbols.add(null);
+				}
+			}
+
+			// Assign final fields
+			this.productionRules =
+					productionRules.toArray(new Rule[productionRules.size()]);
+			this.productionChains = toArray(productionChains);
+			this.productionStarts = toArray(productionStarts);
+			this.ruleProductions = ruleProductions;
+			this.itemProductions = toArray(itemProductions);
+			this.nextSymbols = nextSymbols.toArray();
+			this.sets = new ItemSet[tokens.size + 1];
+			this.completed = new ItemSet[tokens.size + 1];
+		}
+
+		/**
+		 * Fills in the Earley sets, and throws an error if the tokens do not
+		 * match the root Rule.
+		 */
+		private void parse() {
+			int last = tokens.size;
+			sets[0] = new ItemSet();
+			for (int production : ruleProductions[grammar.root.index]) {
+				sets[0].add(productionStarts[production], 0, NO_START);
+			}
+			if (last == 0) {
+				getCompleted(0).add(
+						productionRules.length + grammar.root.index, 0,
+						NO_START);
+			}
+
+			for (int k = 0; k <= last; k++) {
+				ItemSet set = sets[k];
+
+				// If no item survived the last token, it was a syntax error
+				if (set == null) {
+					ErrorUtilities.throwSyntaxError(
+							getSyntaxErrorMessage(k - 1), tokens.getStart(k - 1));
+				}
+
+				// Process every item, including those added along the way
+				for (int i = 0; i < set.size; i++) {
+					int item = set.getItem(i);
+					int origin = set.getOrigin(i);
+					Object next = nextSymbols[item];
+
+					// Complete the Rule, advancing every item that was
+					// waiting on it where it started
+					if (next == null) {
+						int production = itemProductions[item];
+						getCompleted(k).add(production, origin, NO_START);
+						Rule rule = productionRules[production];
+						ItemSet originSet = sets[origin];
+						for (int j = 0; j < originSet.size; j++) {
+							int waiting = originSet.getItem(j);
+							if (nextSymbols[waiting] == rule) {
+								set.add(waiting + 1, originSet.getOrigin(j),
+										origin);
+							}
+						}
+						continue;
+					}
+
+					// Scan the next token, or skip a TokenType that can be
+					// empty
+					if (next.getClass() == TokenType.class) {
+						TokenType tokenType = (TokenType)next;
+						if (k < last && tokens.getTokenType(k) == tokenType) {
+							if (sets[k + 1] == null) {
+								sets[k + 1] = new ItemSet();
+							}
+							sets[k + 1].add(item + 1, origin, k);
+						}
+						if (grammar.isNullable(tokenType)) {
+							set.add(item + 1, origin, k);
+						}
+						continue;
+					}
+
+					// Predict the chains of the Rule. A Rule that can match
+					// nothing is also skipped right away, since its
+					// completion in this set may already have happened.
+					Rule rule = (Rule)next;
+					for (int production : ruleProductions[rule.index]) {
+						set.add(productionStarts[production], k, NO_START);
+					}
+					if (grammar.isNullable(rule)) {
+						set.add(item + 1, origin, k);
+					} else if (k == last) {
+						getCompleted(k).add(
+								productionRules.length + rule.index, k,
+								NO_START);
+						set.add(item + 1, origin, k);
+					}
+				}
+			}
+
+			// Make sure that the root Rule matched all of the tokens
+			if (isCompleted(grammar.root, 0, last) == false) {
+				ErrorUtilities.throwSyntaxError("The root rule " +
+						grammar.root.name + " does not match the contents.",
+						tokens.getStart(last));
+			}
+		}
+
+		/**
+		 * Builds the ParseForest out of the Earley sets. Nodes are expanded
+		 * from a work list rather than recursively, and every Node is shared
+		 * by all of its parents.
+		 */
+		private ParseForest getForest() {
+			Map<NodeKey, Node> nodes = new HashMap<NodeKey, Node>();
+			List<Node> pending = new ArrayList<Node>();
+			Node root = getNode(grammar.root, 0, tokens.size, nodes, pending);
+
+			boolean ambiguous = false;
+			while (pending.isEmpty() == false) {
+				Node node = pending.remove(pending.size() - 1);
+				Rule rule = (Rule)node.symbol;
+
+				// Add an Alternative for each way that every completed
+				// chain of the Rule splits into its items
+				ItemSet set = completed[node.end];
+				for (int production : ruleProductions[rule.index]) {
+					if (set.indexOf(production, node.start) >= 0) {
+						int length = rule.possibleChildren.get(
+								productionChains[production]).size();
+						split(production, length, node.start, node.end,
+								new Node[length], node.alternatives, nodes,
+								pending);
+					}
+				}
+				if (set.indexOf(productionRules.length + rule.index,
+						node.start) >= 0) {
+					node.alternatives.add(new Alternative(
+							Alternative.NO_CHAIN, new ArrayList<Node>()));
+				}
+				ambiguous |= node.alternatives.size() > 1;
+			}
+
+			return new ParseForest(grammar, tokens, root, nodes.size(),
+					ambiguous);
+		}
+
+		/**
+		 * Adds an Alternative for every way that the items of the given
+		 * production before the given dot can match the tokens from origin
+		 * up to end. The items after the dot have already been matched, and
+		 * their Nodes are in children.
+		 */
+		private void split(int production, int dot, int origin, int end,
+				Node[] children, List<Alternative> alternatives,
+				Map<NodeKey, Node> nodes, List<Node> pending) {
+			if (dot == 0) {
+				if (end == origin) {
+					alternatives.add(new Alternative(
+							productionChains[production],
+							new ArrayList<Node>(Arrays.asList(children))));
+				}
+				return;
+			}
+			Object symbol = nextSymbols[productionStarts[production] + dot - 1];
+
+			// Try every place where the item before the dot started, as
+			// recorded when the dot was moved past it
+			ItemSet set = sets[end];
+			int index = set.indexOf(productionStarts[production] + dot, origin);
+			for (int link = set.getFirstLink(index); link != ItemSet.NO_LINK;
+					link = set.getNextLink(link)) {
+				int start = set.getLinkStart(link);
+				children[dot - 1] = getNode(symbol, start, end, nodes, pending);
+				split(production, dot - 1, origin, start, children,
+						alternatives, nodes, pending);
+			}
+		}
+
+		/**
+		 * Returns the shared Node of the given symbol over the given span,
+		 * creating it and queueing the Node of a Rule for expansion if
+		 * necessary.
+		 */
+		private Node getNode(Object symbol, int start, int end,
+				Map<NodeKey, Node> nodes, List<Node> pending) {
+			NodeKey key = new NodeKey(symbol, start, end);
+			Node node = nodes.get(key);
+			if (node == null) {
+				node = new Node(symbol, start, end);
+				nodes.put(key, node);
+				if (symbol.getClass() == Rule.class) {
+					pending.add(node);
+				}
+			}
+			return node;
+		}
+
+		/**
+		 * Returns true if the given Rule was completed in the given Earley
+		 * set, having started at the given token.
+		 */
+		private boolean isCompleted(Rule rule, int origin, int k) {
+			ItemSet set = completed[k];
+			if (set == null) {
+				return false;
+			}
+			for (int production : ruleProductions[rule.index]) {
+				if (set.indexOf(production, origin) >= 0) {
+					return true;
+				}
+			}
+			return set.indexOf(productionRules.length + rule.index,
+					origin) >= 0;
+		}
+
+		/**
+		 * Returns the set of completions of the given Earley set.
+		 */
+		private ItemSet getCompleted(int k) {
+			if (completed[k] == null) {
+				completed[k] = new ItemSet();
+			}
+			return completed[k];
+		}
+
+		/**
+		 * Returns a message listing the TokenTypes that the items of the
+		 * Earley set before the given token expected.
+		 */
+		private String getSyntaxErrorMessage(int index) {
+			Set<String> expected = new LinkedHashSet<String>();
+			ItemSet set = sets[index];
+			for (int i = 0; i < set.size; i++) {
+				Object next = nextSymbols[set.getItem(i)];
+				if (next != null && next.getClass() == TokenType.class) {
+					expected.add(((TokenType)next).name);
+				}
+			}
+
+			String msg = "Syntax error: Expected one of the following " +
+					"tokens: [ ";
+			for (String name : expected) {
+				msg += name + ' ';
+			}
+			msg += "]\n\nContents: " +
+					StringUtilities.escaped(tokens.getCursor(index).toString());
+			return msg;
+		}
+
+		private static int[] toArray(List<Integer> list) {
+			int[] result = new int[list.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = list.get(i);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * This is a set of Earley items, each stored as a dotted item and an
+	 * origin in one array, with an open addressing hash table of their
+	 * positions to keep out duplicates. Each item also keeps a list of links,
+	 * one for every token where the item before its dot could have started,
+	 * so that the ParseForest can be built without searching.
+	 */
+	private static class ItemSet {
+
+		/**
+		 * This value ends a list of links.
+		 */
+		private static final int NO_LINK = -1;
+
+		private int[] items = new int[16];
+		private int[] firstLinks = new int[8];
+		private int[] slots = new int[16];
+		private int size;
+
+		private int[] links = new int[16];
+		private int linkCount;
+
+		private int getItem(int i) {
+			return items[2 * i];
+		}
+
+		private int getOrigin(int i) {
+			return items[2 * i + 1];
+		}
+
+		private int getFirstLink(int i) {
+			return firstLinks[i];
+		}
+
+		private int getNextLink(int link) {
+			return links[2 * link + 1];
+		}
+
+		private int getLinkStart(int link) {
+			return links[2 * link];
+		}
+
+		/**
+		 * Returns the position of the given item in this set, or -1 if it
+		 * is not in it.
+		 */
+		private int indexOf(int item, int origin) {
+			int mask = slots.length - 1;
+			for (int slot = hash(item, origin) & mask; slots[slot] != 0;
+					slot = (slot + 1) & mask) {
+				int i = slots[slot] - 1;
+				if (items[2 * i] == item && items[2 * i + 1] == origin) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Adds the given item to the end of this set, unless it is already
+		 * in it, and links it to the given start unless it is NO_START.
+		 */
+		private void add(int item, int origin, int start) {
+			int i = indexOf(item, origin);
+			if (i < 0) {
+				i = append(item, origin);
+			}
+			if (start == NO_START) {
+				return;
+			}
+
+			// Add the link, unless it is already there
+			for (int link = firstLinks[i]; link != NO_LINK;
+					link = links[2 * link + 1]) {
+				if (links[2 * link] == start) {
+					return;
+				}
+			}
+			if (2 * linkCount == links.length) {
+				links = Arrays.copyOf(links, links.length * 2);
+			}
+			links[2 * linkCount] = start;
+			links[2 * linkCount + 1] = firstLinks[i];
+			firstLinks[i] = linkCount;
+			linkCount++;
+		}
+
+		private int append(int item, int origin) {
+			if (2 * size == items.length) {
+				items = Arrays.copyOf(items, items.length * 2);
+				firstLinks = Arrays.copyOf(firstLinks, size * 2);
+			}
+			items[2 * size] = item;
+			items[2 * size + 1] = origin;
+			firstLinks[size] = NO_LINK;
+			size++;
+
+			// Keep the hash table at most half full
+			if (2 * size > slots.length) {
+				slots = new int[slots.length * 2];
+				for (int i = 0; i < size; i++) {
+					insert(i);
+				}
+			} else {
+				insert(size - 1);
+			}
+			return size - 1;
+		}
+
+		private void insert(int i) {
+			int mask = slots.length - 1;
+			int slot = hash(items[2 * i], items[2 * i + 1]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = i + 1;
+		}
+
+		private static int hash(int item, int origin) {
+			// Mix the bits well, since the items of a set often differ only
+			// by consecutive origins
+			int hash = item * 0x9E3779B1 + origin * 0x85EBCA6B;
+			hash ^= hash >>> 15;
+			hash *= 0x2C1B3C6D;
+			return hash ^ (hash >>> 12);
+		}
+	}
+
+	/**
+	 * This is a hashable symbol and span of tokens.
+	 */
+	private static class NodeKey {
+		private final Object symbol;
+		private final int start;
+		private final int end;
+
+		private NodeKey(Object symbol, int start, int end) {
+			this.symbol = symbol;
+			this.start = start;
+			this.end = end;
+		}
+
+		public boolean equals(Object o) {
+			if (o instanceof NodeKey == false) {
+				return false;
+			}
+			NodeKey other = (NodeKey)o;
+			return symbol == other.symbol && start == other.start &&
+					end == other.end;
+		}
+
+		public int hashCode() {
+			return (System.identityHashCode(symbol) * 31 + start) * 31 + end;
+		}
+	}
+}
@@ -1,18 +1,25 @@
 package generators;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import language.defaults.RegExLanguage;
 import immutable.Token;
 import immutable.Report;
 import utilities.ErrorUtilities;
 import utilities.FileUtilities;
+import utilities.LogUtilities;
+import utilities.SnapshotUtilities;
 import immutable.Grammar;
+import immutable.GrammarAnalysis;
 import immutable.Language;
+import immutable.Rule;
 import immutable.TokenType;
 import grammar._Rule;
 import grammar._Grammar;
@@ -29,11 +36,37 @@ public class GrammarGenerator {
 					GrammarGenerator.class.getResourceAsStream(
 							GrammarGenerator.SPEC_FILE));
 	
+	/**
+	 * Returns the Grammar of the token types legal for grammar specification
+	 * files, which is loaded from the bootstrap snapshot or built on first
+	 * use.
+	 */
+	public static Grammar getTokenSpecGrammar() {
+		return TokenSpecGrammarHolder.instance;
+	}
+	
+	/**
+	 * Builds the Grammar of the token types legal for grammar specification
+	 * files from TOKEN_SPEC.
+	 */
+	private static Grammar createTokenSpecGrammar() {
+		// Load the language that specifies the token types legal for grammar
+		// specification files
+		Report tokenSpecReport = ReportGenerator.generate(
+				RegExGrammar.instance,
+				TOKEN_SPEC);
+		
+		Language tokenSpecLanguage =
+				LanguageGenerator.generate(tokenSpecReport);
+		
+		return GrammarGenerator.generate(tokenSpecLanguage);
+	}
+	
 	/** 
 	 * Generates a simple grammar that will produce a list of tokens.
 	 */
 	public static Grammar generate(Language language) {
-		return SimpleGrammar.createSimpleGrammar(language);
+		return logAnalysis(SimpleGrammar.createSimpleGrammar(language));
 	}
 	
 	/**
@@ -45,16 +78,9 @@ public class GrammarGenerator {
 		// Initialize some instance variables
 		Grammar regExGrammar = RegExGrammar.instance;
 		
-		// Load the language that specifies the token types legal for grammar
-		// specification files
-        Report tokenSpecReport = ReportGenerator.generate(
-                regExGrammar,
-                TOKEN_SPEC);
-
-		Language tokenSpecLanguage =
-        		LanguageGenerator.generate(tokenSpecReport);
-        
-        Grammar tokenSpecGrammar = GrammarGenerator.generate(tokenSpecLanguage);
+		// Get the grammar of the token types legal for grammar specification
+		// files
+		Grammar tokenSpecGrammar = getTokenSpecGrammar();
 
         // Parse the grammar token specification file for tokens that are valid
         // in this grammar and construct a new Language from it.
@@ -92,14 +118,14 @@ public class GrammarGenerator {
         }
         
         // Extract the name of the root rule
-        String rootRuleName = grammarReportLines.get(0).get(0).contents;
+        String rootRuleName = grammarReportLines.get(0).get(0).getContents();
         
         // Construct a map of rule name to the tokens that represent the
         // children of that rule.
         Map<String, List<List<Token>>> rulesTokens =
-        		new HashMap<String, List<List<Token>>>();
+        		new LinkedHashMap<String, List<List<Token>>>();
         for (List<Token> tokenList : grammarReportLines) {
-        	String name = tokenList.get(0).contents;
+        	String name = tokenList.get(0).getContents();
 			if (rulesTokens.containsKey(name) == false) {
 				rulesTokens.put(name, new ArrayList<List<Token>>());
 			}
@@ -114,7 +140,7 @@ public class GrammarGenerator {
         
         // Construct a map that has the OR tokens removed
         Map<String, List<List<Token>>> temp =
-        		new HashMap<String, List<List<Token>>>();
+        		new LinkedHashMap<String, List<List<Token>>>();
         for (String name: rulesTokens.keySet()) {
         	List<List<Token>> newChains = new ArrayList<List<Token>>();
         	temp.put(name, newChains);
@@ -126,7 +152,7 @@ public class GrammarGenerator {
 				for (Token token : chain) {
 					// This seems like a hack, but since the token is defined at
 					// runtime, this is the best we can do.
-					if (token.contents.equals("|")) {
+					if (token.getContents().equals("|")) {
 						lastChain = new ArrayList<Token>();
 						newChains.add(lastChain);
 					} else {
@@ -138,7 +164,7 @@ public class GrammarGenerator {
         rulesTokens = temp;
         
         // Initialize the rules map
-        Map<String, _Rule> rules = new HashMap<String, _Rule>();
+        Map<String, _Rule> rules = new LinkedHashMap<String, _Rule>();
         for (String name : rulesTokens.keySet()) {
         	rules.put(name, new _Rule(name));
 		}
@@ -156,7 +182,7 @@ public class GrammarGenerator {
         	for (List<Token> chain : chains) {
         		currentRule.addNewList();
 				for (Token token : chain) {
-					String contents = token.contents;
+					String contents = token.getContents();
 					if (contents.charAt(0) == '<') {
 						// Get a reference to the rule from the ruleTokens map
 						// and add a reference to it to this chain.
@@ -165,7 +191,7 @@ public class GrammarGenerator {
 							String msg = name + " references the rule " +
 									contents + ", which was not specified in " +
 									"the grammar specification file.";
-							ErrorUtilities.throwError(msg);
+							ErrorUtilities.throwGrammarError(msg);
 						}
 						currentRule.addToTail(rule);
 					} else if (contents.charAt(0) == '$') {
@@ -177,20 +203,187 @@ public class GrammarGenerator {
 							String msg = name + " references the token type " +
 									contents + ", which was not specified in " +
 									"the grammar token specification file.";
-							ErrorUtilities.throwError(msg);
+							ErrorUtilities.throwGrammarError(msg);
 						}
 						currentRule.addToTail(tokenType);
 					} else {
-						ErrorUtilities.throwError("Unrecognized token type.");
+						ErrorUtilities.throwGrammarError("Unrecognized token type.");
 					}
 				}
 			}
 		}
         
         _Grammar generatedGrammar = new _Grammar("Generated Grammar");
-        generatedGrammar.rules = new HashSet<_Rule>(rules.values());
+        generatedGrammar.rules = new LinkedHashSet<_Rule>(rules.values());
         generatedGrammar.root = rules.get(rootRuleName);
 
-        return new Grammar(generatedGrammar);
+        return logAnalysis(new Grammar(generatedGrammar));
+	}
+	
+	/**
+	 * Logs the analysis of the given Grammar, if logging is active, and
+	 * returns the Grammar.
+	 */
+	private static Grammar logAnalysis(Grammar grammar) {
+		if (LogUtilities.isActive()) {
+			LogUtilities.logln(analyze(grammar));
+		}
+		return grammar;
+	}
+	
+	/**
+	 * Analyzes the given Grammar without parsing anything with it. On top of
+	 * the nullable Rules and LL(1) conflicts that the Grammar finds itself,
+	 * this finds the left recursive, unreachable, and unproductive Rules, and
+	 * decides which engine can parse with the Grammar.
+	 */
+	public static GrammarAnalysis analyze(Grammar grammar) {
+		// Order the rules by their index
+		Rule[] rules = new Rule[grammar.rules.size()];
+		for (Rule rule : grammar.rules) {
+			rules[rule.index] = rule;
+		}
+		
+		Set<Rule> nullableRules = new LinkedHashSet<Rule>();
+		for (Rule rule : rules) {
+			if (grammar.isNullable(rule)) {
+				nullableRules.add(rule);
+			}
+		}
+		
+		// A Rule is left recursive if it can reach itself through the Rules
+		// that can start its chains
+		Set<Rule> leftRecursiveRules = new LinkedHashSet<Rule>();
+		for (Rule rule : rules) {
+			Set<Rule> reached = new HashSet<Rule>();
+			List<Rule> pending = new ArrayList<Rule>();
+			pending.add(rule);
+			while (pending.isEmpty() == false) {
+				Rule current = pending.remove(pending.size() - 1);
+				for (Rule next : getLeftRules(grammar, current)) {
+					if (reached.add(next)) {
+						pending.add(next);
+					}
+				}
+			}
+			if (reached.contains(rule)) {
+				leftRecursiveRules.add(rule);
+			}
+		}
+		
+		// Find the Rules that can be reached from the root
+		Set<Rule> reachableRules = new HashSet<Rule>();
+		List<Rule> pending = new ArrayList<Rule>();
+		reachableRules.add(grammar.root);
+		pending.add(grammar.root);
+		while (pending.isEmpty() == false) {
+			Rule current = pending.remove(pending.size() - 1);
+			for (List<Object> chain : current.possibleChildren) {
+				for (Object item : chain) {
+					if (item.getClass() == Rule.class &&
+							reachableRules.add((Rule)item)) {
+						pending.add((Rule)item);
+					}
+				}
+			}
+		}
+		Set<Rule> unreachableRules = new LinkedHashSet<Rule>();
+		for (Rule rule : rules) {
+			if (reachableRules.contains(rule) == false) {
+				unreachableRules.add(rule);
+			}
+		}
+		
+		// A Rule is productive if one of its chains contains only TokenTypes
+		// and productive Rules. Repeat until no more are found.
+		Set<Rule> productiveRules = new HashSet<Rule>();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Rule rule : rules) {
+				if (productiveRules.contains(rule)) {
+					continue;
+				}
+				for (List<Object> chain : rule.possibleChildren) {
+					boolean productive = true;
+					for (Object item : chain) {
+						if (item.getClass() == Rule.class &&
+								productiveRules.contains(item) == false) {
+							productive = false;
+							break;
+						}
+					}
+					if (productive) {
+						productiveRules.add(rule);
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+		Set<Rule> unproductiveRules = new LinkedHashSet<Rule>();
+		for (Rule rule : rules) {
+			if (productiveRules.contains(rule) == false) {
+				unproductiveRules.add(rule);
+			}
+		}
+		
+		// Pick the fastest engine that can parse with the Grammar
+		GrammarAnalysis.Engine engine = GrammarAnalysis.Engine.EARLEY;
+		if (leftRecursiveRules.isEmpty()) {
+			engine = grammar.conflicts.isEmpty() ?
+					GrammarAnalysis.Engine.LL1 :
+					GrammarAnalysis.Engine.PACKRAT;
+		}
+		
+		return new GrammarAnalysis(grammar,
+				Collections.unmodifiableSet(nullableRules),
+				grammar.conflicts,
+				Collections.unmodifiableSet(leftRecursiveRules),
+				Collections.unmodifiableSet(unreachableRules),
+				Collections.unmodifiableSet(unproductiveRules),
+				engine);
+	}
+	
+	/**
+	 * Returns the Rules that can start a chain of the given Rule, which are
+	 * the Rules of each chain up to and including its first item that cannot
+	 * match an empty string.
+	 */
+	private static Set<Rule> getLeftRules(Grammar grammar, Rule rule) {
+		Set<Rule> result = new HashSet<Rule>();
+		for (List<Object> chain : rule.possibleChildren) {
+			for (Object item : chain) {
+				if (item.getClass() == TokenType.class) {
+					if (grammar.isNullable((TokenType)item) == false) {
+						break;
+					}
+				} else {
+					result.add((Rule)item);
+					if (grammar.isNullable((Rule)item) == false) {
+						break;
+					}
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * This class holds the Grammar of the token types legal for grammar
+	 * specification files, which is initialized the first time that it is
+	 * referenced.
+	 */
+	private static class TokenSpecGrammarHolder {
+		private static final Grammar instance;
+		
+		static {
+			Grammar snapshot = SnapshotUtilities.getTokenSpecGrammar();
+			if (snapshot != null) {
+				instance = snapshot;
+			} else {
+				instance = createTokenSpecGrammar();
+			}
+		}
 	}
 }
@@ -1,6 +1,7 @@
 package generators;
 
 import immutable.Language;
+import immutable.LazyTransitionTable;
 import immutable.Report;
 import immutable.TokenType;
 import immutable.Token;
@@ -12,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import language.MatchingMode;
 import language._StateMachine;
 import language._TokenType;
 import language.defaults.RegExAlphabet;
@@ -26,8 +28,50 @@ import utilities.StringUtilities;
 public class LanguageGenerator {
 	
 	public static Language generate(Report report) {
+		return generate(report, MatchingMode.DFA);
+	}
+	
+	/**
+	 * Generates a Language whose token types are all run in the given
+	 * matching mode.
+	 */
+	public static Language generate(Report report, MatchingMode mode) {
+		return generate(report, mode, new HashMap<String, MatchingMode>());
+	}
+	
+	/**
+	 * Generates a Language whose token types are run in the given matching
+	 * mode, except for the token types named in modes, which are run in the
+	 * matching mode that they are mapped to.
+	 */
+	public static Language generate(Report report, MatchingMode mode,
+			Map<String, MatchingMode> modes) {
+		return generate(report, mode, modes,
+				LazyTransitionTable.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Generates a Language whose token types are run in the matching modes
+	 * given as above, where each token type run as a MatchingMode.LAZY_DFA
+	 * caches at most cacheCapacity of its DFA States at once.
+	 */
+	public static Language generate(Report report, MatchingMode mode,
+			Map<String, MatchingMode> modes, int cacheCapacity) {
 		// Get the stubs of the TokenTypes
 		Map<String, _TokenType> tokenTypes = generateStubs(report);
+		for (_TokenType tokenType : tokenTypes.values()) {
+			tokenType.matchingMode = mode;
+			tokenType.cacheCapacity = cacheCapacity;
+		}
+		for (Map.Entry<String, MatchingMode> entry : modes.entrySet()) {
+			_TokenType tokenType = tokenTypes.get(entry.getKey());
+			if (tokenType == null) {
+				String msg = "No token type \"" + entry.getKey() +
+						"\" has been defined.";
+				ErrorUtilities.throwGrammarError(msg);
+			}
+			tokenType.matchingMode = entry.getValue();
+		}
 		
 		// Process all _TokenType objects
 		for (_TokenType tokenType : tokenTypes.values()) {
@@ -95,9 +139,14 @@ public class LanguageGenerator {
 	 */
 	private static _StateMachine processREXP(_TokenType currentTokenType,
 			Map<String, _TokenType> tokenTypes, boolean parenthetical) {
+		// The definition must not end where an expression should start, as
+		// it does after a parenthesis that is never closed
+		if (currentTokenType.unprocessedTokens.isEmpty()) {
+			throwUnfinishedError(currentTokenType, "an expression");
+		}
 		LogUtilities.logln("Processing next expression: " +
 				currentTokenType.unprocessedTokens.get(0).tokenType.name + " " +
-				currentTokenType.unprocessedTokens.get(0).contents);
+				currentTokenType.unprocessedTokens.get(0).getContents());
 		
 		_StateMachine stateMachine = new _StateMachine();
 		
@@ -109,8 +158,8 @@ public class LanguageGenerator {
 			
 			// Add the last character. Either it's the first character, or it's
 			// the appropriate character in an escape sequence.
-			int lastIndex = firstToken.contents.length() - 1;
-			Character target = firstToken.contents.charAt(lastIndex); 
+			int lastIndex = firstToken.length() - 1;
+			Character target = firstToken.getText().charAt(lastIndex); 
 			stateMachine.appendCharacter(target);
 			
 		} else if (firstToken.tokenType == RegExLanguage.OPEN_PARENS) {
@@ -141,12 +190,13 @@ public class LanguageGenerator {
 			
 			currentTokenType.reservedWord = false;
 			
-			_TokenType targetTokenType = tokenTypes.get(firstToken.contents);
+			_TokenType targetTokenType =
+					tokenTypes.get(firstToken.getContents());
 			
 			if (targetTokenType == null) {
-				String msg = "No token type \"" + firstToken.contents + "\" " +
-						"has been defined.";
-				ErrorUtilities.throwError(msg);
+				String msg = "No token type \"" + firstToken.getContents() +
+						"\" has been defined.";
+				ErrorUtilities.throwGrammarError(msg);
 			}
 			
 			// Ensure that the other TokenType has been initialized
@@ -166,7 +216,7 @@ public class LanguageGenerator {
 					"OPEN_PARENS, DOT, OPEN_BRACKET, " +
 					"DEFINED_CLASS.\nInstead got: " +
 					firstToken.tokenType.name + ".";
-			ErrorUtilities.throwError(msg);
+			ErrorUtilities.throwGrammarError(msg);
 		}
 		
 		// Handle PLUS_TOKEN and STAR_TOKEN
@@ -186,18 +236,35 @@ public class LanguageGenerator {
 		// Handle CLOSE_PARENS_TOKEN
 		if (parenthetical) {
 			firstToken = currentTokenType.popToken();
+			if (firstToken == null) {
+				throwUnfinishedError(currentTokenType, "CLOSE_PARENS");
+			}
 			if (firstToken.tokenType != RegExLanguage.CLOSE_PARENS) {
 				String msg = "Expected CLOSE_PARENS, but instead got " +
 						firstToken.tokenType.toString() + ".\n";
 				msg += currentTokenType.name + "\n";
 				msg += stateMachine.toString();
-				ErrorUtilities.throwError(msg);
+				ErrorUtilities.throwGrammarError(msg);
 			}
 		}
 		
 		return stateMachine;
 	}
 
+	/**
+	 * Throws a syntax error for a token type whose definition ended where
+	 * the given kind of token was expected, at the end of its last token.
+	 */
+	private static void throwUnfinishedError(_TokenType currentTokenType,
+			String expected) {
+		List<Token> processedTokens = currentTokenType.processedTokens;
+		int offset = processedTokens.isEmpty() ? 0 :
+				processedTokens.get(processedTokens.size() - 1).end;
+		ErrorUtilities.throwSyntaxError("Syntax error: The definition of " +
+				currentTokenType.name + " ended where " + expected +
+				" was expected.", offset);
+	}
+
 	/**
 	 * This method modifies the state machine to match repeater tokens.
 	 * 
@@ -275,7 +342,8 @@ public class LanguageGenerator {
 				
 				Token nextToken = currentTokenType.popToken();
 				
-				_TokenType targetTokenType = tokenTypes.get(nextToken.contents);
+				_TokenType targetTokenType =
+						tokenTypes.get(nextToken.getContents());
 				
 				// Ensure that the other TokenType has been initialized
 				if (targetTokenType.unprocessedTokens.isEmpty() == false) {
@@ -309,13 +377,13 @@ public class LanguageGenerator {
 		if (firstToken.tokenType != RegExLanguage.CLS_CHAR) {
 			String msg = "Expected CLS_CHAR, but got " +
 					firstToken.tokenType.name + " instead.";
-			ErrorUtilities.throwError(msg);
+			ErrorUtilities.throwGrammarError(msg);
 		}
 		
 		if (secondToken.tokenType == RegExLanguage.CLOSE_BRACKET) {
 			
 			result.add(StringUtilities.getUnescapedCharacter(
-					firstToken.contents));
+					firstToken.getContents()));
 
 			// Pop off the first and second tokens
 			currentTokenType.popToken();
@@ -328,14 +396,14 @@ public class LanguageGenerator {
 			if (thirdToken.tokenType != RegExLanguage.CLS_CHAR) {
 				String msg = "Expected CLS_CHAR, but got " +
 						thirdToken.tokenType.name + "instead.";
-				ErrorUtilities.throwError(msg);
+				ErrorUtilities.throwGrammarError(msg);
 			}
 			
 			// Get the bounds
 			char firstChar = StringUtilities.getUnescapedCharacter(
-					firstToken.contents);
+					firstToken.getContents());
 			char secondChar = StringUtilities.getUnescapedCharacter(
-					thirdToken.contents);
+					thirdToken.getContents());
 			
 			// Add the range to the result set
 			while (firstChar <= secondChar) {
@@ -359,7 +427,7 @@ public class LanguageGenerator {
 				if (lastToken.tokenType != RegExLanguage.CLOSE_BRACKET) {
 					String msg = "Expected CLOSE_BRACKET, but got " +
 							firstToken.tokenType.name + "instead.";
-					ErrorUtilities.throwError(msg);
+					ErrorUtilities.throwGrammarError(msg);
 				}
 			}
 			return result;
@@ -367,7 +435,7 @@ public class LanguageGenerator {
 			
 			String msg = "Expected either CLOSE_BRACKET or DASH, " +
 					"but got " + firstToken.tokenType.name + "instead.";
-			ErrorUtilities.throwError(msg);
+			ErrorUtilities.throwGrammarError(msg);
 			return null;
 		}
 	}
@@ -418,12 +486,12 @@ public class LanguageGenerator {
 		for (_TokenType tokenType : tokenTypeStubs) {
 			
 			// Record the name
-			tokenType.name = tokenType.unprocessedTokens.get(0).contents;
+			tokenType.name = tokenType.unprocessedTokens.get(0).getContents();
 			
 			// Ensure that no other tokens have the same name
 			if (names.contains(tokenType.name)) {
 				String msg = tokenType.name + " is defined more than once.";
-				ErrorUtilities.throwError(msg);
+				ErrorUtilities.throwGrammarError(msg);
 			}
 			
 			// Add that name to the list of names
@@ -0,0 +1,258 @@
+package generators;
+
+import immutable.Grammar;
+import immutable.Report;
+import immutable.Rule;
+import immutable.Token;
+import immutable.TokenBuffer;
+import immutable.TokenType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import utilities.ErrorUtilities;
+import utilities.LogUtilities;
+import utilities.StringUtilities;
+
+/**
+ * This class handles the generation of a Report from a TokenBuffer for
+ * grammars that need backtracking. Rather than predicting a single chain, the
+ * chains of a Rule are tried in order until one of them matches, and the
+ * outcome of every Rule at every position is memoized, so that no Rule is
+ * ever matched twice at the same position and the parse time stays linear.
+ * The memo only keeps the most recently used outcomes, so its memory use is
+ * bounded no matter how long the input is.
+ *
+ * Note: A TokenType that matches nothing does not produce a Token, so the
+ * Report holds exactly the tokens that were consumed from the buffer.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class PackratReportGenerator {
+
+	/**
+	 * The number of outcomes that are memoized unless specified otherwise.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * This value is the outcome of a Rule that failed to match.
+	 */
+	private static final int FAILED = -1;
+
+	/**
+	 * This value is the outcome of a Rule that has not been matched yet.
+	 */
+	private static final int UNKNOWN = -2;
+
+	/**
+	 * Generates a Report with a memo of the default capacity.
+	 */
+	public static Report generate(Grammar grammar, TokenBuffer tokens) {
+		return generate(grammar, tokens, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Generates a Report, memoizing at most the given number of outcomes.
+	 */
+	public static Report generate(Grammar grammar, TokenBuffer tokens,
+			int capacity) {
+		Memo memo = new Memo(capacity);
+		int end = match(grammar, tokens, memo);
+		LogUtilities.logln("Memo: " + memo.hits + " hit(s), " +
+				memo.evictions + " eviction(s), " + memo.size() +
+				" outcome(s) kept of at most " + capacity);
+
+		// If the root Rule failed, there was a syntax error. Throw an
+		// exception.
+		if (end == FAILED) {
+			String errorMessage = "The root rule " + grammar.root.name +
+					" does not match the contents.";
+			errorMessage += "\n\nContents: " +
+					StringUtilities.escaped(tokens.getCursor(0).toString());
+			ErrorUtilities.throwSyntaxError(errorMessage, tokens.getStart(0));
+		}
+
+		// Collect the consumed tokens
+		List<Token> result = new ArrayList<Token>();
+		for (int i = 0; i < end; i++) {
+			result.add(tokens.getToken(i));
+		}
+
+		// If not all the tokens were consumed, there was a syntax error.
+		// Throw an exception.
+		if (end < tokens.size) {
+			String errorMessage =
+					"Failed to parse all of the contents.";
+			errorMessage += "\n  contents remaining: \"" +
+					StringUtilities.escaped(
+							tokens.getCursor(end).toString()) + "\"";
+			errorMessage += "\n  tokens parsed:      " + result;
+			ErrorUtilities.throwSyntaxError(errorMessage, tokens.getStart(end));
+		}
+
+		return new Report(grammar, result);
+	}
+
+	/**
+	 * Matches the root Rule at the start of the tokens, and returns the index
+	 * just past the last token that it consumed, or FAILED. The Rules being
+	 * matched are kept on an explicit stack rather than the Java stack.
+	 */
+	private static int match(Grammar grammar, TokenBuffer tokens, Memo memo) {
+		// Keep track of the Rules being matched, which are treated as failed
+		// if they are reached again at the same position. This stops left
+		// recursive chains from looping forever.
+		Set<Long> active = new HashSet<Long>();
+
+		List<Frame> stack = new ArrayList<Frame>();
+		int outcome = lookup(grammar.root, 0, tokens, memo, active);
+		if (outcome == UNKNOWN) {
+			stack.add(new Frame(grammar.root, 0));
+			active.add(getKey(grammar.root, 0));
+		}
+
+		while (stack.isEmpty() == false) {
+			Frame frame = stack.get(stack.size() - 1);
+
+			// Take in the outcome of the last child Rule
+			if (outcome != UNKNOWN) {
+				if (outcome == FAILED) {
+					frame.nextChain();
+				} else {
+					frame.position = outcome;
+					frame.item++;
+				}
+				outcome = UNKNOWN;
+			}
+
+			// If every chain failed, so does this Rule. If the current chain
+			// is complete, this Rule matches up to the current position.
+			List<ArrayList<Object>> chains = frame.rule.possibleChildren;
+			if (frame.chain == chains.size() ||
+					frame.item == chains.get(frame.chain).size()) {
+				outcome = frame.chain == chains.size() ?
+						FAILED : frame.position;
+				stack.remove(stack.size() - 1);
+				Long key = getKey(frame.rule, frame.start);
+				active.remove(key);
+				memo.put(key, outcome);
+				continue;
+			}
+			Object currentChild = chains.get(frame.chain).get(frame.item);
+
+			// Handle the case of finding a TokenType
+			if (currentChild.getClass() == TokenType.class) {
+				TokenType tokenType = (TokenType)currentChild;
+				if (frame.position < tokens.size &&
+						tokens.getTokenType(frame.position) == tokenType) {
+					frame.position++;
+					frame.item++;
+				} else if (grammar.isNullable(tokenType)) {
+					frame.item++;
+				} else {
+					frame.nextChain();
+				}
+			}
+
+			// Handle the case of finding a Rule, matching it unless its
+			// outcome is already known
+			if (currentChild.getClass() == Rule.class) {
+				Rule childRule = (Rule)currentChild;
+				outcome = lookup(childRule, frame.position, tokens, memo,
+						active);
+				if (outcome == UNKNOWN) {
+					stack.add(new Frame(childRule, frame.position));
+					active.add(getKey(childRule, frame.position));
+				}
+			}
+		}
+
+		return outcome;
+	}
+
+	/**
+	 * Returns the known outcome of the given Rule at the given position, or
+	 * UNKNOWN if it has to be matched. Every Rule matches nothing at the end
+	 * of the tokens, as it does when descending predictively.
+	 */
+	private static int lookup(Rule rule, int position, TokenBuffer tokens,
+			Memo memo, Set<Long> active) {
+		if (position == tokens.size) {
+			return position;
+		}
+		Long key = getKey(rule, position);
+		Integer outcome = memo.get(key);
+		if (outcome != null) {
+			memo.hits++;
+			return outcome;
+		}
+		if (active.contains(key)) {
+			return FAILED;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Returns the memo key of the given Rule at the given position.
+	 */
+	private static Long getKey(Rule rule, int position) {
+		return ((long)rule.index << 32) | position;
+	}
+
+	/**
+	 * This is a bookkeeping class for match, recording which chain of a Rule
+	 * is being tried and how far into it the match has gotten.
+	 */
+	private static class Frame {
+		private final Rule rule;
+		private final int start;
+		private int chain;
+		private int item;
+		private int position;
+
+		private Frame(Rule rule, int start) {
+			this.rule = rule;
+			this.start = start;
+			this.position = start;
+		}
+
+		/**
+		 * Abandons the current chain and backtracks to try the next one.
+		 */
+		private void nextChain() {
+			chain++;
+			item = 0;
+			position = start;
+		}
+	}
+
+	/**
+	 * This is a memo of the outcomes of Rules at positions, which evicts the
+	 * least recently used outcome once it holds more than its capacity. It
+	 * counts how often an outcome was found and how often one was evicted.
+	 */
+	private static class Memo extends LinkedHashMap<Long, Integer> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+		private int hits;
+		private int evictions;
+
+		private Memo(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+			if (size() > capacity) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package generators;
+
+import immutable.Rule;
+import immutable.Token;
+
+/**
+ * This interface receives the events of a parse as ReportGenerator descends
+ * through a Grammar, as an alternative to collecting the tokens into a
+ * Report. Every call to enterRule is matched by a later call to exitRule, and
+ * the tokens of a Rule are passed in between.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public interface ParseListener {
+
+	/**
+	 * Called when the parse starts matching the given Rule.
+	 */
+	public void enterRule(Rule rule);
+
+	/**
+	 * Called for every Token that is matched, in order.
+	 */
+	public void token(Token token);
+
+	/**
+	 * Called when the given Rule has been matched.
+	 */
+	public void exitRule(Rule rule);
+
+	/**
+	 * Called when the parse fails, after which no other events follow.
+	 */
+	public void error(String message);
+}
@@ -1,24 +1,30 @@
 package generators;
 
 import immutable.Grammar;
+import immutable.ParseTree;
 import immutable.Rule;
 import immutable.TokenType;
 
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
-import language.defaults.RegExLanguage;
-
 import immutable.Report;
 import immutable.Token;
+import immutable.TokenBuffer;
+import immutable.TokenBufferDiff;
 
+import utilities.ChannelCursor;
+import utilities.Cursor;
 import utilities.ErrorUtilities;
 import utilities.LogUtilities;
+import utilities.ParserException;
 import utilities.StringUtilities;
+import utilities.SyntaxException;
 
 /**
  * This class handles the generation of a Report from a string given a grammar
@@ -30,69 +36,357 @@ import utilities.StringUtilities;
  */
 public class ReportGenerator {
 	
+	/**
+	 * This value is returned by selectChain when the descent should stop
+	 * because of an error.
+	 */
+	private static final List<Object> STOPPED = new ArrayList<Object>();
+	
 	/**
 	 * This is the exposed method call. All this function does is to call
-	 * recursiveDescent and verify that that method does not return an invalid
-	 * result.
+	 * descend, collecting the tokens, and verify that that method consumes
+	 * all of the contents.
 	 */
-	public static Report generate(Grammar grammar, String rawContents) {
-		// Get a StringBuffer object, to allow for passing a string's contents
-		// around by reference, rather than by value.
-		StringBuffer contents = new StringBuffer(rawContents);
+	public static Report generate(Grammar grammar, CharSequence rawContents) {
+		// Get a Cursor object, to allow for passing a position within the
+		// contents around by reference, rather than editing the contents.
+		final Cursor contents = new Cursor(rawContents);
 
-		// Call the recursive method
-		List<Token> tokens = recursiveDescent(grammar.root, contents);
-		
-		// If descend returns null, there was a syntax error. Throw an
-		// exception.
-		if (tokens == null) {
-			String errorMessage =
-					"The root call of recursiveDescent returned null.";
-			ErrorUtilities.throwError(errorMessage);
-		}
+		// Descend through the grammar, collecting the tokens
+		final List<Token> tokens = new ArrayList<Token>();
+		descend(grammar, contents, new ParseListener() {
+			public void enterRule(Rule rule) {
+			}
+			
+			public void token(Token token) {
+				tokens.add(token);
+			}
+			
+			public void exitRule(Rule rule) {
+			}
+			
+			public void error(String message) {
+				ErrorUtilities.throwSyntaxError(message, contents.getOffset());
+			}
+		});
 
 		// If not all the contents were consumed, there was a syntax error.
 		// Throw an exception.
-		if (contents.length() > 0) {
+		if (contents.hasRemaining()) {
 			String errorMessage =
 					"Failed to parse all of the contents.";
 			errorMessage += "\n  contents remaining: \"" +
 					StringUtilities.escaped(contents.toString()) + "\"";
 			errorMessage += "\n  tokens parsed:      " + tokens;
-			ErrorUtilities.throwError(errorMessage);
+			ErrorUtilities.throwSyntaxError(errorMessage, contents.getOffset());
 		}
 		
 		return new Report(grammar, tokens);
 	}
+	
+	/**
+	 * Parses the contents, passing every Rule and Token to the given listener
+	 * as it is matched rather than building a Report, so memory use does not
+	 * grow with the number of tokens. Parsing stops at the first error, which
+	 * is passed to the listener as well, including errors found while lexing.
+	 */
+	public static void generate(Grammar grammar, CharSequence rawContents,
+			ParseListener listener) {
+		generate(grammar, new Cursor(rawContents), listener);
+	}
+	
+	/**
+	 * Parses a document read from the given channel in the same way, reading
+	 * it as it is parsed. Only the characters that the parse is looking at
+	 * are kept in memory, so a document of any length is parsed in constant
+	 * memory, and the listener receives the first tokens right away.
+	 */
+	public static void generate(Grammar grammar, ReadableByteChannel channel,
+			Charset charset, ParseListener listener) {
+		generate(grammar, new ChannelCursor(channel, charset), listener);
+	}
+	
+	/**
+	 * Parses a document read from the given channel in the same way, reading
+	 * the given number of bytes at a time.
+	 */
+	public static void generate(Grammar grammar, ReadableByteChannel channel,
+			Charset charset, int capacity, ParseListener listener) {
+		generate(grammar, new ChannelCursor(channel, charset, capacity),
+				listener);
+	}
+	
+	/**
+	 * Parses the contents of the given Cursor, passing every Rule and Token
+	 * to the given listener.
+	 */
+	private static void generate(Grammar grammar, Cursor contents,
+			ParseListener listener) {
+		try {
+			if (descend(grammar, contents, listener) &&
+					contents.hasRemaining()) {
+				listener.error("Failed to parse all of the contents." +
+						"\n  contents remaining: \"" +
+						StringUtilities.escaped(contents.toString()) + "\"");
+			}
+		} catch (ParserException exception) {
+			listener.error(exception.getMessage());
+		}
+	}
+
+	/**
+	 * Generates a Report from a document that has already been lexed. Each
+	 * parse decision reads the next token from the buffer by index, rather
+	 * than lexing the contents again.
+	 */
+	public static Report generate(Grammar grammar, TokenBuffer tokens) {
+		return generate(grammar, tokens, null);
+	}
+	
+	/**
+	 * Generates a Report from a document that has already been lexed,
+	 * recovering from syntax errors rather than stopping at the first one.
+	 * Each error is added to the given list, and the parse resumes at the
+	 * next token that can follow the Rule it was found in. Errors found
+	 * before another token has been matched are left out, since they are
+	 * usually caused by the first one. If the list is null, the first error
+	 * is thrown instead.
+	 */
+	public static Report generate(Grammar grammar, TokenBuffer tokens,
+			List<ParserException> errors) {
+		Recovery recovery = errors == null ? null : new Recovery(errors);
+		List<Token> result = new ArrayList<Token>();
+		int index = descend(grammar, tokens, grammar.root, 0, result, null,
+				null, recovery);
+		checkConsumed(tokens, index, result, recovery);
+		return new Report(grammar, result);
+	}
+	
+	/**
+	 * Generates the ParseTree of a document that has already been lexed, in
+	 * the same way as a Report.
+	 */
+	public static ParseTree generateTree(Grammar grammar, TokenBuffer tokens) {
+		return generateTree(grammar, tokens, null);
+	}
+	
+	/**
+	 * Generates the ParseTree of a document that has already been lexed,
+	 * recovering from syntax errors in the same way as a Report. The tokens
+	 * that were skipped are left out of the tree.
+	 */
+	public static ParseTree generateTree(Grammar grammar, TokenBuffer tokens,
+			List<ParserException> errors) {
+		Recovery recovery = errors == null ? null : new Recovery(errors);
+		TreeArena arena = new TreeArena();
+		List<Token> result = new ArrayList<Token>();
+		int index = descend(grammar, tokens, grammar.root, 0, result, arena,
+				null, recovery);
+		checkConsumed(tokens, index, result, recovery);
+		return arena.toParseTree(grammar, tokens);
+	}
+	
+	/**
+	 * Generates the ParseTree of a document after an edit, given the
+	 * ParseTree from before the edit and the way its tokens changed. Only the
+	 * smallest Rule around the changed tokens is parsed again, and within it,
+	 * any Rule that starts after the changed tokens is copied from the
+	 * previous tree rather than parsed. The rest of the previous tree is
+	 * kept, with its nodes and tokens renumbered.
+	 * 
+	 * Since the grammar is LL(1), a Rule matches the same tokens wherever it
+	 * starts at the same token, and the Rules around it only look at the
+	 * tokens before it and the token after it. So a Rule that spans past the
+	 * changed tokens on both sides can be parsed on its own, as long as it
+	 * still ends at the same token. If it does not, its parent is parsed
+	 * instead.
+	 */
+	public static ParseTree generateTree(ParseTree previous,
+			TokenBufferDiff diff) {
+		if (previous.tokens != diff.oldTokens) {
+			ErrorUtilities.throwError("The ParseTree was not generated " +
+					"from the tokens that the diff starts from.");
+		}
+		Grammar grammar = previous.grammar;
+		int shift = diff.getShift();
+		
+		// Find the last node that starts before the changed tokens
+		int start = 0;
+		int end = previous.size;
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (previous.getTokenStart(middle) < diff.start) {
+				start = middle + 1;
+			} else {
+				end = middle;
+			}
+		}
+		int node = start - 1;
+		
+		while (node != ParseTree.NO_NODE) {
+			// Move up to the nearest Rule that spans past the changed tokens
+			if (previous.isRule(node) == false ||
+					previous.getTokenEnd(node) <= diff.oldEnd) {
+				node = previous.getParent(node);
+				continue;
+			}
+			
+			// Parse it again, reusing what can be reused
+			int after = getSubtreeEnd(previous, node);
+			TreeArena arena = new TreeArena();
+			Reuse reuse = new Reuse(previous, node, after, diff.newEnd, shift);
+			int index = descend(grammar, diff.newTokens,
+					previous.getRule(node), previous.getTokenStart(node),
+					null, arena, reuse, null);
+			if (index == previous.getTokenEnd(node) + shift) {
+				arena.finish();
+				logReuse(previous.size - (after - node), reuse.copied,
+						arena.size - reuse.copied);
+				return splice(previous, diff, node, after, arena);
+			}
+			node = previous.getParent(node);
+		}
+		
+		// Otherwise, there is nothing to reuse
+		ParseTree tree = generateTree(grammar, diff.newTokens);
+		logReuse(0, 0, tree.size);
+		return tree;
+	}
+	
+	/**
+	 * Logs how many nodes of a reparsed tree were kept in place or copied
+	 * from the previous tree, and how many had to be parsed again.
+	 */
+	private static void logReuse(int kept, int copied, int parsed) {
+		LogUtilities.logln("Reparse: " + kept + " node(s) kept, " + copied +
+				" node(s) copied, " + parsed + " node(s) parsed again");
+	}
 
 	/**
-	 * This function does the work. It recursively descends through the grammar,
-	 * recording tokens as it goes.
+	 * This function does the work. It descends through the grammar, passing
+	 * every Rule and Token to the listener as it goes. Rather than recursing
+	 * once per Rule, it keeps the chains being matched on an explicit stack,
+	 * so deeply nested or long right recursive inputs do not overflow the
+	 * Java stack. Returns false if it stopped at an error.
 	 */
-	private static List<Token> recursiveDescent(Rule rule,
-			StringBuffer contents) {
+	private static boolean descend(Grammar grammar, Cursor contents,
+			ParseListener listener) {
+		// Keep count of the tokens, to log how many each Rule produced
+		int tokenCount = 0;
+		
+		// Start with the chain of the root Rule
+		List<Frame> stack = new ArrayList<Frame>();
+		listener.enterRule(grammar.root);
+		List<Object> rootChildren =
+				selectChain(grammar, grammar.root, contents, listener);
+		if (rootChildren == STOPPED) {
+			return false;
+		}
+		if (rootChildren == null) {
+			listener.exitRule(grammar.root);
+		} else {
+			stack.add(new Frame(grammar.root, rootChildren, tokenCount,
+					ParseTree.NO_NODE));
+		}
+		
+		while (stack.isEmpty() == false) {
+			Frame frame = stack.get(stack.size() - 1);
+			
+			// Once a chain is complete, return to the chain of its parent,
+			// exiting any parents that were dropped along the way.
+			if (frame.position == frame.children.size()) {
+				stack.remove(stack.size() - 1);
+				listener.exitRule(frame.rule);
+				if (frame.pendingExits != null) {
+					frame.pendingExits.exitAll(listener);
+				}
+				if (stack.isEmpty() == false) {
+					logReturn(frame.rule, tokenCount - frame.tokenCount,
+							contents);
+				}
+				continue;
+			}
+			Object currentChild = frame.children.get(frame.position);
+			frame.position++;
+
+			// Handle the case of finding a TokenType
+			if (currentChild.getClass() == TokenType.class) {
+				StringUtilities.removeLeadingWhitespace(contents);
+				if (LogUtilities.isActive()) {
+					LogUtilities.logln("Now matching the " +
+							((TokenType)currentChild).name + " TokenType.\t" +
+							StringUtilities.escaped(contents.toString()));
+				}
+				
+				listener.token(TokenGenerator.generate(
+						(TokenType)currentChild, contents));
+				tokenCount++;
+			}
+			
+			// Handle the case of finding a Rule, descending into its chain
+			if (currentChild.getClass() == Rule.class) {
+				Rule childRule = ((Rule)currentChild);
+				listener.enterRule(childRule);
+				List<Object> children =
+						selectChain(grammar, childRule, contents, listener);
+				if (children == STOPPED) {
+					return false;
+				}
+				if (children == null) {
+					listener.exitRule(childRule);
+					logReturn(childRule, 0, contents);
+					continue;
+				}
+				Frame childFrame = new Frame(childRule, children, tokenCount,
+						ParseTree.NO_NODE);
+				
+				// If this Rule ends the chain, its parent is finished as well.
+				// Unless we are logging its return, drop it now so that right
+				// recursive rules do not grow the stack. The child exits the
+				// parent once it is done.
+				if (frame.position == frame.children.size() &&
+						LogUtilities.isActive() == false) {
+					stack.remove(stack.size() - 1);
+					childFrame.pendingExits = frame.pendingExits == null ?
+							new PendingExits() : frame.pendingExits;
+					childFrame.pendingExits.push(frame.rule);
+				}
+				stack.add(childFrame);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the chain of the given Rule that matches the start of the
+	 * contents, or null if the Rule matches nothing here and the parent
+	 * node should move on. Errors are passed to the listener, and STOPPED is
+	 * returned.
+	 */
+	private static List<Object> selectChain(Grammar grammar, Rule rule,
+			Cursor contents, ParseListener listener) {
 		// Remove leading whitespace
 		StringUtilities.removeLeadingWhitespace(contents);
 		
-		// Return an empty list if we've reached the end of the string
-		if (contents.length() == 0) {
-			return new ArrayList<Token>();
+		// Match nothing if we've reached the end of the string
+		if (contents.hasRemaining() == false) {
+			return null;
 		}
 		
-		LogUtilities.logln(StringUtilities.padRight(rule.name + ":", 30) +
-				"\"" + StringUtilities.escaped(contents.toString() +
-				"\""));
-		
-		// Initialize the results
-		List<Token> result = new ArrayList<Token>();
+		if (LogUtilities.isActive()) {
+			LogUtilities.logln(StringUtilities.padRight(rule.name + ":", 30) +
+					"\"" + StringUtilities.escaped(contents.toString() +
+					"\""));
+		}
 		
 		// Extract the first character
-		Character firstCharacter = contents.charAt(0);
+		Character firstCharacter = contents.peek();
 		
-		// If this rule cannot parse this string, return an empty list to
-		// signify that the parent node should pick a different chain.
+		// If this rule cannot parse this string, return null to signify that
+		// the parent node should pick a different chain.
 		Set<TokenType> nextTokenTypes = new HashSet<TokenType>();
-		for (TokenType expectedTokenType : rule.startingTokenTypes) {
+		for (TokenType expectedTokenType : grammar.getFirstSet(rule)) {
 			Set<Character> startingCharacters =
 					expectedTokenType.stateMachine.startingCharacters; 
 			if (startingCharacters.contains(firstCharacter)) {
@@ -102,147 +396,363 @@ public class ReportGenerator {
 		
 		// Get the actual next token. In the event that more than one token is
 		// possible, choose the longest token.
-		// TODO: Incorporate the information from this computation into the
-		// overarching flow of this method to prevent recomputation.
-		TokenType nextTokenType = null;
-		if (nextTokenTypes.size() > 1) {
-			// Compute the lengths of all possible token types
-			Map<Integer, Set<TokenType>> tokenTypeLengthMap =
-					new HashMap<Integer, Set<TokenType>>();
-			for (TokenType tokenType : nextTokenTypes) {
-				int length = TokenGenerator.getTokenLength(tokenType, contents);
-				if (tokenTypeLengthMap.containsKey(length) == false) {
-					tokenTypeLengthMap.put(length, new HashSet<TokenType>());
-				}
-				tokenTypeLengthMap.get(length).add(tokenType);
+		TokenType nextTokenType =
+				TokenGenerator.getNextTokenType(nextTokenTypes, contents);
+		if (nextTokenType == null) {
+			if (LogUtilities.isActive()) {
+				LogUtilities.logln(getSyntaxErrorMessage(rule, contents));
 			}
-			// Get the longest length
-			int length = Integer.MIN_VALUE;
-			for (int currentLength : tokenTypeLengthMap.keySet()) {
-				if (length < currentLength) {
-					length = currentLength;
-				}
+			
+			// Unless this rule can be empty, it is a syntax error
+			if (grammar.isNullable(rule) == false) {
+				listener.error(getSyntaxErrorMessage(rule, contents));
+				return STOPPED;
 			}
+			return null;
+		}
+		
+		// Look up the chain that starts with the next token
+		int chainIndex = grammar.predict(rule, nextTokenType);
+		
+		// A conflict of the grammar goes to the chain that starts with the
+		// next token, as long as only one chain does
+		if (chainIndex == Grammar.AMBIGUOUS_CHAIN) {
+			chainIndex = grammar.resolve(rule, nextTokenType);
+		}
+		
+		// If multiple possible children are detected, the grammar is ambiguous.
+		if (chainIndex == Grammar.AMBIGUOUS_CHAIN) {
+			ErrorUtilities.throwGrammarError(getAmbiguousGrammarMessage(rule,
+					nextTokenType, contents));
+		}
+		
+		// If no possible children are detected, the grammar's starting
+		// characters were inappropriately generated.
+		if (chainIndex == Grammar.NO_CHAIN) {
+			ErrorUtilities.throwGrammarError(
+					"No valid possible children detected.");
+		}
+		
+		// Extract the child rule
+		List<Object> children = rule.possibleChildren.get(chainIndex);
+		
+		LogUtilities.log("Intending to match: ");
+		for (Object currentChild : children) {
+			if (currentChild.getClass() == TokenType.class) {
+				LogUtilities.log(((TokenType)currentChild).name + ' ');
+			}
+			if (currentChild.getClass() == Rule.class) {
+				LogUtilities.log(((Rule)currentChild).name + ' ');
+			}
+		}
+		LogUtilities.logln();
+		
+		return children;
+	}
+	
+	/**
+	 * This function does the work for a TokenBuffer, in the same way as the
+	 * descent over a Cursor, starting with the given Rule at the given token
+	 * and returning the index of the token after it. If a result is given,
+	 * every Token that is matched is added to it, and if an arena is given,
+	 * every Rule and TokenType that is matched is added to it as a node. If
+	 * reuse is given, Rules that the previous tree already matched are
+	 * copied from it into the arena. If recovery is given, syntax errors are
+	 * recorded in it rather than thrown.
+	 */
+	private static int descend(Grammar grammar, TokenBuffer tokens,
+			Rule rule, int index, List<Token> result, TreeArena arena,
+			Reuse reuse, Recovery recovery) {
+		// Count the matched tokens, for logging
+		int tokenCount = 0;
+		
+		// Start with the chain of the given Rule
+		List<Frame> stack = new ArrayList<Frame>();
+		int rootNode = arena == null ? ParseTree.NO_NODE :
+				arena.add(rule.index, ParseTree.NO_NODE, index, index);
+		List<Object> rootChildren =
+				selectChain(grammar, rule, tokens, index, recovery);
+		if (rootChildren == STOPPED) {
+			recovery.report(getSyntaxErrorMessage(rule,
+					tokens.getCursor(index)), tokens, index);
+			index = recovery.skip(grammar, rule, tokens, index);
+			rootChildren = null;
+		}
+		if (rootChildren != null) {
+			stack.add(new Frame(rule, rootChildren, tokenCount, rootNode));
+		}
+		
+		while (stack.isEmpty() == false) {
+			Frame frame = stack.get(stack.size() - 1);
 			
-			// Handle ambiguity
-			if (tokenTypeLengthMap.get(length).size() > 1) {
-				
-				Set<TokenType> ambiguousTokenTypes = new HashSet<TokenType>();
-				ambiguousTokenTypes.addAll(
-						tokenTypeLengthMap.get(length));
-				Set<TokenType> reservedWordTokens = new HashSet<TokenType>();
-				for (TokenType ambiguousTokenType : ambiguousTokenTypes) {
-					if (ambiguousTokenType.reservedWord) {
-						reservedWordTokens.add(ambiguousTokenType);
-					}
+			// Once a chain is complete, return to the chain of its parent
+			if (frame.position == frame.children.size()) {
+				stack.remove(stack.size() - 1);
+				if (stack.isEmpty() == false) {
+					logReturn(frame.rule, tokenCount - frame.tokenCount,
+							tokens.getCursor(index));
+				}
+				continue;
+			}
+			Object currentChild = frame.children.get(frame.position);
+			frame.position++;
+
+			// Handle the case of finding a TokenType. A TokenType that can be
+			// empty matches nothing if the next token is of another type.
+			if (currentChild.getClass() == TokenType.class) {
+				TokenType tokenType = (TokenType)currentChild;
+				if (LogUtilities.isActive()) {
+					LogUtilities.logln("Now matching the " +
+							tokenType.name + " TokenType.\t" +
+							StringUtilities.escaped(
+									tokens.getCursor(index).toString()));
 				}
 				
-				if (reservedWordTokens.size() == 1) {
-					nextTokenType = reservedWordTokens.iterator().next();
+				int start = index;
+				Token token = null;
+				if (index < tokens.size &&
+						tokens.getTokenType(index) == tokenType) {
+					token = tokens.getToken(index);
+					index++;
+				} else if (grammar.isNullable(tokenType)) {
+					token = new Token(tokenType, "");
+				} else if (recovery == null) {
+					ErrorUtilities.throwSyntaxError(getSyntaxErrorMessage(
+							tokenType, tokens, index), tokens.getStart(index));
 				} else {
-					String msg = "";
-					if (length == 0) {
-						msg += "None of the following token types can start " +
-								"the remaining string: [ ";
-					} else {
-						msg += "Ambiguous next token. Could be any of the " + 
-							"following: [";
-					}
-					
-					for (TokenType token : tokenTypeLengthMap.get(length)) {
-						msg += token.name + ' ';
-					}
-					msg += "]\n\nContents: " +
-							StringUtilities.escaped(contents.toString());
-					ErrorUtilities.throwError(msg);
+					// Give up on the rest of the chain, and resume at a
+					// token that can follow its Rule
+					recovery.report(getSyntaxErrorMessage(
+							tokenType, tokens, index), tokens, index);
+					index = recovery.skip(grammar, frame.rule, tokens, index);
+					frame.position = frame.children.size();
+					continue;
+				}
+				tokenCount++;
+				if (result != null) {
+					result.add(token);
+				}
+				if (arena != null) {
+					arena.add(-1 - grammar.getTokenTypeIndex(tokenType),
+							frame.node, start, index);
 				}
-			} else {
-				nextTokenType =
-						tokenTypeLengthMap.get(length).iterator().next();
 			}
-		} else if (nextTokenTypes.size() == 1) {
-			nextTokenType = nextTokenTypes.iterator().next();
-		} else {
-			String msg = 
-					"Potential Syntax error: Expected one of the following " +
-					"tokens: [ ";
-			for (TokenType startingTokenType: rule.startingTokenTypes) {
-				msg += startingTokenType.name + ' ';
-			}
-			msg += "]\n\nContents: " +
-					StringUtilities.escaped(contents.toString());
-			
-			msg += "\n\nRule: " + rule.name;
-			LogUtilities.logln(msg);
 			
-			if (rule.startingTokenTypes.contains(RegExLanguage.EPSILON)
-					== false) {
-				// TODO: This is a hack for determining if any of the starting
-				// token types are equivalent to RegExLanguage.EPSILON.
-				for (TokenType tokenType : rule.startingTokenTypes) {
-					if (tokenType.stateMachine.states.size() == 1) {
-						return new ArrayList<Token>();
+			// Handle the case of finding a Rule, descending into its chain
+			if (currentChild.getClass() == Rule.class) {
+				Rule childRule = ((Rule)currentChild);
+				
+				// Copy the Rule from the previous tree if it matched it here
+				if (reuse != null && index >= reuse.changeEnd) {
+					int oldNode = reuse.find(childRule, index);
+					if (oldNode != ParseTree.NO_NODE) {
+						index = reuse.copy(oldNode, arena, frame.node);
+						continue;
 					}
 				}
-				ErrorUtilities.throwError(msg);
+				
+				int node = arena == null ? ParseTree.NO_NODE :
+						arena.add(childRule.index, frame.node, index, index);
+				List<Object> children =
+						selectChain(grammar, childRule, tokens, index, recovery);
+				if (children == STOPPED) {
+					recovery.report(getSyntaxErrorMessage(childRule,
+							tokens.getCursor(index)), tokens, index);
+					index = recovery.skip(grammar, childRule, tokens, index);
+					children = null;
+				}
+				if (children == null) {
+					logReturn(childRule, 0, tokens.getCursor(index));
+					continue;
+				}
+				
+				// If this Rule ends the chain, its parent is finished as well.
+				// Unless we are logging its return, drop it now so that right
+				// recursive rules do not grow the stack.
+				if (frame.position == frame.children.size() &&
+						LogUtilities.isActive() == false) {
+					stack.remove(stack.size() - 1);
+				}
+				stack.add(new Frame(childRule, children, tokenCount, node));
 			}
-			
-			return new ArrayList<Token>();
 		}
 		
-		// Get the possible chains that can match the first character of this
-		// string
-		List<ArrayList<Object>> possibleChildren =
-				new ArrayList<ArrayList<Object>>();
+		return index;
+	}
+	
+	/**
+	 * Throws an exception, or records it if recovery is given, if the
+	 * descent over the given tokens stopped before the last of them, since
+	 * there was a syntax error.
+	 */
+	private static void checkConsumed(TokenBuffer tokens, int index,
+			List<Token> result, Recovery recovery) {
+		if (index < tokens.size) {
+			String errorMessage =
+					"Failed to parse all of the contents.";
+			errorMessage += "\n  contents remaining: \"" +
+					StringUtilities.escaped(
+							tokens.getCursor(index).toString()) + "\"";
+			errorMessage += "\n  tokens parsed:      " + result;
+			if (recovery == null) {
+				ErrorUtilities.throwSyntaxError(errorMessage,
+						tokens.getStart(index));
+			}
+			recovery.report(errorMessage, tokens, index);
+		}
+	}
+	
+	/**
+	 * Returns the node just past the last descendant of the given node. Since
+	 * nodes are numbered in preorder and the tokens of the nodes never go
+	 * backwards in that order, the nodes after the subtree are found by
+	 * binary search, past any empty nodes that end the subtree.
+	 */
+	private static int getSubtreeEnd(ParseTree tree, int node) {
+		int tokenEnd = tree.getTokenEnd(node);
+		int start = node + 1;
+		int end = tree.size;
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (tree.getTokenStart(middle) < tokenEnd) {
+				start = middle + 1;
+			} else {
+				end = middle;
+			}
+		}
+		while (start < tree.size && tree.getParent(start) >= node) {
+			start++;
+		}
+		return start;
+	}
+	
+	/**
+	 * Returns a copy of the previous tree in which the subtree of the given
+	 * node is replaced by the nodes of the arena, renumbering the nodes after
+	 * it and moving the tokens after the change.
+	 */
+	private static ParseTree splice(ParseTree previous, TokenBufferDiff diff,
+			int node, int after, TreeArena arena) {
+		int nodeShift = arena.size - (after - node);
+		int tokenShift = diff.getShift();
+		int tokenEnd = previous.getTokenEnd(node);
+		int size = previous.size + nodeShift;
+		int[] kinds = new int[size];
+		int[] parents = new int[size];
+		int[] firstChildren = new int[size];
+		int[] nextSiblings = new int[size];
+		int[] tokenStarts = new int[size];
+		int[] tokenEnds = new int[size];
 		
-		for (ArrayList<Object> possibleChain : rule.possibleChildren) {
-			Object firstElement = possibleChain.get(0);
-			
-			// Handle the case of finding a TokenType first
-			if (firstElement.getClass() == TokenType.class) {
-				TokenType firstItem = (TokenType)firstElement;
-				if (nextTokenType == firstItem) {
-					possibleChildren.add(possibleChain);
-				}
+		// Copy the nodes before and after the subtree
+		for (int oldNode = 0; oldNode < previous.size; oldNode++) {
+			if (oldNode == node) {
+				oldNode = after - 1;
+				continue;
 			}
-			
-			// Handle the case of finding a Rule first
-			if (firstElement.getClass() == Rule.class) {
-				Rule firstItem = (Rule)firstElement;
-				if (firstItem.startingTokenTypes.contains(nextTokenType)) {
-					possibleChildren.add(possibleChain);
-				}
+			int newNode = oldNode < node ? oldNode : oldNode + nodeShift;
+			kinds[newNode] = previous.getKind(oldNode);
+			parents[newNode] = previous.getParent(oldNode);
+			firstChildren[newNode] = renumber(
+					previous.getFirstChild(oldNode), after, nodeShift);
+			nextSiblings[newNode] = renumber(
+					previous.getNextSibling(oldNode), after, nodeShift);
+			tokenStarts[newNode] = renumber(
+					previous.getTokenStart(oldNode), tokenEnd, tokenShift);
+			tokenEnds[newNode] = renumber(
+					previous.getTokenEnd(oldNode), tokenEnd, tokenShift);
+			if (oldNode > node) {
+				parents[newNode] = renumber(parents[newNode], after, nodeShift);
 			}
 		}
 		
-		// If multiple possible children are detected, the grammar is ambiguous.
-		if (possibleChildren.size() > 1) {
-			String msg = "Ambiguous grammar detected. Possible chains:\n";
-			for (ArrayList<Object> chain : possibleChildren) {
-				msg += "[ ";
-				for (Object currentChild : chain) {
-					if (currentChild.getClass() == TokenType.class) {
-						msg += ((TokenType)currentChild).name + ' ';
-					}
-					if (currentChild.getClass() == Rule.class) {
-						msg += ((Rule)currentChild).name + ' ';
-					}
-				}
-				msg += "]\n";
+		// Copy the nodes of the arena in place of the subtree
+		for (int arenaNode = 0; arenaNode < arena.size; arenaNode++) {
+			int newNode = node + arenaNode;
+			kinds[newNode] = arena.kinds[arenaNode];
+			parents[newNode] = renumber(arena.parents[arenaNode], 0, node);
+			firstChildren[newNode] =
+					renumber(arena.firstChildren[arenaNode], 0, node);
+			nextSiblings[newNode] =
+					renumber(arena.nextSiblings[arenaNode], 0, node);
+			tokenStarts[newNode] = arena.tokenStarts[arenaNode];
+			tokenEnds[newNode] = arena.tokenEnds[arenaNode];
+		}
+		parents[node] = previous.getParent(node);
+		nextSiblings[node] = renumber(previous.getNextSibling(node), after,
+				nodeShift);
+		
+		return new ParseTree(previous.grammar, diff.newTokens, kinds, parents,
+				firstChildren, nextSiblings, tokenStarts, tokenEnds, size);
+	}
+	
+	/**
+	 * Returns the given node or token index moved by the given amount if it is
+	 * at least the given threshold.
+	 */
+	private static int renumber(int value, int threshold, int shift) {
+		return value != ParseTree.NO_NODE && value >= threshold ?
+				value + shift : value;
+	}
+	
+	/**
+	 * Returns the chain of the given Rule that starts with the given token,
+	 * or null if the Rule matches nothing here and the parent node should
+	 * move on. If recovery is given, STOPPED is returned for a syntax error
+	 * rather than throwing it.
+	 */
+	private static List<Object> selectChain(Grammar grammar, Rule rule,
+			TokenBuffer tokens, int index, Recovery recovery) {
+		// Match nothing if we've reached the end of the tokens
+		if (index == tokens.size) {
+			return null;
+		}
+		
+		if (LogUtilities.isActive()) {
+			LogUtilities.logln(StringUtilities.padRight(rule.name + ":", 30) +
+					"\"" + StringUtilities.escaped(
+							tokens.getCursor(index).toString() + "\""));
+		}
+		
+		// A Rule that can be empty matches nothing unless the next token
+		// starts one of its chains, in the same way as when the descent lexes
+		// the characters itself
+		TokenType nextTokenType = tokens.getTokenType(index);
+		if (grammar.isNullable(rule) &&
+				grammar.getFirstSet(rule).contains(nextTokenType) == false) {
+			return null;
+		}
+		
+		// Look up the chain that starts with the next token
+		int chainIndex = grammar.predict(rule, nextTokenType);
+		
+		// A conflict of the grammar goes to the chain that starts with the
+		// next token, as long as only one chain does
+		if (chainIndex == Grammar.AMBIGUOUS_CHAIN) {
+			chainIndex = grammar.resolve(rule, nextTokenType);
+		}
+		
+		// If no chain starts with the next token, it is a syntax error
+		if (chainIndex == Grammar.NO_CHAIN) {
+			if (LogUtilities.isActive()) {
+				LogUtilities.logln(getSyntaxErrorMessage(rule,
+						tokens.getCursor(index)));
+			}
+			if (recovery != null) {
+				return STOPPED;
 			}
-			msg += "\n\nContents: " +
-					StringUtilities.escaped(contents.toString());
-			ErrorUtilities.throwError(msg);
+			ErrorUtilities.throwSyntaxError(getSyntaxErrorMessage(rule,
+					tokens.getCursor(index)), tokens.getStart(index));
 		}
 		
-		// If no possible children are detected, the grammar's starting
-		// characters were inappropriately generated.
-		if (possibleChildren.size() == 0) {
-			ErrorUtilities.throwError("No valid possible children detected.");
+		// If multiple possible children are detected, the grammar is ambiguous.
+		if (chainIndex == Grammar.AMBIGUOUS_CHAIN) {
+			ErrorUtilities.throwGrammarError(getAmbiguousGrammarMessage(rule,
+					nextTokenType, tokens.getCursor(index)));
 		}
 		
 		// Extract the child rule
-		List<Object> children = possibleChildren.get(0);
+		List<Object> children = rule.possibleChildren.get(chainIndex);
 		
 		LogUtilities.log("Intending to match: ");
 		for (Object currentChild : children) {
@@ -255,45 +765,326 @@ public class ReportGenerator {
 		}
 		LogUtilities.logln();
 		
-		// Iterator over the children, recursively calling this method on each
-		// of them.
-		for (Object currentChild : children) {
-
-			// Handle the case of finding a TokenType
-			if (currentChild.getClass() == TokenType.class) {
-				StringUtilities.removeLeadingWhitespace(contents);
-				LogUtilities.logln("Now matching the " +
-						((TokenType)currentChild).name + " TokenType.\t" +
-						StringUtilities.escaped(contents.toString()));
-				
-				result.add(TokenGenerator.generate(
-						(TokenType)currentChild, contents));
+		return children;
+	}
+	
+	/**
+	 * Logs that the given Rule has been matched, along with the number of
+	 * tokens that it produced.
+	 */
+	private static void logReturn(Rule rule, int tokenCount,
+			Cursor contents) {
+		if (LogUtilities.isActive() == false) {
+			return;
+		}
+		if (rule.startingTokenTypes.contains(null) == false &&
+				tokenCount == 0) {
+			
+			LogUtilities.log(rule.name + ": [");
+			for (TokenType tokenType :
+					TokenType.sort(rule.startingTokenTypes)) {
+				LogUtilities.log(tokenType.name + ' ');
+			}
+			LogUtilities.logln(']');
+			LogUtilities.logln(
+					StringUtilities.escaped(
+							contents.toString()));
+		}
+		LogUtilities.logln(rule.name + " returned " +
+				tokenCount + " token(s).");
+	}
+	
+	/**
+	 * Returns a message listing every chain of the given rule that can start
+	 * with the given token type.
+	 */
+	private static String getAmbiguousGrammarMessage(Rule rule,
+			TokenType nextTokenType, Cursor contents) {
+		String msg = "Ambiguous grammar detected. Possible chains:\n";
+		for (ArrayList<Object> chain : rule.possibleChildren) {
+			Object firstElement = chain.get(0);
+			if (firstElement != nextTokenType &&
+					(firstElement.getClass() != Rule.class ||
+					((Rule)firstElement).startingTokenTypes.contains(
+							nextTokenType) == false)) {
+				continue;
 			}
 			
-			// Handle the case of finding a Rule
-			if (currentChild.getClass() == Rule.class) {
-				Rule childRule = ((Rule)currentChild);
-				List<Token> tokens =
-						recursiveDescent(childRule, contents);
-				result.addAll(tokens);
-				if (childRule.startingTokenTypes.contains(null) == false &&
-						tokens.size() == 0) {
-					
-					LogUtilities.log(childRule.name + ": [");
-					for (TokenType tokenType : childRule.startingTokenTypes) {
-						LogUtilities.log(tokenType.name + ' ');
-					}
-					LogUtilities.logln(']');
-					LogUtilities.logln(
-							StringUtilities.escaped(
-									contents.toString()));
+			msg += "[ ";
+			for (Object currentChild : chain) {
+				if (currentChild.getClass() == TokenType.class) {
+					msg += ((TokenType)currentChild).name + ' ';
+				}
+				if (currentChild.getClass() == Rule.class) {
+					msg += ((Rule)currentChild).name + ' ';
 				}
-				LogUtilities.logln(((Rule)currentChild).name + " returned " +
-						tokens.size() + " token(s).");
 			}
+			msg += "]\n";
+		}
+		msg += "\n\nContents: " +
+				StringUtilities.escaped(contents.toString());
+		return msg;
+	}
+	
+	/**
+	 * Returns a message describing the token types that the given rule
+	 * expected to find at the current position of the contents.
+	 */
+	private static String getSyntaxErrorMessage(Rule rule, Cursor contents) {
+		String msg = 
+				"Potential Syntax error: Expected one of the following " +
+				"tokens: [ ";
+		for (TokenType startingTokenType :
+				TokenType.sort(rule.startingTokenTypes)) {
+			msg += startingTokenType.name + ' ';
 		}
+		msg += "]\n\nContents: " +
+				StringUtilities.escaped(contents.toString());
+		
+		msg += "\n\nRule: " + rule.name;
+		return msg;
+	}
+	
+	/**
+	 * Returns a message describing the token type that was expected at the
+	 * given token of the buffer.
+	 */
+	private static String getSyntaxErrorMessage(TokenType tokenType,
+			TokenBuffer tokens, int index) {
+		String msg = "Syntax error: Expected a " + tokenType.name + " token";
+		if (index < tokens.size) {
+			msg += ", but found a " + tokens.getTokenType(index).name +
+					" token";
+		}
+		msg += "\n\nContents: " +
+				StringUtilities.escaped(tokens.getCursor(index).toString());
+		return msg;
+	}
+	
+	/**
+	 * This is a bookkeeping class for descend, recording how far into the
+	 * chain of a Rule the descent has gotten.
+	 */
+	private static class Frame {
+		private final Rule rule;
+		private final List<Object> children;
+		private final int tokenCount;
+		private final int node;
+		private int position;
+		private PendingExits pendingExits;
 		
-		// Return the results
-		return result;
+		private Frame(Rule rule, List<Object> children, int tokenCount,
+				int node) {
+			this.rule = rule;
+			this.children = children;
+			this.tokenCount = tokenCount;
+			this.node = node;
+		}
+	}
+	
+	/**
+	 * This is a stack of the Rules whose frames were dropped before their
+	 * chains were complete, and which still have to be exited. Repeats of the
+	 * same Rule are counted rather than stored, so a long right recursive
+	 * chain only takes constant space.
+	 */
+	private static class PendingExits {
+		private final List<Rule> rules = new ArrayList<Rule>();
+		private final List<Integer> counts = new ArrayList<Integer>();
+		
+		private void push(Rule rule) {
+			int top = rules.size() - 1;
+			if (top >= 0 && rules.get(top) == rule) {
+				counts.set(top, counts.get(top) + 1);
+			} else {
+				rules.add(rule);
+				counts.add(1);
+			}
+		}
+		
+		private void exitAll(ParseListener listener) {
+			for (int i = rules.size() - 1; i >= 0; i--) {
+				for (int j = 0; j < counts.get(i); j++) {
+					listener.exitRule(rules.get(i));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This is a bookkeeping class for recovering from syntax errors in panic
+	 * mode, collecting the errors and skipping the tokens that follow them.
+	 */
+	private static class Recovery {
+		private final List<ParserException> errors;
+		private int resumeIndex = -1;
+		
+		private Recovery(List<ParserException> errors) {
+			this.errors = errors;
+		}
+		
+		/**
+		 * Records a syntax error at the given token, unless no token has been
+		 * matched since the parse last resumed.
+		 */
+		private void report(String message, TokenBuffer tokens, int index) {
+			if (index > resumeIndex) {
+				errors.add(new SyntaxException(message,
+						tokens.getStart(index)));
+			}
+		}
+		
+		/**
+		 * Returns the index of the next token that can follow the given Rule,
+		 * or of the end of the tokens, where the parse resumes.
+		 */
+		private int skip(Grammar grammar, Rule rule, TokenBuffer tokens,
+				int index) {
+			Set<TokenType> followSet = grammar.getFollowSet(rule);
+			while (index < tokens.size &&
+					followSet.contains(tokens.getTokenType(index)) == false) {
+				index++;
+			}
+			resumeIndex = index;
+			return index;
+		}
+	}
+	
+	/**
+	 * This is a bookkeeping class for reparsing a Rule of a previous tree,
+	 * finding and copying the Rules within it that start after the changed
+	 * tokens, since they still match the same tokens. It counts the nodes
+	 * that it copies.
+	 */
+	private static class Reuse {
+		private final ParseTree previous;
+		private final int subtreeStart;
+		private final int subtreeEnd;
+		private final int changeEnd;
+		private final int tokenShift;
+		private int copied;
+		
+		private Reuse(ParseTree previous, int subtreeStart, int subtreeEnd,
+				int changeEnd, int tokenShift) {
+			this.previous = previous;
+			this.subtreeStart = subtreeStart;
+			this.subtreeEnd = subtreeEnd;
+			this.changeEnd = changeEnd;
+			this.tokenShift = tokenShift;
+		}
+		
+		/**
+		 * Returns the node of the subtree being reparsed where the given
+		 * Rule started at the given new token, or NO_NODE if there is none.
+		 */
+		private int find(Rule rule, int index) {
+			int tokenStart = index - tokenShift;
+			int start = subtreeStart;
+			int end = subtreeEnd;
+			while (start < end) {
+				int middle = (start + end) >>> 1;
+				if (previous.getTokenStart(middle) < tokenStart) {
+					start = middle + 1;
+				} else {
+					end = middle;
+				}
+			}
+			for (int node = start; node < subtreeEnd &&
+					previous.getTokenStart(node) == tokenStart; node++) {
+				if (previous.getKind(node) == rule.index) {
+					return node;
+				}
+			}
+			return ParseTree.NO_NODE;
+		}
+		
+		/**
+		 * Adds the subtree of the given node to the arena under the given
+		 * parent, and returns the new token after it.
+		 */
+		private int copy(int node, TreeArena arena, int parent) {
+			int after = getSubtreeEnd(previous, node);
+			int offset = arena.size - node;
+			copied += after - node;
+			for (int oldNode = node; oldNode < after; oldNode++) {
+				arena.add(previous.getKind(oldNode), oldNode == node ?
+						parent : previous.getParent(oldNode) + offset,
+						previous.getTokenStart(oldNode) + tokenShift,
+						previous.getTokenEnd(oldNode) + tokenShift);
+			}
+			return previous.getTokenEnd(node) + tokenShift;
+		}
+	}
+	
+	/**
+	 * This is a growable arena of parse tree nodes, with each field of the
+	 * nodes kept in its own array, from which a ParseTree is made once the
+	 * descent is complete.
+	 */
+	private static class TreeArena {
+		private int[] kinds = new int[64];
+		private int[] parents = new int[64];
+		private int[] firstChildren = new int[64];
+		private int[] lastChildren = new int[64];
+		private int[] nextSiblings = new int[64];
+		private int[] tokenStarts = new int[64];
+		private int[] tokenEnds = new int[64];
+		private int size;
+		
+		/**
+		 * Adds a node as the last child of the given parent, and returns it.
+		 */
+		private int add(int kind, int parent, int tokenStart, int tokenEnd) {
+			if (size == kinds.length) {
+				int capacity = size * 2;
+				kinds = Arrays.copyOf(kinds, capacity);
+				parents = Arrays.copyOf(parents, capacity);
+				firstChildren = Arrays.copyOf(firstChildren, capacity);
+				lastChildren = Arrays.copyOf(lastChildren, capacity);
+				nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+				tokenStarts = Arrays.copyOf(tokenStarts, capacity);
+				tokenEnds = Arrays.copyOf(tokenEnds, capacity);
+			}
+			int node = size;
+			size++;
+			kinds[node] = kind;
+			parents[node] = parent;
+			firstChildren[node] = ParseTree.NO_NODE;
+			lastChildren[node] = ParseTree.NO_NODE;
+			nextSiblings[node] = ParseTree.NO_NODE;
+			tokenStarts[node] = tokenStart;
+			tokenEnds[node] = tokenEnd;
+			
+			if (parent != ParseTree.NO_NODE) {
+				if (lastChildren[parent] == ParseTree.NO_NODE) {
+					firstChildren[parent] = node;
+				} else {
+					nextSiblings[lastChildren[parent]] = node;
+				}
+				lastChildren[parent] = node;
+			}
+			return node;
+		}
+		
+		/**
+		 * Sets the end of every Rule from the ends of its children. Since
+		 * every node is added after its parent, this takes one backwards
+		 * pass.
+		 */
+		private void finish() {
+			for (int node = size - 1; node > 0; node--) {
+				int parent = parents[node];
+				tokenEnds[parent] = Math.max(tokenEnds[parent], tokenEnds[node]);
+			}
+		}
+		
+		/**
+		 * Returns the ParseTree of the nodes added so far.
+		 */
+		private ParseTree toParseTree(Grammar grammar, TokenBuffer tokens) {
+			finish();
+			return new ParseTree(grammar, tokens, kinds, parents,
+					firstChildren, nextSiblings, tokenStarts, tokenEnds, size);
+		}
 	}
 }
@@ -0,0 +1,34 @@
+package generators;
+
+import grammar.defaults.RegExGrammar;
+import language.defaults.RegExLanguage;
+import utilities.SnapshotUtilities;
+
+/**
+ * This class writes the bootstrap snapshot, and is meant to be run at build
+ * time after compiling, with the snapshot written next to token_spec in the
+ * output directory. For example:
+ *
+ *     java -cp bin generators.SnapshotGenerator
+ *             bin/generators/resources/bootstrap.snapshot
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class SnapshotGenerator {
+	public static void main(String[] args) {
+		if (args.length != 1) {
+			System.out.println("Usage: java generators.SnapshotGenerator " +
+					"<snapshot file>");
+			System.exit(1);
+		}
+
+		// Build every object from scratch, rather than from an existing
+		// snapshot
+		System.setProperty(SnapshotUtilities.DISABLE_PROPERTY, "true");
+
+		SnapshotUtilities.writeSnapshot(args[0],
+				RegExLanguage.instance,
+				RegExGrammar.instance,
+				GrammarGenerator.getTokenSpecGrammar());
+	}
+}
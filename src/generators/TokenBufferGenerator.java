@@ -0,0 +1,541 @@
+package generators;
+
+import immutable.ByteTransitionTable;
+import immutable.Edit;
+import immutable.Language;
+import immutable.TokenBuffer;
+import immutable.TokenBufferDiff;
+import immutable.TokenType;
+import immutable.TransitionTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import utilities.Cursor;
+import utilities.ErrorUtilities;
+import utilities.LexicalException;
+import utilities.MappedCharSequence;
+import utilities.ParserException;
+import utilities.StringUtilities;
+
+/**
+ * This class handles lexing a document into a TokenBuffer once, separately
+ * from parsing it. Unlike the lexing done while descending through a Grammar,
+ * every token is chosen from the same set of token types, regardless of
+ * which rules could come next.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class TokenBufferGenerator {
+
+	/**
+	 * The number of tokens that a new buffer has room for.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Splits the contents into tokens of the given types. Whitespace other
+	 * than new lines is skipped between tokens, and each token is the longest
+	 * match of any of the token types, with ties broken the same way as in
+	 * TokenGenerator.getNextTokenType.
+	 */
+	public static TokenBuffer generate(Collection<TokenType> tokenTypes,
+			CharSequence rawContents) {
+		return generate(tokenTypes, rawContents, null);
+	}
+
+	/**
+	 * Splits the contents into tokens in the same way, recovering from
+	 * characters that no token can start rather than stopping at the first
+	 * of them. Each error is added to the given list, and lexing resumes at
+	 * the next character that some token type can start. If the list is null,
+	 * the first error is thrown instead.
+	 */
+	public static TokenBuffer generate(Collection<TokenType> tokenTypes,
+			CharSequence rawContents, List<ParserException> errors) {
+		Cursor contents = new Cursor(rawContents);
+		Lexer lexer = new Lexer(tokenTypes, errors);
+		while (lexer.lex(contents)) {
+		}
+		return new TokenBuffer(rawContents, lexer.types, lexer.starts,
+				lexer.ends, lexer.size);
+	}
+
+	/**
+	 * Splits the UTF-8 bytes from the position of the given buffer up to its
+	 * limit into tokens of the given types, in the same way as the other
+	 * generate methods, but without decoding the bytes into characters
+	 * first. Instead, the tables of the token types are lowered to bytes (see
+	 * ByteTransitionTable), so the lexer reads every byte once, straight from
+	 * the buffer. The contents of the resulting TokenBuffer are a
+	 * MappedCharSequence that decodes the bytes as they are read, and the
+	 * offsets of the tokens and errors are those of their characters within
+	 * it, as with the other generate methods.
+	 *
+	 * Note: Only token types that are matched as a DFA can be lexed from
+	 * bytes, and only ASCII whitespace is skipped between tokens. Unlike
+	 * FileUtilities.getFileContents, the line separators are left as they
+	 * are.
+	 */
+	public static TokenBuffer generate(Collection<TokenType> tokenTypes,
+			ByteBuffer rawContents) {
+		return generate(tokenTypes, rawContents, null);
+	}
+
+	/**
+	 * Splits the UTF-8 bytes into tokens in the same way, recovering from
+	 * bytes that no token can start as the other generate methods do.
+	 */
+	public static TokenBuffer generate(Collection<TokenType> tokenTypes,
+			ByteBuffer rawContents, List<ParserException> errors) {
+		ByteBuffer bytes = rawContents.slice();
+		MappedCharSequence contents = new MappedCharSequence(bytes, false,
+				Charset.forName("UTF-8"), false);
+		Lexer lexer = new Lexer(tokenTypes, errors);
+		ByteLexer byteLexer = new ByteLexer(tokenTypes, lexer, contents);
+		int offset = 0;
+		while (offset >= 0) {
+			offset = byteLexer.lex(bytes, offset);
+		}
+		return new TokenBuffer(contents, lexer.types, lexer.starts,
+				lexer.ends, lexer.size);
+	}
+
+	/**
+	 * Applies the edit to the contents of the given tokens and lexes the
+	 * result, relexing only the tokens that the edit damaged. Lexing restarts
+	 * one token before the edit, in case the edit extends that token, and
+	 * stops as soon as a token would start where an undamaged token started
+	 * before, since everything after it lexes the same way. The tokens
+	 * outside of that range are reused, shifted by the length of the edit.
+	 *
+	 * Note: This assumes that deciding where a token ends never looks further
+	 * ahead than the end of the following token.
+	 */
+	public static TokenBufferDiff relex(Collection<TokenType> tokenTypes,
+			TokenBuffer oldTokens, Edit edit) {
+		CharSequence rawContents = edit.apply(oldTokens.contents);
+		int shift = edit.insertedText.length() - edit.deletedLength;
+		int editEnd = edit.offset + edit.deletedLength;
+
+		// Find the first token that ends at or after the edit, and back up
+		// one more token
+		int start = 0;
+		int end = oldTokens.size;
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (oldTokens.getEnd(middle) < edit.offset) {
+				start = middle + 1;
+			} else {
+				end = middle;
+			}
+		}
+		start = Math.max(0, start - 1);
+
+		// Keep the tokens before it
+		Lexer lexer = new Lexer(tokenTypes, null);
+		for (int i = 0; i < start; i++) {
+			lexer.append(oldTokens.getTokenType(i), oldTokens.getStart(i),
+					oldTokens.getEnd(i));
+		}
+
+		// Relex until the new tokens line up with the old ones again
+		Cursor contents = new Cursor(rawContents);
+		contents.setOffset(start > 0 ? oldTokens.getEnd(start - 1) : 0);
+		int oldEnd = start;
+		while (true) {
+			StringUtilities.removeLeadingWhitespace(contents);
+			int offset = contents.getOffset();
+			while (oldEnd < oldTokens.size &&
+					(oldTokens.getStart(oldEnd) < editEnd ||
+					oldTokens.getStart(oldEnd) + shift < offset)) {
+				oldEnd++;
+			}
+			if (oldEnd < oldTokens.size &&
+					oldTokens.getStart(oldEnd) + shift == offset) {
+				break;
+			}
+			if (lexer.lex(contents) == false) {
+				break;
+			}
+		}
+		int newEnd = lexer.size;
+
+		// Leave out the relexed tokens that came out the same as before
+		while (start < oldEnd && start < newEnd &&
+				oldTokens.getEnd(start) <= edit.offset &&
+				oldTokens.getTokenType(start) == lexer.types[start] &&
+				oldTokens.getEnd(start) == lexer.ends[start]) {
+			start++;
+		}
+
+		// Reuse the tokens after it
+		for (int i = oldEnd; i < oldTokens.size; i++) {
+			lexer.append(oldTokens.getTokenType(i),
+					oldTokens.getStart(i) + shift, oldTokens.getEnd(i) + shift);
+		}
+
+		TokenBuffer newTokens = new TokenBuffer(rawContents, lexer.types,
+				lexer.starts, lexer.ends, lexer.size);
+		return new TokenBufferDiff(oldTokens, newTokens, start, oldEnd,
+				newEnd);
+	}
+
+	/**
+	 * This is the growable buffer of tokens being lexed. TokenStream lexes
+	 * with it one token at a time, without the buffer.
+	 */
+	static class Lexer {
+		private final Collection<TokenType> tokenTypes;
+		private final List<ParserException> errors;
+
+		/**
+		 * The offset where lexing last resumed after an error.
+		 */
+		private int resumeOffset = -1;
+
+		/**
+		 * The candidate token types of each first character.
+		 */
+		private final Map<Character, Set<TokenType>> candidates =
+				new HashMap<Character, Set<TokenType>>();
+
+		private TokenType[] types = new TokenType[INITIAL_CAPACITY];
+		private int[] starts = new int[INITIAL_CAPACITY];
+		private int[] ends = new int[INITIAL_CAPACITY];
+		private int size;
+
+		/**
+		 * The type of the token that was last matched.
+		 */
+		TokenType matchedTokenType;
+
+		Lexer(Collection<TokenType> tokenTypes, List<ParserException> errors) {
+			this.tokenTypes = tokenTypes;
+			this.errors = errors;
+		}
+
+		/**
+		 * Lexes the next token of the contents into the buffer, and returns
+		 * false if there are no more tokens.
+		 */
+		private boolean lex(Cursor contents) {
+			int length = match(contents);
+			if (length < 0) {
+				return false;
+			}
+			if (length > 0) {
+				append(matchedTokenType, contents.getOffset(),
+						contents.getOffset() + length);
+				contents.advance(length);
+			}
+			return true;
+		}
+
+		/**
+		 * Skips the whitespace at the start of the contents and matches the
+		 * next token, without consuming it. Returns the length of the token
+		 * and sets matchedTokenType to its type, or returns 0 if there was
+		 * an error that was recovered from, or -1 if there are no more
+		 * tokens.
+		 */
+		int match(Cursor contents) {
+			StringUtilities.removeLeadingWhitespace(contents);
+			if (contents.hasRemaining() == false) {
+				return -1;
+			}
+
+			// Match the next token, which must not be empty
+			TokenType tokenType = null;
+			int length = -1;
+			try {
+				tokenType = TokenGenerator.getNextTokenType(
+						getCandidates(contents.peek()), contents);
+				if (tokenType != null) {
+					length = TokenGenerator.probe(tokenType, contents);
+				}
+				if (length <= 0) {
+					ErrorUtilities.throwLexicalError("None of the token " +
+							"types can start the remaining string.\n\n" +
+							"Contents: " +
+							StringUtilities.escaped(contents.toString()),
+							contents.getOffset());
+				}
+			} catch (LexicalException exception) {
+				if (errors == null) {
+					throw exception;
+				}
+				recover(exception, contents);
+				return 0;
+			}
+
+			matchedTokenType = tokenType;
+			return length;
+		}
+
+		/**
+		 * Returns the token types that can start with the given character.
+		 */
+		private Set<TokenType> getCandidates(Character firstCharacter) {
+			Set<TokenType> result = candidates.get(firstCharacter);
+			if (result == null) {
+				result = new HashSet<TokenType>();
+				for (TokenType tokenType : tokenTypes) {
+					if (tokenType.stateMachine.startingCharacters.contains(
+							firstCharacter)) {
+						result.add(tokenType);
+					}
+				}
+				candidates.put(firstCharacter, result);
+			}
+			return result;
+		}
+
+		/**
+		 * Records the given error, unless it was found right where lexing
+		 * last resumed, and skips to the next character that is whitespace
+		 * or that some token type can start.
+		 */
+		private void recover(LexicalException exception, Cursor contents) {
+			if (contents.getOffset() != resumeOffset) {
+				errors.add(exception);
+			}
+			contents.advance(1);
+			while (contents.hasRemaining() &&
+					Character.isWhitespace(contents.peek()) == false &&
+					getCandidates(contents.peek()).isEmpty()) {
+				contents.advance(1);
+			}
+			resumeOffset = contents.getOffset();
+		}
+
+		/**
+		 * Adds a token to the buffer, growing it if necessary.
+		 */
+		private void append(TokenType tokenType, int start, int end) {
+			if (size == types.length) {
+				types = Arrays.copyOf(types, size * 2);
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			types[size] = tokenType;
+			starts[size] = start;
+			ends[size] = end;
+			size++;
+		}
+	}
+
+	/**
+	 * This lexes tokens from bytes into the buffer of a Lexer, by running
+	 * the ByteTransitionTable of each Language of the token types.
+	 */
+	private static class ByteLexer {
+		private final Lexer lexer;
+		private final MappedCharSequence contents;
+		private final ByteTransitionTable[] tables;
+
+		/**
+		 * The mask of the token types within each table.
+		 */
+		private final long[][] masks;
+
+		/**
+		 * The token types of each table, indexed by their index in its
+		 * Language.
+		 */
+		private final TokenType[][] indexedTokenTypes;
+
+		private ByteLexer(Collection<TokenType> tokenTypes, Lexer lexer,
+				MappedCharSequence contents) {
+			this.lexer = lexer;
+			this.contents = contents;
+
+			// Group the token types by the Language they belong to
+			Map<Language, List<TokenType>> languages =
+					new HashMap<Language, List<TokenType>>();
+			for (TokenType tokenType : tokenTypes) {
+				if (tokenType.index < 0) {
+					ErrorUtilities.throwGrammarError("The token type " +
+							tokenType.name + " is not matched as a DFA, so " +
+							"it cannot be lexed from bytes.");
+				}
+				if (languages.containsKey(tokenType.language) == false) {
+					languages.put(tokenType.language,
+							new ArrayList<TokenType>());
+				}
+				languages.get(tokenType.language).add(tokenType);
+			}
+
+			// Collect the table, mask and token types of each Language
+			tables = new ByteTransitionTable[languages.size()];
+			masks = new long[languages.size()][];
+			indexedTokenTypes = new TokenType[languages.size()][];
+			int i = 0;
+			for (Map.Entry<Language, List<TokenType>> entry :
+					languages.entrySet()) {
+				tables[i] = entry.getKey().getByteTable();
+				masks[i] = new long[tables[i].combinedTable.words];
+				indexedTokenTypes[i] = new TokenType[masks[i].length * 64];
+				for (TokenType tokenType : entry.getValue()) {
+					masks[i][tokenType.index >> 6] |= 1L << tokenType.index;
+					indexedTokenTypes[i][tokenType.index] = tokenType;
+				}
+				i++;
+			}
+		}
+
+		/**
+		 * Lexes the token at the given offset into the buffer, and returns
+		 * the offset after it, or -1 if there are no more tokens.
+		 */
+		private int lex(ByteBuffer bytes, int offset) {
+			while (offset < bytes.limit() && isWhitespace(bytes.get(offset))) {
+				offset++;
+			}
+			if (offset == bytes.limit()) {
+				return -1;
+			}
+
+			try {
+				// Find the longest match of any table, and the token types
+				// that match it
+				int length = 0;
+				List<TokenType> matches = new ArrayList<TokenType>();
+				for (int i = 0; i < tables.length; i++) {
+					ByteTransitionTable table = tables[i];
+					int currentState = table.initialState;
+					int acceptedState = TransitionTable.DEAD_STATE;
+					int acceptedLength = 0;
+					for (int j = offset; j < bytes.limit(); j++) {
+						currentState = table.getDestination(currentState,
+								bytes.get(j));
+						if (currentState == TransitionTable.DEAD_STATE ||
+								table.isAlive(currentState, masks[i]) ==
+								false) {
+							break;
+						}
+						if (table.isAccepting(currentState, masks[i])) {
+							acceptedState = currentState;
+							acceptedLength = j + 1 - offset;
+						}
+					}
+					if (acceptedState == TransitionTable.DEAD_STATE ||
+							acceptedLength < length) {
+						continue;
+					}
+					if (acceptedLength > length) {
+						matches.clear();
+						length = acceptedLength;
+					}
+					for (TokenType tokenType : indexedTokenTypes[i]) {
+						if (tokenType != null && table.isAccepting(
+								acceptedState, tokenType.index)) {
+							matches.add(tokenType);
+						}
+					}
+				}
+				if (length == 0) {
+					ErrorUtilities.throwLexicalError("None of the token " +
+							"types can start the remaining string.\n\n" +
+							"Contents: " + StringUtilities.escaped(
+							contents.subSequence(contents.getIndex(offset),
+							contents.length()).toString()),
+							contents.getIndex(offset));
+				}
+
+				lexer.append(getTokenType(matches, offset),
+						contents.getIndex(offset),
+						contents.getIndex(offset + length));
+				return offset + length;
+			} catch (LexicalException exception) {
+				if (lexer.errors == null) {
+					throw exception;
+				}
+				return recover(exception, bytes, offset);
+			}
+		}
+
+		/**
+		 * Returns the one token type among the given matches, or the one
+		 * reserved word among them, in the same way as
+		 * TokenGenerator.getNextTokenType.
+		 */
+		private TokenType getTokenType(List<TokenType> matches, int offset) {
+			if (matches.size() == 1) {
+				return matches.get(0);
+			}
+			List<TokenType> reservedWords = new ArrayList<TokenType>();
+			for (TokenType tokenType : matches) {
+				if (tokenType.reservedWord) {
+					reservedWords.add(tokenType);
+				}
+			}
+			if (reservedWords.size() == 1) {
+				return reservedWords.get(0);
+			}
+
+			String msg = "Ambiguous next token. Could be any of the " +
+					"following: [";
+			for (TokenType tokenType : matches) {
+				msg += tokenType.name + ' ';
+			}
+			int index = contents.getIndex(offset);
+			msg += "]\n\nContents: " + StringUtilities.escaped(
+					contents.subSequence(index, contents.length())
+					.toString());
+			ErrorUtilities.throwLexicalError(msg, index);
+			return null;
+		}
+
+		/**
+		 * Records the given error, unless it was found right where lexing
+		 * last resumed, and returns the offset of the next byte that is
+		 * whitespace or that some token type can start.
+		 */
+		private int recover(LexicalException exception, ByteBuffer bytes,
+				int offset) {
+			if (offset != lexer.resumeOffset) {
+				lexer.errors.add(exception);
+			}
+			offset++;
+			while (offset < bytes.limit() &&
+					isWhitespace(bytes.get(offset)) == false &&
+					canStart(bytes.get(offset)) == false) {
+				offset++;
+			}
+			lexer.resumeOffset = offset;
+			return offset;
+		}
+
+		/**
+		 * Returns true if some token type can start with the given byte.
+		 */
+		private boolean canStart(byte b) {
+			for (int i = 0; i < tables.length; i++) {
+				int state = tables[i].getDestination(tables[i].initialState,
+						b);
+				if (state != TransitionTable.DEAD_STATE &&
+						tables[i].isAlive(state, masks[i])) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Returns true if the given byte is ASCII whitespace other than a new
+		 * line, which is skipped between tokens.
+		 */
+		private static boolean isWhitespace(byte b) {
+			return b >= 0 && b != '\n' && Character.isWhitespace((char)b);
+		}
+	}
+}
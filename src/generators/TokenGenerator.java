@@ -1,107 +1,163 @@
 package generators;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import immutable.State;
+import immutable.Language;
 import immutable.TokenType;
-import language.defaults.RegExLanguage;
 import immutable.Token;
+import utilities.Cursor;
 import utilities.ErrorUtilities;
 import utilities.LogUtilities;
 import utilities.StringUtilities;
 
 public class TokenGenerator {
 	
-	public static Token generate(TokenType tokenType, StringBuffer contents) {
-		// Initialize bookkeeping 
-		String tokenContents = new String();
-		List<State> visitedStates = new ArrayList<State>();
-		State finalState = tokenType.stateMachine.finalState;
-		State currentState = tokenType.stateMachine.initialState;
+	/**
+	 * Consumes the token of the given type at the start of the contents and
+	 * returns it, or throws a LexicalException if the contents do not start
+	 * with that token type.
+	 */
+	public static Token generate(TokenType tokenType, Cursor contents) {
+		int acceptedLength = probe(tokenType, contents);
+		if (acceptedLength < 0) {
+			String msg = "contents did not start with " + tokenType.name +
+					"\nContents: " +
+					StringUtilities.escaped(contents.toString());
+			ErrorUtilities.throwLexicalError(msg, contents.getOffset());
+		}
+		return consume(tokenType, contents, acceptedLength);
+	}
+	
+	/**
+	 * Consumes the given number of characters and returns them as a Token of
+	 * the given type. The Token refers to the characters by their offsets
+	 * within the document rather than copying them, unless the Cursor does
+	 * not keep the document.
+	 */
+	public static Token consume(TokenType tokenType, Cursor contents,
+			int length) {
+		CharSequence source = contents.getContents();
+		if (source == null) {
+			return new Token(tokenType, contents.consume(length));
+		}
+		int start = contents.getOffset();
+		contents.advance(length);
+		return new Token(tokenType, source, start, start + length);
+	}
+	
+	/**
+	 * Returns the type of the token at the start of the contents, chosen from
+	 * the given candidates, or null if there are none. In the event that more
+	 * than one candidate is possible, the longest match wins, and a tie is
+	 * broken by the one reserved word among them.
+	 */
+	public static TokenType getNextTokenType(Set<TokenType> candidates,
+			Cursor contents) {
+		if (candidates.size() == 0) {
+			return null;
+		}
+		if (candidates.size() == 1) {
+			return candidates.iterator().next();
+		}
 		
-		// Repeat until we hit a terminal condition
-		while (true) {
-			// Stop if we reach the end of the file
-			if (contents.length() == 0) {
-				break;
-			}
-			
-			// Peek at the next character
-			Character nextChar = contents.charAt(0);
-			
-			// Stop if the current state cannot transition
-			if (currentState.getDestinations(nextChar).size() == 0) {
-				break;
-			}
-			
-			// Consume the next character
-			contents.deleteCharAt(0);
-			visitedStates.add(currentState);
-			tokenContents += nextChar;
-			
-			// TODO: Implement NFA traversal.
-			if (currentState.getDestinations(nextChar).size() > 1) {
-				ErrorUtilities.throwError(
-						"We do not support NFA traversal yet.");
+		// Find the token types with the longest match in a single scan
+		Set<TokenType> longestTokenTypes = new HashSet<TokenType>();
+		int length = getLongestMatch(candidates, contents, longestTokenTypes);
+		if (longestTokenTypes.size() == 1) {
+			return longestTokenTypes.iterator().next();
+		}
+		
+		// Handle ambiguity
+		Set<TokenType> reservedWordTokens = new HashSet<TokenType>();
+		for (TokenType ambiguousTokenType : longestTokenTypes) {
+			if (ambiguousTokenType.reservedWord) {
+				reservedWordTokens.add(ambiguousTokenType);
 			}
-			currentState =
-					currentState.getDestinations(nextChar).iterator().next();
 		}
-
-        // Step backwards through the visited State objects until there
-        // one of them is an accept state, or the visitedStates list is
-        // empty.
-        while (finalState != currentState) {
-        	// If this state has an epsilon transition to the final state, we're
-        	// done.
-        	if (currentState.epsilonTransitions.contains(finalState)) {
-        		break;
-        	}
-        	
-        	// TODO: Remove hack equals check...
-        	if (finalState.name.equals(currentState.name))
-        		break;
-        	
-        	if (visitedStates.isEmpty()) {
-        		break;
-//        		ErrorUtilities.throwError("Failed to find a matched string.");
-        	}
-        	int visitedLastIndex = visitedStates.size()-1;
-        	currentState = visitedStates.get(visitedLastIndex);
-        	visitedStates.remove(visitedLastIndex);
-        	
-        	int tokenContentsLastIndex = tokenContents.length() - 1;
-        	contents.insert(0, tokenContents.charAt(tokenContentsLastIndex));
-        	tokenContents = tokenContents.substring(0, tokenContentsLastIndex);
-        }
-        
-		// If we found an accept state, return a new Token object. Otherwise,
-		// return null.
-    	// TODO: Remove hack equals check...
-		if (finalState == currentState ||
-        		currentState.epsilonTransitions.contains(finalState) ||
-        		finalState.name.equals(currentState.name)) {
-			return new Token(tokenType, tokenContents);
+		if (reservedWordTokens.size() == 1) {
+			return reservedWordTokens.iterator().next();
+		}
+		
+		String msg = "";
+		if (length == 0) {
+			msg += "None of the following token types can start " +
+					"the remaining string: [ ";
 		} else {
-			// TODO: Make this actually halt. We can't make it halt here until
-			// we reimplement the getTokenLength logic.
-			String msg = "contents did not start with " + tokenType.name +
-					"\nContents: " +
-					StringUtilities.escaped(contents.toString());
-//			ErrorUtilities.throwError(msg);
-			LogUtilities.logln(msg);
-			return new Token(RegExLanguage.EPSILON, "");
+			msg += "Ambiguous next token. Could be any of the " + 
+				"following: [";
 		}
+		
+		for (TokenType token : TokenType.sort(longestTokenTypes)) {
+			msg += token.name + ' ';
+		}
+		msg += "]\n\nContents: " +
+				StringUtilities.escaped(contents.toString());
+		ErrorUtilities.throwLexicalError(msg, contents.getOffset());
+		return null;
+	}
+	
+	/**
+	 * Returns the length of the longest prefix of the contents that the given
+	 * token type matches, or -1 if it matches none. This neither consumes
+	 * nor copies the contents.
+	 */
+	public static int probe(TokenType tokenType, Cursor contents) {
+		return tokenType.matcher.match(contents);
 	}
 	
-	public static int getTokenLength(TokenType token, StringBuffer contents) {
-		// TODO: Reimplement the logic in generate to make this method more
-		// performant.
-		StringBuffer duplicateContents = new StringBuffer(contents.toString());
-		Token resultingToken = generate(token, duplicateContents);
+	/**
+	 * Returns the length of the token of the given type at the start of the
+	 * contents, or 0 if there is none, without consuming the contents.
+	 */
+	public static int getTokenLength(TokenType token, Cursor contents) {
+		int length = Math.max(probe(token, contents), 0);
 		LogUtilities.logln("Length of the next " + token.name + ":\n" +
-				resultingToken.contents.length());
-		return resultingToken.contents.length();
+				length);
+		return length;
+	}
+	
+	/**
+	 * Finds the longest prefix of the contents that any of the given token
+	 * types match, without consuming it. The token types that match that
+	 * prefix are added to result, and its length is returned. If none of them
+	 * match a non-empty prefix, all of them are added to result and 0 is
+	 * returned.
+	 */
+	public static int getLongestMatch(Set<TokenType> tokenTypes,
+			Cursor contents, Set<TokenType> result) {
+		// Group the token types by the Language they belong to, since each
+		// Language can scan all of its own token types at once.
+		Map<Language, List<TokenType>> languages =
+				new HashMap<Language, List<TokenType>>();
+		for (TokenType tokenType : tokenTypes) {
+			if (languages.containsKey(tokenType.language) == false) {
+				languages.put(tokenType.language, new ArrayList<TokenType>());
+			}
+			languages.get(tokenType.language).add(tokenType);
+		}
+		
+		// Scan each Language, keeping the token types with the longest match
+		int longestLength = 0;
+		for (Language language : languages.keySet()) {
+			Set<TokenType> matches = new HashSet<TokenType>();
+			int length = language.getLongestMatch(languages.get(language),
+					contents, matches);
+			if (length > longestLength) {
+				longestLength = length;
+				result.clear();
+			}
+			if (length == longestLength) {
+				result.addAll(matches);
+			}
+		}
+		
+		LogUtilities.logln("Length of the next " + result + ":\n" +
+				longestLength);
+		return longestLength;
 	}
 }
@@ -0,0 +1,127 @@
+package generators;
+
+import immutable.Language;
+import immutable.Token;
+import immutable.TokenType;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import utilities.Cursor;
+import utilities.ParserException;
+
+/**
+ * This class lexes a document into Tokens one at a time, as they are asked
+ * for, rather than all at once as TokenBufferGenerator does. Each token is
+ * chosen in the same way as there, but nothing is kept once it has been
+ * handed out, so a consumer can stop after the tokens that it needs without
+ * lexing the rest of the document. Given a ChannelCursor, the document is
+ * also read as it is lexed, so a document of any length is lexed in constant
+ * memory. The tokens can also be pulled through a Stream (see stream), whose
+ * short-circuiting operations, such as limit and findFirst, stop lexing as
+ * soon as they are done.
+ *
+ * Note: Lexing errors are thrown by hasNext and next, when the token that
+ * they are found in is asked for.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class TokenStream implements Iterator<Token> {
+
+	/**
+	 * The contents that have not been lexed yet.
+	 */
+	private final Cursor contents;
+
+	/**
+	 * The lexer that matches each token.
+	 */
+	private final TokenBufferGenerator.Lexer lexer;
+
+	/**
+	 * The token that has been lexed but not handed out yet, or null.
+	 */
+	private Token next;
+
+	/**
+	 * Constructs a TokenStream over the contents, with the TokenTypes of the
+	 * given Language.
+	 */
+	public TokenStream(Language language, CharSequence contents) {
+		this(language.tokenTypes.values(), new Cursor(contents), null);
+	}
+
+	/**
+	 * Constructs a TokenStream over the contents, with the given TokenTypes.
+	 * If a list of errors is given, lexing recovers from characters that no
+	 * token can start in the same way as TokenBufferGenerator.generate, and
+	 * adds the errors to the list rather than throwing them.
+	 */
+	public TokenStream(Collection<TokenType> tokenTypes, Cursor contents,
+			List<ParserException> errors) {
+		this.contents = contents;
+		this.lexer = new TokenBufferGenerator.Lexer(tokenTypes, errors);
+	}
+
+	/**
+	 * Returns true if there is another token, lexing it if it has not been
+	 * lexed yet.
+	 */
+	public boolean hasNext() {
+		while (next == null) {
+			int length = lexer.match(contents);
+			if (length < 0) {
+				return false;
+			}
+			if (length > 0) {
+				next = TokenGenerator.consume(lexer.matchedTokenType,
+						contents, length);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the next token.
+	 */
+	public Token next() {
+		if (hasNext() == false) {
+			throw new NoSuchElementException();
+		}
+		Token result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Returns a Spliterator over the tokens that have not been handed out
+	 * yet, which lexes each of them only when it is asked for, as next does.
+	 */
+	public Spliterator<Token> spliterator() {
+		return Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+
+	/**
+	 * Returns a sequential Stream of the tokens that have not been handed
+	 * out yet. Since they share this TokenStream, the tokens that the Stream
+	 * hands out are not handed out by next, and vice versa.
+	 */
+	public Stream<Token> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Tokens cannot be removed from the document, so this always throws an
+	 * UnsupportedOperationException.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
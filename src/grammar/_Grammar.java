@@ -1,6 +1,6 @@
 package grammar;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -30,6 +30,6 @@ public class _Grammar {
 	 */
 	public _Grammar(String name) {
 		this.name = name;
-		this.rules = new HashSet<_Rule>();
+		this.rules = new LinkedHashSet<_Rule>();
 	}
 }
@@ -1,6 +1,6 @@
 package grammar.defaults;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import immutable.Grammar;
@@ -8,6 +8,7 @@ import grammar._Grammar;
 import grammar._Rule;
 
 import language.defaults.*;
+import utilities.SnapshotUtilities;
 
 /**
  * This class represents a default Grammar, to be used in the parsing of the
@@ -23,11 +24,24 @@ public class RegExGrammar {
 	 */
 	public static final Grammar instance;
 	
+	/**
+	 * Loads this Grammar from the bootstrap snapshot if possible, and
+	 * otherwise builds it.
+	 */
+	static {
+		Grammar snapshot = SnapshotUtilities.getRegExGrammar();
+		if (snapshot != null) {
+			instance = snapshot;
+		} else {
+			instance = createInstance();
+		}
+	}
+	
 	/**
 	 * Constructs a new RegExGrammar object, which is a pre-built Grammar object
 	 * that can handle defines the regular expression grammar.
 	 */
-	static {
+	private static Grammar createInstance() {
 
 		// Construct the State objects
 		_Rule regex = new _Rule("<reg-ex>");
@@ -47,7 +61,7 @@ public class RegExGrammar {
 		_Rule exclude_set_tail = new _Rule("<exclude_set_tail>");
 		
 		// Construct a list of _Rule objects
-		Set<_Rule> rules = new HashSet<_Rule>();
+		Set<_Rule> rules = new LinkedHashSet<_Rule>();
 		rules.add(regex);
 		rules.add(rexp);
 		rules.add(rexpa);
@@ -79,9 +93,12 @@ public class RegExGrammar {
 		rexpa.addNewList();
 		rexpa.addToTail(RegExLanguage.EPSILON);
 		
+		// START DEVIATION FROM GIVEN SPEC
+		// The empty rexp2 is folded into rexp1a, which already repeats rexp2,
+		// so that no TokenType predicts two chains of the same rule
 		rexp1.addNewList();
-		rexp1.addToTail(rexp2);
 		rexp1.addToTail(rexp1a);
+		// END DEVIATION FROM GIVEN SPEC
 		
 		rexp1a.addNewList();
 		rexp1a.addToTail(rexp2);
@@ -114,8 +131,6 @@ public class RegExGrammar {
 		
 		rexp3.addNewList();
 		rexp3.addToTail(char_class);
-		rexp3.addNewList();
-		rexp3.addToTail(RegExLanguage.EPSILON);
 
 		char_class.addNewList();
 		char_class.addToTail(RegExLanguage.DOT);
@@ -165,7 +180,7 @@ public class RegExGrammar {
 		mutableGrammar.root = regex;
 		mutableGrammar.rules = rules;
 		
-		// Save a locked copy of this grammar
-		instance = new Grammar(mutableGrammar);
+		// Return a locked copy of this grammar
+		return new Grammar(mutableGrammar);
 	}
 }
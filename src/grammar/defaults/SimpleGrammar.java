@@ -4,7 +4,7 @@ import immutable.Grammar;
 import immutable.Language;
 import immutable.TokenType;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 
 import language.defaults.RegExLanguage;
 import grammar._Grammar;
@@ -30,7 +30,6 @@ public class SimpleGrammar {
 		mutableRule.addToTail(mutableRule);
 		mutableRule.addNewList();
 		mutableRule.addToTail(RegExLanguage.EPSILON);
-		mutableRule.addToTail(mutableRule);
 		for (TokenType tokenType : language.tokenTypes.values()) {
 			mutableRule.addNewList();
 			mutableRule.addToTail(tokenType);
@@ -39,7 +38,7 @@ public class SimpleGrammar {
 		
 		_Grammar mutableGrammar = new _Grammar("ContextFreeGrammar");
 		mutableGrammar.root = mutableRule;
-		mutableGrammar.rules = new HashSet<_Rule>();
+		mutableGrammar.rules = new LinkedHashSet<_Rule>();
 		mutableGrammar.rules.add(mutableGrammar.root);
 		
 		return new Grammar(mutableGrammar);
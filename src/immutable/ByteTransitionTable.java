@@ -0,0 +1,262 @@
+package immutable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utilities.ErrorUtilities;
+
+/**
+ * This is an immutable information holder class, containing the
+ * CombinedTransitionTable of a Language lowered from characters to the bytes
+ * of their UTF-8 encoding, so that a document can be lexed straight from its
+ * bytes without decoding it first. Every State of the combined table keeps
+ * its identifier here, and its transitions with the ASCII bytes are the same
+ * as with the ASCII characters. The multi-byte sequences of every other
+ * character pass through intermediate States, which wait for the rest of the
+ * sequence before making the transition of the whole character.
+ *
+ * Since the characters outside of the Alphabet all share the class of the
+ * wild card, the intermediate States of a sequence only need to tell its
+ * characters apart while they may still land in a class of their own, or
+ * while the byte after the first one is restricted. So for the default
+ * Alphabet, every State has at most seven of them: one for each number of
+ * bytes left to read, and one for each of the first bytes E0, ED, F0 and F4.
+ *
+ * Note: A character that takes four bytes is a surrogate pair in a String,
+ * and therefore makes two transitions of the combined table. Malformed
+ * sequences lead to the dead state, including overlong encodings, encoded
+ * surrogates and code points past U+10FFFF, just as MappedCharSequence
+ * reads them as malformed.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class ByteTransitionTable {
+
+	/**
+	 * The identifier of the initial State.
+	 */
+	public final int initialState;
+
+	/**
+	 * The number of States (rows) in this table, including the intermediate
+	 * States, which are numbered after those of the combined table.
+	 */
+	public final int stateCount;
+
+	/**
+	 * The table whose transitions are made by the bytes of this one.
+	 */
+	public final CombinedTransitionTable combinedTable;
+
+	/**
+	 * The transitions of this table, stored row by row, with one column for
+	 * every value of a byte.
+	 */
+	private final int[] transitions;
+
+	/**
+	 * The State of the combined table that each State of this table started
+	 * from.
+	 */
+	private final int[] origins;
+
+	/**
+	 * Constructs the ByteTransitionTable of the given CombinedTransitionTable.
+	 */
+	public ByteTransitionTable(CombinedTransitionTable combinedTable) {
+		CharacterClasses classes = combinedTable.classes;
+		if (classes.width - 1 > Character.MIN_SURROGATE) {
+			ErrorUtilities.throwGrammarError("Token types that transition " +
+					"with surrogate characters cannot be matched against " +
+					"bytes.");
+		}
+
+		// Initialize bookkeeping
+		Map<Sequence, Integer> identifiers = new HashMap<Sequence, Integer>();
+		List<Sequence> sequences = new ArrayList<Sequence>();
+		int[] transitions = new int[combinedTable.stateCount * 2 << 8];
+		int wildCard = classes.classOf(Character.MAX_VALUE);
+
+		// Fill in the row of every State, including the intermediate States
+		// that are added along the way
+		for (int id = 0; id < combinedTable.stateCount + sequences.size();
+				id++) {
+			if ((id + 1) << 8 > transitions.length) {
+				transitions = Arrays.copyOf(transitions,
+						transitions.length * 2);
+			}
+			for (int b = 0; b < 1 << 8; b++) {
+				Sequence next;
+				if (id < combinedTable.stateCount) {
+					// Start a sequence, unless the byte is a whole character
+					if (b < 0x80) {
+						transitions[(id << 8) | b] =
+								combinedTable.getDestination(id, (char)b);
+						continue;
+					} else if (b >= 0xC2 && b <= 0xDF) {
+						next = new Sequence(id, 1, (b & 0x1F) << 6, false,
+								0x80, 0xBF);
+					} else if (b >= 0xE0 && b <= 0xEF) {
+						next = new Sequence(id, 2, (b & 0x0F) << 12, false,
+								b == 0xE0 ? 0xA0 : 0x80,
+								b == 0xED ? 0x9F : 0xBF);
+					} else if (b >= 0xF0 && b <= 0xF4) {
+						next = new Sequence(id, 3, 0, true,
+								b == 0xF0 ? 0x90 : 0x80,
+								b == 0xF4 ? 0x8F : 0xBF);
+					} else {
+						transitions[(id << 8) | b] =
+								TransitionTable.DEAD_STATE;
+						continue;
+					}
+				} else {
+					// Continue the sequence, or finish it with the transition
+					// of its character
+					Sequence sequence =
+							sequences.get(id - combinedTable.stateCount);
+					if (b < sequence.lower || b > sequence.upper) {
+						transitions[(id << 8) | b] =
+								TransitionTable.DEAD_STATE;
+						continue;
+					}
+					int remaining = sequence.remaining - 1;
+					int character = sequence.character;
+					if (character != Sequence.WILD_CARD) {
+						character |= (b & 0x3F) << (6 * remaining);
+					}
+					if (remaining > 0) {
+						next = new Sequence(sequence.origin, remaining,
+								character, sequence.surrogatePair, 0x80, 0xBF);
+					} else {
+						int column = character == Sequence.WILD_CARD ?
+								wildCard : classes.classOf((char)character);
+						int destination = combinedTable.getDestinationAt(
+								sequence.origin, column);
+						if (sequence.surrogatePair &&
+								destination != TransitionTable.DEAD_STATE) {
+							destination = combinedTable.getDestinationAt(
+									destination, wildCard);
+						}
+						transitions[(id << 8) | b] = destination;
+						continue;
+					}
+				}
+
+				// Merge the sequences whose characters all fall outside of
+				// the Alphabet
+				if (next.surrogatePair ||
+						next.character >= classes.width - 1) {
+					next = new Sequence(next.origin, next.remaining,
+							Sequence.WILD_CARD, next.surrogatePair,
+							next.lower, next.upper);
+				}
+
+				// Look up or create the intermediate State
+				Integer destination = identifiers.get(next);
+				if (destination == null) {
+					destination = combinedTable.stateCount + sequences.size();
+					identifiers.put(next, destination);
+					sequences.add(next);
+				}
+				transitions[(id << 8) | b] = destination;
+			}
+		}
+
+		// Remember where every State started from
+		int stateCount = combinedTable.stateCount + sequences.size();
+		int[] origins = new int[stateCount];
+		for (int id = 0; id < stateCount; id++) {
+			origins[id] = id < combinedTable.stateCount ? id :
+					sequences.get(id - combinedTable.stateCount).origin;
+		}
+
+		// Assign final fields
+		this.initialState = combinedTable.initialState;
+		this.stateCount = stateCount;
+		this.combinedTable = combinedTable;
+		this.transitions = Arrays.copyOf(transitions, stateCount << 8);
+		this.origins = origins;
+	}
+
+	/**
+	 * Returns the identifier of the State that the given State transitions
+	 * into with the given byte, or DEAD_STATE if there is none.
+	 */
+	public int getDestination(int state, byte b) {
+		return transitions[(state << 8) | (b & 0xFF)];
+	}
+
+	/**
+	 * Returns true if any TokenType in the given mask accepts in the given
+	 * State. No TokenType accepts in an intermediate State.
+	 */
+	public boolean isAccepting(int state, long[] mask) {
+		return state < combinedTable.stateCount &&
+				combinedTable.isAccepting(state, mask);
+	}
+
+	/**
+	 * Returns true if any TokenType in the given mask may still accept from
+	 * the given State. An intermediate State is alive if the State that it
+	 * started from is.
+	 */
+	public boolean isAlive(int state, long[] mask) {
+		return combinedTable.isAlive(origins[state], mask);
+	}
+
+	/**
+	 * Returns true if the TokenType with the given index accepts in the given
+	 * State.
+	 */
+	public boolean isAccepting(int state, int index) {
+		return state < combinedTable.stateCount &&
+				combinedTable.isAccepting(state, index);
+	}
+
+	/**
+	 * This is a hashable description of an intermediate State: the State of
+	 * the combined table that the sequence started from, the number of bytes
+	 * left in it, the bits of its character read so far, or WILD_CARD if the
+	 * character is known to fall outside of the Alphabet, and the range of
+	 * its next byte.
+	 */
+	private static class Sequence {
+		private static final int WILD_CARD = -1;
+
+		private final int origin;
+		private final int remaining;
+		private final int character;
+		private final boolean surrogatePair;
+		private final int lower;
+		private final int upper;
+
+		private Sequence(int origin, int remaining, int character,
+				boolean surrogatePair, int lower, int upper) {
+			this.origin = origin;
+			this.remaining = remaining;
+			this.character = character;
+			this.surrogatePair = surrogatePair;
+			this.lower = lower;
+			this.upper = upper;
+		}
+
+		public boolean equals(Object o) {
+			if (o instanceof Sequence == false) {
+				return false;
+			}
+			Sequence other = (Sequence)o;
+			return origin == other.origin && remaining == other.remaining &&
+					character == other.character &&
+					surrogatePair == other.surrogatePair &&
+					lower == other.lower && upper == other.upper;
+		}
+
+		public int hashCode() {
+			return ((((origin * 31 + remaining) * 31 + character) * 31 +
+					lower) * 31 + upper) * 2 + (surrogatePair ? 1 : 0);
+		}
+	}
+}
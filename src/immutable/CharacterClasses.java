@@ -0,0 +1,161 @@
+package immutable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import language.Alphabet;
+
+/**
+ * This is an immutable information holder class, containing a partition of
+ * characters into equivalence classes. Two characters are in the same class
+ * if every State of every given StateMachine treats them alike, so a table
+ * only needs one column per class rather than one per character.
+ *
+ * Note: Characters that no State maps explicitly fall back to the wild card
+ * (null) transitions, and therefore share a single class with every character
+ * outside of the Alphabet.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class CharacterClasses {
+
+	/**
+	 * The number of character columns that are looked up directly. Every
+	 * character below width - 1 has its own entry, and all other characters
+	 * share the last one.
+	 */
+	public final int width;
+
+	/**
+	 * The number of classes.
+	 */
+	public final int count;
+
+	/**
+	 * The class of each character column.
+	 */
+	private final int[] classes;
+
+	/**
+	 * The transition Character of a member of each class, or null for the
+	 * class of the wild card.
+	 */
+	private final Character[] representatives;
+
+	/**
+	 * Constructs the CharacterClasses of the given StateMachines.
+	 */
+	public CharacterClasses(Collection<StateMachine> stateMachines,
+			Alphabet alphabet) {
+		// Get the number of columns needed to index every character that is
+		// mapped explicitly. The last column stands for all other characters.
+		int width = alphabet.length;
+		for (StateMachine stateMachine : stateMachines) {
+			for (State state : stateMachine.states) {
+				for (Character c : state.charToStateSetMap.keySet()) {
+					if (c != null && c >= width) {
+						width = c + 1;
+					}
+				}
+			}
+		}
+		width++;
+
+		// Start with every column in one class, and split the classes by the
+		// destinations of every State.
+		int[] classes = new int[width];
+		int count = 1;
+		for (StateMachine stateMachine : stateMachines) {
+			for (State state : stateMachine.states) {
+				// Group the explicitly mapped columns by their destinations
+				Map<Set<State>, List<Integer>> groups =
+						new HashMap<Set<State>, List<Integer>>();
+				for (Map.Entry<Character, Set<State>> entry :
+						state.charToStateSetMap.entrySet()) {
+					if (entry.getKey() == null) {
+						continue;
+					}
+					List<Integer> group = groups.get(entry.getValue());
+					if (group == null) {
+						group = new ArrayList<Integer>();
+						groups.put(entry.getValue(), group);
+					}
+					group.add((int)entry.getKey().charValue());
+				}
+
+				// Move the members of each group into new classes, keeping
+				// apart the members that were in different classes.
+				for (List<Integer> group : groups.values()) {
+					Map<Integer, Integer> newClasses =
+							new HashMap<Integer, Integer>();
+					for (int column : group) {
+						Integer newClass = newClasses.get(classes[column]);
+						if (newClass == null) {
+							newClass = count;
+							count++;
+							newClasses.put(classes[column], newClass);
+						}
+						classes[column] = newClass;
+					}
+				}
+			}
+		}
+
+		// Renumber the classes in order of their first column, and pick the
+		// first column of each class as its representative.
+		int[] renumbering = new int[count];
+		Arrays.fill(renumbering, -1);
+		List<Character> representatives = new ArrayList<Character>();
+		for (int column = 0; column < width; column++) {
+			if (renumbering[classes[column]] == -1) {
+				renumbering[classes[column]] = representatives.size();
+				representatives.add(getCharacter(column, width, alphabet));
+			}
+			classes[column] = renumbering[classes[column]];
+		}
+
+		// The class of the wild card is represented by null
+		representatives.set(classes[width - 1], null);
+
+		// Assign final fields
+		this.width = width;
+		this.count = representatives.size();
+		this.classes = classes;
+		this.representatives =
+				representatives.toArray(new Character[representatives.size()]);
+	}
+
+	/**
+	 * Returns the class of the given character.
+	 */
+	public int classOf(char c) {
+		return classes[c < width - 1 ? c : width - 1];
+	}
+
+	/**
+	 * Returns the transition Character that stands for the given class, or
+	 * null if it is the class of the wild card.
+	 */
+	public Character getRepresentative(int characterClass) {
+		return representatives[characterClass];
+	}
+
+	/**
+	 * Returns the transition Character of the given column, or null for the
+	 * last column.
+	 */
+	private static Character getCharacter(int column, int width,
+			Alphabet alphabet) {
+		if (column < alphabet.length) {
+			return alphabet.get((char)column);
+		} else if (column < width - 1) {
+			return Character.valueOf((char)column);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,233 @@
+package immutable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is an immutable information holder class, containing a single
+ * deterministic automaton that runs the TransitionTables of several TokenTypes
+ * in lockstep. Each State of this table stands for a tuple of States, one per
+ * TokenType, and carries a bitmap of the TokenTypes that accept in it and a
+ * bitmap of the TokenTypes that have not died yet.
+ *
+ * TokenTypes are tagged by their index, and lower indices have a higher
+ * priority (see Language). Every TransitionTable must be indexed by the same
+ * CharacterClasses as this table.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class CombinedTransitionTable {
+
+	/**
+	 * The identifier of the initial State.
+	 */
+	public final int initialState;
+
+	/**
+	 * The number of States (rows) in this table.
+	 */
+	public final int stateCount;
+
+	/**
+	 * The number of columns in this table, one per character class.
+	 */
+	public final int width;
+
+	/**
+	 * The classes of characters that index the columns of this table.
+	 */
+	public final CharacterClasses classes;
+
+	/**
+	 * The number of longs in the bitmaps of a single State.
+	 */
+	public final int words;
+
+	/**
+	 * The transitions of this table, stored row by row.
+	 */
+	private final int[] transitions;
+
+	/**
+	 * The bitmaps of accepting TokenTypes, stored row by row.
+	 */
+	private final long[] accepting;
+
+	/**
+	 * The bitmaps of TokenTypes that can still accept, stored row by row.
+	 */
+	private final long[] alive;
+
+	/**
+	 * Constructs a CombinedTransitionTable over the given TokenTypes, where
+	 * the TokenType at index i is tagged with i.
+	 */
+	public CombinedTransitionTable(TokenType[] tokenTypes,
+			CharacterClasses classes) {
+		int width = classes.count;
+		int words = Math.max(1, (tokenTypes.length + 63) / 64);
+
+		// Initialize bookkeeping
+		Map<StateTuple, Integer> identifiers =
+				new HashMap<StateTuple, Integer>();
+		List<StateTuple> unprocessedTuples = new ArrayList<StateTuple>();
+		int[] transitions = new int[16 * width];
+
+		// Add the tuple of initial States
+		int[] initialStates = new int[tokenTypes.length];
+		for (int i = 0; i < tokenTypes.length; i++) {
+			initialStates[i] = tokenTypes[i].table.initialState;
+		}
+		StateTuple initialTuple = new StateTuple(initialStates);
+		identifiers.put(initialTuple, 0);
+		unprocessedTuples.add(initialTuple);
+
+		// Explore every reachable tuple of States
+		for (int id = 0; id < unprocessedTuples.size(); id++) {
+			StateTuple tuple = unprocessedTuples.get(id);
+			if ((id + 1) * width > transitions.length) {
+				transitions = Arrays.copyOf(transitions,
+						transitions.length * 2);
+			}
+
+			for (int column = 0; column < width; column++) {
+				// Step every TokenType that is still alive
+				int[] destinations = new int[tokenTypes.length];
+				boolean dead = true;
+				for (int i = 0; i < tokenTypes.length; i++) {
+					if (tuple.states[i] == TransitionTable.DEAD_STATE) {
+						destinations[i] = TransitionTable.DEAD_STATE;
+						continue;
+					}
+					destinations[i] = tokenTypes[i].table.getDestinationAt(
+							tuple.states[i], column);
+					if (destinations[i] != TransitionTable.DEAD_STATE) {
+						dead = false;
+					}
+				}
+
+				// If every TokenType died, so does this State
+				if (dead) {
+					transitions[id * width + column] =
+							TransitionTable.DEAD_STATE;
+					continue;
+				}
+
+				// Otherwise, look up or create the destination State
+				StateTuple destination = new StateTuple(destinations);
+				Integer destinationId = identifiers.get(destination);
+				if (destinationId == null) {
+					destinationId = unprocessedTuples.size();
+					identifiers.put(destination, destinationId);
+					unprocessedTuples.add(destination);
+				}
+				transitions[id * width + column] = destinationId;
+			}
+		}
+
+		// Construct the bitmaps
+		int stateCount = unprocessedTuples.size();
+		long[] accepting = new long[stateCount * words];
+		long[] alive = new long[stateCount * words];
+		for (int id = 0; id < stateCount; id++) {
+			int[] states = unprocessedTuples.get(id).states;
+			for (int i = 0; i < tokenTypes.length; i++) {
+				if (states[i] == TransitionTable.DEAD_STATE) {
+					continue;
+				}
+				alive[id * words + (i >> 6)] |= 1L << i;
+				if (tokenTypes[i].table.isAccepting(states[i])) {
+					accepting[id * words + (i >> 6)] |= 1L << i;
+				}
+			}
+		}
+
+		// Assign final fields
+		this.initialState = 0;
+		this.stateCount = stateCount;
+		this.width = width;
+		this.classes = classes;
+		this.words = words;
+		this.transitions = Arrays.copyOf(transitions, stateCount * width);
+		this.accepting = accepting;
+		this.alive = alive;
+	}
+
+	/**
+	 * Returns the identifier of the State that the given State transitions
+	 * into with the given character, or DEAD_STATE if there is none.
+	 */
+	public int getDestination(int state, char c) {
+		return transitions[state * width + classes.classOf(c)];
+	}
+
+	/**
+	 * Returns the identifier of the State that the given State transitions
+	 * into with the given column, or DEAD_STATE if there is none.
+	 */
+	public int getDestinationAt(int state, int column) {
+		return transitions[state * width + column];
+	}
+
+	/**
+	 * Returns true if any TokenType in the given mask accepts in the given
+	 * State.
+	 */
+	public boolean isAccepting(int state, long[] mask) {
+		return intersects(accepting, state, mask);
+	}
+
+	/**
+	 * Returns true if any TokenType in the given mask can still accept from
+	 * the given State.
+	 */
+	public boolean isAlive(int state, long[] mask) {
+		return intersects(alive, state, mask);
+	}
+
+	/**
+	 * Returns true if the TokenType with the given index accepts in the given
+	 * State.
+	 */
+	public boolean isAccepting(int state, int index) {
+		return (accepting[state * words + (index >> 6)] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Returns true if the bitmap of the given State intersects the mask.
+	 */
+	private boolean intersects(long[] bitmaps, int state, long[] mask) {
+		int offset = state * words;
+		for (int i = 0; i < words; i++) {
+			if ((bitmaps[offset + i] & mask[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This is a hashable tuple of State identifiers.
+	 */
+	private static class StateTuple {
+		private final int[] states;
+		private final int hashCode;
+
+		private StateTuple(int[] states) {
+			this.states = states;
+			this.hashCode = Arrays.hashCode(states);
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof StateTuple &&
+					Arrays.equals(states, ((StateTuple)o).states);
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
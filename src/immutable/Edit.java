@@ -0,0 +1,55 @@
+package immutable;
+
+/**
+ * This is an immutable information holder class, containing a change to the
+ * text of a document: the characters from offset up to offset plus
+ * deletedLength are replaced by the inserted text.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class Edit {
+
+	/**
+	 * The offset of the first character that is replaced.
+	 */
+	public final int offset;
+
+	/**
+	 * The number of characters that are removed.
+	 */
+	public final int deletedLength;
+
+	/**
+	 * The text that is put in their place.
+	 */
+	public final String insertedText;
+
+	/**
+	 * Standard constructor.
+	 */
+	public Edit(int offset, int deletedLength, String insertedText) {
+		this.offset = offset;
+		this.deletedLength = deletedLength;
+		this.insertedText = insertedText;
+	}
+
+	/**
+	 * Returns the given contents with this Edit applied to them.
+	 */
+	public String apply(CharSequence contents) {
+		StringBuilder result = new StringBuilder(
+				contents.length() - deletedLength + insertedText.length());
+		result.append(contents, 0, offset);
+		result.append(insertedText);
+		result.append(contents, offset + deletedLength, contents.length());
+		return result.toString();
+	}
+
+	/**
+	 * Returns a String representation of this object.
+	 */
+	public String toString() {
+		return "[" + offset + ", " + (offset + deletedLength) + ") -> \"" +
+				insertedText + "\"";
+	}
+}
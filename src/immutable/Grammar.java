@@ -3,13 +3,19 @@ package immutable;
 import grammar._Grammar;
 import grammar._Rule;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import utilities.ConversionUtilities;
+import utilities.Cursor;
+import utilities.LogUtilities;
 
 /**
  * This class represents a set of rules that dictate the parsing of a language.
@@ -18,6 +24,18 @@ import utilities.ConversionUtilities;
  */
 public class Grammar {
 
+	/**
+	 * This value is returned by predict when no chain of the Rule can start
+	 * with the given TokenType.
+	 */
+	public static final int NO_CHAIN = -1;
+
+	/**
+	 * This value is returned by predict when more than one chain of the Rule
+	 * can start with the given TokenType.
+	 */
+	public static final int AMBIGUOUS_CHAIN = -2;
+
 	/**
 	 * The name of this Grammar.
 	 */
@@ -33,6 +51,72 @@ public class Grammar {
 	 */
 	public final Set<Rule> rules;
 	
+	/**
+	 * The set of TokenTypes that appear in the rules of this Grammar.
+	 */
+	public final Set<TokenType> tokenTypes;
+	
+	/**
+	 * A list of messages describing every LL(1) conflict of this Grammar, one
+	 * for every pair of chains of a Rule that a TokenType predicts together.
+	 */
+	public final List<String> conflicts;
+	
+	/**
+	 * The rules of this Grammar, ordered by their index.
+	 */
+	private final Rule[] indexedRules;
+	
+	/**
+	 * The index of each TokenType, which is also its column of the
+	 * prediction table.
+	 */
+	private final Map<TokenType, Integer> tokenTypeIds;
+	
+	/**
+	 * The TokenTypes of this Grammar, ordered by their index.
+	 */
+	private final TokenType[] indexedTokenTypes;
+	
+	/**
+	 * The prediction table, stored row by row with one row per Rule and one
+	 * column per TokenType. Each cell holds the index of the chain to expand,
+	 * NO_CHAIN, or AMBIGUOUS_CHAIN.
+	 */
+	private final int[] predictions;
+	
+	/**
+	 * The same table as predictions, but with each chain predicted only by
+	 * what can start its first element.
+	 */
+	private final int[] leadingPredictions;
+	
+	/**
+	 * The same table as predictions, but with each chain predicted only by
+	 * its FIRST set.
+	 */
+	private final int[] firstPredictions;
+	
+	/**
+	 * Whether each Rule can match an empty string.
+	 */
+	private final boolean[] nullable;
+	
+	/**
+	 * Whether each TokenType of this Grammar can match an empty string.
+	 */
+	private final Map<TokenType, Boolean> nullableTokenTypes;
+	
+	/**
+	 * The FIRST set of each Rule.
+	 */
+	private final List<Set<TokenType>> firstSets;
+	
+	/**
+	 * The FOLLOW set of each Rule.
+	 */
+	private final List<Set<TokenType>> followSets;
+	
 	/**
 	 * Standard constructor.
 	 */
@@ -40,8 +124,10 @@ public class Grammar {
 		// Get a mapping from _Rule objects to their Rule object counterparts
 		Map<_Rule, Rule> ruleMap =
 				ConversionUtilities.convertRules(mutableGrammar.rules); 
-		Set<Rule> rules = new HashSet<Rule>();
-		rules.addAll(ruleMap.values());
+		Set<Rule> rules = new LinkedHashSet<Rule>();
+		for (_Rule mutableRule : mutableGrammar.rules) {
+			rules.add(ruleMap.get(mutableRule));
+		}
 		
 		// Assign final fields
 		this.name = mutableGrammar.name;
@@ -54,6 +140,402 @@ public class Grammar {
 		for (Rule rule : this.rules) {
 			computeStartingTokenTypes(rule, startingTokenTypes);
 		}
+		
+		// Order the rules by their index
+		Rule[] indexedRules = new Rule[rules.size()];
+		for (Rule rule : rules) {
+			indexedRules[rule.index] = rule;
+		}
+		this.indexedRules = indexedRules;
+		
+		// Collect the TokenTypes, and whether each can match an empty string
+		Set<TokenType> tokenTypes = new HashSet<TokenType>();
+		Map<TokenType, Boolean> nullableTokenTypes =
+				new HashMap<TokenType, Boolean>();
+		for (Rule rule : indexedRules) {
+			for (List<Object> chain : rule.possibleChildren) {
+				for (Object item : chain) {
+					if (item.getClass() == TokenType.class) {
+						tokenTypes.add((TokenType)item);
+						isNullable((TokenType)item, nullableTokenTypes);
+					}
+				}
+			}
+		}
+		this.tokenTypes = Collections.unmodifiableSet(tokenTypes);
+		this.nullableTokenTypes = nullableTokenTypes;
+		
+		// Compute the nullable, FIRST, and FOLLOW sets
+		this.nullable = computeNullable(indexedRules, nullableTokenTypes);
+		this.firstSets = computeFirstSets(indexedRules, nullable,
+				nullableTokenTypes);
+		this.followSets = computeFollowSets(indexedRules, this.root, nullable,
+				firstSets, nullableTokenTypes);
+		
+		// Assign an index to every TokenType, which is also its column of the
+		// prediction table
+		Map<TokenType, Integer> tokenTypeIds = new HashMap<TokenType, Integer>();
+		TokenType[] indexedTokenTypes = new TokenType[tokenTypes.size()];
+		for (TokenType tokenType : TokenType.sort(tokenTypes)) {
+			indexedTokenTypes[tokenTypeIds.size()] = tokenType;
+			tokenTypeIds.put(tokenType, tokenTypeIds.size());
+		}
+		this.tokenTypeIds = tokenTypeIds;
+		this.indexedTokenTypes = indexedTokenTypes;
+		
+		// Build the prediction table and report its conflicts
+		this.predictions = computePredictions(indexedRules, tokenTypeIds,
+				nullable, firstSets, followSets, nullableTokenTypes, false,
+				true);
+		this.leadingPredictions = computePredictions(indexedRules,
+				tokenTypeIds, nullable, firstSets, followSets,
+				nullableTokenTypes, true, false);
+		this.firstPredictions = computePredictions(indexedRules,
+				tokenTypeIds, nullable, firstSets, followSets,
+				nullableTokenTypes, false, false);
+		this.conflicts = Collections.unmodifiableList(computeConflicts(
+				indexedRules, nullable, firstSets, followSets,
+				nullableTokenTypes));
+		for (String conflict : this.conflicts) {
+			LogUtilities.logln(this.name + ": " + conflict);
+		}
+	}
+	
+	/**
+	 * Returns the index of the chain of the given Rule that starts with the
+	 * given TokenType, NO_CHAIN if there is none, or AMBIGUOUS_CHAIN if there
+	 * is more than one.
+	 */
+	public int predict(Rule rule, TokenType tokenType) {
+		Integer column = tokenTypeIds.get(tokenType);
+		if (column == null) {
+			return NO_CHAIN;
+		}
+		return predictions[rule.index * tokenTypeIds.size() + column];
+	}
+	
+	/**
+	 * Settles a cell that predict marks AMBIGUOUS_CHAIN in the way that the
+	 * descent always has. The chain whose first element starts with the given
+	 * TokenType is taken, then the chain whose FIRST set holds it, so that a
+	 * chain that would match nothing before the TokenType never wins. Returns
+	 * AMBIGUOUS_CHAIN if more than one chain is still tied, or NO_CHAIN if
+	 * none of them can start with the TokenType.
+	 */
+	public int resolve(Rule rule, TokenType tokenType) {
+		Integer column = tokenTypeIds.get(tokenType);
+		if (column == null) {
+			return NO_CHAIN;
+		}
+		int cell = rule.index * tokenTypeIds.size() + column;
+		if (leadingPredictions[cell] != NO_CHAIN) {
+			return leadingPredictions[cell];
+		}
+		return firstPredictions[cell];
+	}
+	
+	/**
+	 * Returns the Rule with the given index.
+	 */
+	public Rule getRule(int index) {
+		return indexedRules[index];
+	}
+	
+	/**
+	 * Returns the index of the given TokenType of this Grammar.
+	 */
+	public int getTokenTypeIndex(TokenType tokenType) {
+		return tokenTypeIds.get(tokenType);
+	}
+	
+	/**
+	 * Returns the TokenType with the given index.
+	 */
+	public TokenType getTokenType(int index) {
+		return indexedTokenTypes[index];
+	}
+	
+	/**
+	 * Returns true if the given Rule can match an empty string.
+	 */
+	public boolean isNullable(Rule rule) {
+		return nullable[rule.index];
+	}
+	
+	/**
+	 * Returns true if the given TokenType of this Grammar can match an empty
+	 * string.
+	 */
+	public boolean isNullable(TokenType tokenType) {
+		return Boolean.TRUE.equals(nullableTokenTypes.get(tokenType));
+	}
+	
+	/**
+	 * Returns the set of TokenTypes that can start the given Rule.
+	 */
+	public Set<TokenType> getFirstSet(Rule rule) {
+		return Collections.unmodifiableSet(firstSets.get(rule.index));
+	}
+	
+	/**
+	 * Returns the set of TokenTypes that can follow the given Rule.
+	 */
+	public Set<TokenType> getFollowSet(Rule rule) {
+		return Collections.unmodifiableSet(followSets.get(rule.index));
+	}
+	
+	/**
+	 * Builds a prediction table. A chain is predicted by every TokenType of
+	 * its FIRST set, or only by what can start its first element if leading is
+	 * true, and also by every TokenType of the FOLLOW set of its Rule if
+	 * follow is true and it can be empty. A cell that more than one chain is
+	 * predicted by is marked AMBIGUOUS_CHAIN.
+	 */
+	private static int[] computePredictions(Rule[] rules,
+			Map<TokenType, Integer> tokenTypeIds, boolean[] nullable,
+			List<Set<TokenType>> firstSets, List<Set<TokenType>> followSets,
+			Map<TokenType, Boolean> nullableTokenTypes, boolean leading,
+			boolean follow) {
+		int width = tokenTypeIds.size();
+		int[] predictions = new int[rules.length * width];
+		Arrays.fill(predictions, NO_CHAIN);
+		for (Rule rule : rules) {
+			int row = rule.index * width;
+			for (int i = 0; i < rule.possibleChildren.size(); i++) {
+				List<Object> chain = rule.possibleChildren.get(i);
+				Set<TokenType> predictSet = new HashSet<TokenType>();
+				if (follow) {
+					predictSet = getPredictSet(rule, i, nullable, firstSets,
+							followSets, nullableTokenTypes);
+				} else if (leading) {
+					addFirstSet(chain.subList(0, Math.min(1, chain.size())), 0,
+							predictSet, nullable, firstSets,
+							nullableTokenTypes);
+				} else {
+					addFirstSet(chain, 0, predictSet, nullable, firstSets,
+							nullableTokenTypes);
+				}
+				for (TokenType tokenType : predictSet) {
+					int cell = row + tokenTypeIds.get(tokenType);
+					if (predictions[cell] == NO_CHAIN) {
+						predictions[cell] = i;
+					} else if (predictions[cell] != i) {
+						predictions[cell] = AMBIGUOUS_CHAIN;
+					}
+				}
+			}
+		}
+		return predictions;
+	}
+	
+	/**
+	 * Computes whether each Rule can match an empty string, recording whether
+	 * each TokenType can in the given map.
+	 */
+	private static boolean[] computeNullable(Rule[] rules,
+			Map<TokenType, Boolean> nullableTokenTypes) {
+		boolean[] nullable = new boolean[rules.length];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Rule rule : rules) {
+				if (nullable[rule.index]) {
+					continue;
+				}
+				for (List<Object> chain : rule.possibleChildren) {
+					if (isNullable(chain, 0, nullable, nullableTokenTypes)) {
+						nullable[rule.index] = true;
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+		return nullable;
+	}
+	
+	/**
+	 * Computes the FIRST set of each Rule.
+	 */
+	private static List<Set<TokenType>> computeFirstSets(Rule[] rules,
+			boolean[] nullable, Map<TokenType, Boolean> nullableTokenTypes) {
+		List<Set<TokenType>> firstSets = new ArrayList<Set<TokenType>>();
+		for (int i = 0; i < rules.length; i++) {
+			firstSets.add(new HashSet<TokenType>());
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Rule rule : rules) {
+				Set<TokenType> firstSet = firstSets.get(rule.index);
+				for (List<Object> chain : rule.possibleChildren) {
+					changed |= addFirstSet(chain, 0, firstSet, nullable,
+							firstSets, nullableTokenTypes);
+				}
+			}
+		}
+		return firstSets;
+	}
+	
+	/**
+	 * Computes the FOLLOW set of each Rule.
+	 */
+	private static List<Set<TokenType>> computeFollowSets(Rule[] rules,
+			Rule root, boolean[] nullable, List<Set<TokenType>> firstSets,
+			Map<TokenType, Boolean> nullableTokenTypes) {
+		List<Set<TokenType>> followSets = new ArrayList<Set<TokenType>>();
+		for (int i = 0; i < rules.length; i++) {
+			followSets.add(new HashSet<TokenType>());
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Rule rule : rules) {
+				for (List<Object> chain : rule.possibleChildren) {
+					for (int i = 0; i < chain.size(); i++) {
+						if (chain.get(i).getClass() != Rule.class) {
+							continue;
+						}
+						Set<TokenType> followSet =
+								followSets.get(((Rule)chain.get(i)).index);
+						
+						// Whatever can start the rest of the chain follows
+						// this Rule, and so does whatever follows the parent
+						// Rule if the rest of the chain can be empty.
+						changed |= addFirstSet(chain, i + 1, followSet,
+								nullable, firstSets, nullableTokenTypes);
+						if (isNullable(chain, i + 1, nullable,
+								nullableTokenTypes)) {
+							changed |= followSet.addAll(
+									followSets.get(rule.index));
+						}
+					}
+				}
+			}
+		}
+		return followSets;
+	}
+	
+	/**
+	 * Returns a message for every pair of chains of a Rule whose predict sets
+	 * overlap.
+	 */
+	private static List<String> computeConflicts(Rule[] rules,
+			boolean[] nullable, List<Set<TokenType>> firstSets,
+			List<Set<TokenType>> followSets,
+			Map<TokenType, Boolean> nullableTokenTypes) {
+		List<String> conflicts = new ArrayList<String>();
+		for (Rule rule : rules) {
+			// Compute the predict set of every chain
+			List<Set<TokenType>> predictSets = new ArrayList<Set<TokenType>>();
+			for (int i = 0; i < rule.possibleChildren.size(); i++) {
+				predictSets.add(getPredictSet(rule, i, nullable, firstSets,
+						followSets, nullableTokenTypes));
+			}
+			
+			// Report every overlapping pair
+			for (int i = 0; i < predictSets.size(); i++) {
+				for (int j = i + 1; j < predictSets.size(); j++) {
+					Set<TokenType> overlap =
+							new HashSet<TokenType>(predictSets.get(i));
+					overlap.retainAll(predictSets.get(j));
+					if (overlap.isEmpty() == false) {
+						conflicts.add("LL(1) conflict in " + rule.name +
+								" between " + rule.possibleChildren.get(i) +
+								" and " + rule.possibleChildren.get(j) +
+								" on " + TokenType.sort(overlap));
+					}
+				}
+			}
+		}
+		return conflicts;
+	}
+	
+	/**
+	 * Returns the predict set of the chain of the given Rule with the given
+	 * index, which is its FIRST set, plus the FOLLOW set of the Rule if the
+	 * chain can be empty.
+	 */
+	private static Set<TokenType> getPredictSet(Rule rule, int chainIndex,
+			boolean[] nullable, List<Set<TokenType>> firstSets,
+			List<Set<TokenType>> followSets,
+			Map<TokenType, Boolean> nullableTokenTypes) {
+		List<Object> chain = rule.possibleChildren.get(chainIndex);
+		Set<TokenType> predictSet = new HashSet<TokenType>();
+		addFirstSet(chain, 0, predictSet, nullable, firstSets,
+				nullableTokenTypes);
+		if (isNullable(chain, 0, nullable, nullableTokenTypes)) {
+			predictSet.addAll(followSets.get(rule.index));
+		}
+		return predictSet;
+	}
+	
+	/**
+	 * Adds the TokenTypes that can start the given chain from the given
+	 * position to the given set, and returns true if the set changed.
+	 */
+	private static boolean addFirstSet(List<Object> chain, int start,
+			Set<TokenType> set, boolean[] nullable,
+			List<Set<TokenType>> firstSets,
+			Map<TokenType, Boolean> nullableTokenTypes) {
+		boolean changed = false;
+		for (int i = start; i < chain.size(); i++) {
+			Object item = chain.get(i);
+			if (item.getClass() == TokenType.class) {
+				TokenType tokenType = (TokenType)item;
+				if (isNullable(tokenType, nullableTokenTypes) == false) {
+					changed |= set.add(tokenType);
+					break;
+				}
+				
+				// A TokenType that only matches an empty string never starts
+				// the next token, so it is left out like an empty chain
+				if (tokenType.stateMachine.startingCharacters.isEmpty() ==
+						false) {
+					changed |= set.add(tokenType);
+				}
+			} else {
+				Rule rule = (Rule)item;
+				changed |= set.addAll(firstSets.get(rule.index));
+				if (nullable[rule.index] == false) {
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Returns true if the given chain can match an empty string from the given
+	 * position.
+	 */
+	private static boolean isNullable(List<Object> chain, int start,
+			boolean[] nullable, Map<TokenType, Boolean> nullableTokenTypes) {
+		for (int i = start; i < chain.size(); i++) {
+			Object item = chain.get(i);
+			if (item.getClass() == TokenType.class) {
+				if (isNullable((TokenType)item, nullableTokenTypes) == false) {
+					return false;
+				}
+			} else if (nullable[((Rule)item).index] == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns true if the given TokenType can match an empty string, caching
+	 * the result in the given map.
+	 */
+	private static boolean isNullable(TokenType tokenType,
+			Map<TokenType, Boolean> nullableTokenTypes) {
+		Boolean result = nullableTokenTypes.get(tokenType);
+		if (result == null) {
+			result = tokenType.matcher.match(new Cursor("")) == 0;
+			nullableTokenTypes.put(tokenType, result);
+		}
+		return result;
 	}
 
 	/**
@@ -0,0 +1,133 @@
+package immutable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This is an immutable information holder class, containing the results of
+ * analyzing a Grammar before it is used to parse anything: which of its Rules
+ * can match an empty string, where it is not LL(1), which of its Rules are
+ * left recursive, unreachable, or unproductive, and the fastest engine that
+ * can parse with it.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class GrammarAnalysis {
+
+	/**
+	 * This enumerates the engines that can parse with a Grammar, from the
+	 * fastest to the most general.
+	 */
+	public enum Engine {
+		/**
+		 * The Grammar has no LL(1) conflicts and no left recursion, so
+		 * ReportGenerator parses with it in one predictive pass.
+		 */
+		LL1,
+
+		/**
+		 * The Grammar has no left recursion, so PackratReportGenerator parses
+		 * with it, trying the chains of a Rule in order where they conflict.
+		 */
+		PACKRAT,
+
+		/**
+		 * The Grammar is left recursive, so only EarleyReportGenerator parses
+		 * with it.
+		 */
+		EARLEY
+	}
+
+	/**
+	 * The Grammar that was analyzed.
+	 */
+	public final Grammar grammar;
+
+	/**
+	 * The Rules that can match an empty string.
+	 */
+	public final Set<Rule> nullableRules;
+
+	/**
+	 * A message describing every LL(1) conflict of the Grammar.
+	 */
+	public final List<String> conflicts;
+
+	/**
+	 * The Rules that can start with themselves without matching a token.
+	 */
+	public final Set<Rule> leftRecursiveRules;
+
+	/**
+	 * The Rules that cannot be reached from the root Rule.
+	 */
+	public final Set<Rule> unreachableRules;
+
+	/**
+	 * The Rules that cannot match any string at all, since every one of
+	 * their chains contains a Rule that never finishes.
+	 *
+	 * Note: The engines still let such a Rule match nothing at the end of
+	 * the tokens.
+	 */
+	public final Set<Rule> unproductiveRules;
+
+	/**
+	 * The fastest engine that can parse with the Grammar.
+	 */
+	public final Engine engine;
+
+	/**
+	 * Standard constructor.
+	 */
+	public GrammarAnalysis(Grammar grammar, Set<Rule> nullableRules,
+			List<String> conflicts, Set<Rule> leftRecursiveRules,
+			Set<Rule> unreachableRules, Set<Rule> unproductiveRules,
+			Engine engine) {
+		this.grammar = grammar;
+		this.nullableRules = nullableRules;
+		this.conflicts = conflicts;
+		this.leftRecursiveRules = leftRecursiveRules;
+		this.unreachableRules = unreachableRules;
+		this.unproductiveRules = unproductiveRules;
+		this.engine = engine;
+	}
+
+	/**
+	 * Returns true if every Rule of the Grammar is reachable and productive.
+	 */
+	public boolean isClean() {
+		return unreachableRules.isEmpty() && unproductiveRules.isEmpty();
+	}
+
+	/**
+	 * Returns a String representation of this object, with one line per
+	 * finding.
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append("Analysis of ").append(grammar.name);
+		result.append("\n  Engine:       ").append(engine);
+		result.append("\n  Nullable:     ").append(getNames(nullableRules));
+		result.append("\n  Left recursive: ")
+				.append(getNames(leftRecursiveRules));
+		result.append("\n  Unreachable:  ").append(getNames(unreachableRules));
+		result.append("\n  Unproductive: ")
+				.append(getNames(unproductiveRules));
+		for (String conflict : conflicts) {
+			result.append("\n  ").append(conflict);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns the names of the given Rules, in the form [ a b c ].
+	 */
+	private static String getNames(Set<Rule> rules) {
+		StringBuilder result = new StringBuilder("[ ");
+		for (Rule rule : rules) {
+			result.append(rule.name).append(' ');
+		}
+		return result.append(']').toString();
+	}
+}
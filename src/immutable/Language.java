@@ -1,13 +1,20 @@
 package immutable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import language.Alphabet;
+import language.MatchingMode;
 import language._TokenType;
 import language.defaults.RegExAlphabet;
 import utilities.ConversionUtilities;
+import utilities.Cursor;
 import utilities.StringUtilities;
 
 /**
@@ -30,16 +37,94 @@ public class Language {
 	 */
 	public final Map<String, TokenType> tokenTypes;
 
+	/**
+	 * The classes of characters shared by the tables of every TokenType of
+	 * this Language.
+	 */
+	public final CharacterClasses characterClasses;
+
+	/**
+	 * The TokenTypes of this Language, ordered by their index.
+	 */
+	private final TokenType[] indexedTokenTypes;
+	
+	/**
+	 * This table runs all of the TokenTypes of this Language at once, so that
+	 * the longest match among any subset of them takes a single scan.
+	 */
+	public final CombinedTransitionTable combinedTable;
+
+	/**
+	 * The combined table lowered to the bytes of UTF-8, which is only
+	 * constructed once it is needed.
+	 */
+	private ByteTransitionTable byteTable;
+
 	/**
 	 * Standard constructor.
 	 */
 	public Language(Alphabet alphabet, Map<String, _TokenType> tokenTypes) {
+		this(alphabet, tokenTypes, compileStateMachines(tokenTypes));
+	}
+
+	/**
+	 * Constructs a Language whose state machines have already been compiled,
+	 * such as one loaded from a snapshot. Only the names, reserved word
+	 * status and matching modes of the _TokenTypes are used, and the state
+	 * machines of DFA TokenTypes must already be deterministic.
+	 */
+	public Language(Alphabet alphabet, Map<String, _TokenType> tokenTypes,
+			Map<String, StateMachine> stateMachines) {
 		if (alphabet == null) {
 			this.alphabet = RegExAlphabet.DEFAULT_ALPHABET;
 		} else {
 			this.alphabet = alphabet;
 		}
-		this.tokenTypes = lockTokenTypes(tokenTypes);
+		
+		// Compute the character classes across all of the state machines
+		this.characterClasses = new CharacterClasses(stateMachines.values(),
+				this.alphabet);
+		this.tokenTypes = lockTokenTypes(tokenTypes, stateMachines);
+		
+		// Order the DFA TokenTypes by their index and combine their tables
+		List<TokenType> indexedTokenTypes = new ArrayList<TokenType>();
+		for (TokenType tokenType : this.tokenTypes.values()) {
+			if (tokenType.index >= 0) {
+				indexedTokenTypes.add(tokenType);
+			}
+		}
+		this.indexedTokenTypes =
+				new TokenType[indexedTokenTypes.size()];
+		for (TokenType tokenType : indexedTokenTypes) {
+			this.indexedTokenTypes[tokenType.index] = tokenType;
+		}
+		this.combinedTable =
+				new CombinedTransitionTable(this.indexedTokenTypes,
+						this.characterClasses);
+	}
+
+	/**
+	 * Converts the state machine of each _TokenType into an immutable
+	 * StateMachine, minimizing it first if it is to be run as a DFA.
+	 */
+	private static Map<String, StateMachine> compileStateMachines(
+			Map<String, _TokenType> tokenTypes) {
+		Map<String, StateMachine> result = new HashMap<String, StateMachine>();
+		for (Entry<String, _TokenType> entry : tokenTypes.entrySet()) {
+			_TokenType oldTokenType = entry.getValue();
+
+			// Convert the state machine to a minimal DFA, unless it is to be
+			// simulated as an NFA
+			if (oldTokenType.matchingMode == MatchingMode.DFA) {
+				oldTokenType.stateMachine.convertToDFA();
+				oldTokenType.stateMachine.minimizeDFA();
+			}
+			
+			// Get a converted state machine
+			result.put(entry.getKey(), ConversionUtilities.convertStateMachine(
+					oldTokenType.stateMachine));
+		}
+		return result;
 	}
 
 	/**
@@ -47,28 +132,47 @@ public class Language {
 	 * immutable mapping of String objects to TokenType objects.
 	 */
 	private Map<String, TokenType> lockTokenTypes(
-			Map<String, _TokenType> tokenTypes) {
+			Map<String, _TokenType> tokenTypes,
+			Map<String, StateMachine> stateMachines) {
 		// Initialize the result
 		Map<String, TokenType> result = new HashMap<String, TokenType>();
 
+		// Order the token types so that reserved words get the lowest indices,
+		// and therefore the highest priority.
+		List<Entry<String, _TokenType>> entries =
+				new ArrayList<Entry<String, _TokenType>>(tokenTypes.entrySet());
+		Collections.sort(entries, new Comparator<Entry<String, _TokenType>>() {
+			public int compare(Entry<String, _TokenType> lhs,
+					Entry<String, _TokenType> rhs) {
+				if (lhs.getValue().reservedWord != rhs.getValue().reservedWord) {
+					return lhs.getValue().reservedWord ? -1 : 1;
+				}
+				return lhs.getKey().compareTo(rhs.getKey());
+			}
+		});
+
 		// Iterate over all items in the given map
-		for (Entry<String, _TokenType> entry : tokenTypes.entrySet()) {
+		int indexCount = 0;
+		for (Entry<String, _TokenType> entry : entries) {
 			String name = entry.getKey();
 			_TokenType oldTokenType = entry.getValue();
 
-			// Convert the state machine to a DFA
-			oldTokenType.stateMachine.convertToDFA();
-			
-			// Get a converted state machine
-			StateMachine stateMachine = ConversionUtilities.convertStateMachine(
-					oldTokenType.stateMachine);
+			MatchingMode mode = oldTokenType.matchingMode;
+			StateMachine stateMachine = stateMachines.get(name);
 			
 			// Get the reserved word status
 			boolean reservedWord = oldTokenType.reservedWord;
 			
 			// Aggregate all this information into a TokenType object
+			// Only DFA token types take part in the combined table
+			int index = -1;
+			if (mode == MatchingMode.DFA) {
+				index = indexCount;
+				indexCount++;
+			}
 			TokenType tokenType = new TokenType(this, name, stateMachine,
-					reservedWord);
+					reservedWord, index, mode, this.characterClasses,
+					oldTokenType.cacheCapacity);
 			
 			// Save the results
 			result.put(name, tokenType);
@@ -76,6 +180,88 @@ public class Language {
 		return result;
 	}
 
+	/**
+	 * Finds the longest prefix of the contents that any of the given
+	 * TokenTypes of this Language match, without consuming it. The TokenTypes
+	 * that match that longest prefix are added to result, and its length is
+	 * returned. If none of the TokenTypes match a non-empty prefix, all of
+	 * them are added to result and 0 is returned.
+	 */
+	public int getLongestMatch(Collection<TokenType> candidates,
+			Cursor contents, Collection<TokenType> result) {
+		// Construct the mask of candidate TokenTypes in the combined table,
+		// and set aside the ones that are not in it.
+		long[] mask = new long[combinedTable.words];
+		boolean masked = false;
+		List<TokenType> unindexedCandidates = new ArrayList<TokenType>();
+		for (TokenType tokenType : candidates) {
+			if (tokenType.index < 0) {
+				unindexedCandidates.add(tokenType);
+			} else {
+				mask[tokenType.index >> 6] |= 1L << tokenType.index;
+				masked = true;
+			}
+		}
+		
+		// Walk the combined table until none of the candidates are alive,
+		// remembering the last State in which one of them accepted.
+		int currentState = combinedTable.initialState;
+		int acceptedState = TransitionTable.DEAD_STATE;
+		int acceptedLength = 0;
+		List<TokenType> matches = new ArrayList<TokenType>();
+		for (int i = 0; masked && contents.hasRemaining(i); i++) {
+			currentState = combinedTable.getDestination(currentState,
+					contents.peek(i));
+			if (currentState == TransitionTable.DEAD_STATE ||
+					combinedTable.isAlive(currentState, mask) == false) {
+				break;
+			}
+			if (combinedTable.isAccepting(currentState, mask)) {
+				acceptedState = currentState;
+				acceptedLength = i + 1;
+			}
+		}
+		if (acceptedState != TransitionTable.DEAD_STATE) {
+			for (TokenType tokenType : candidates) {
+				if (tokenType.index >= 0 && combinedTable.isAccepting(
+						acceptedState, tokenType.index)) {
+					matches.add(tokenType);
+				}
+			}
+		}
+		
+		// Run the remaining candidates one at a time
+		for (TokenType tokenType : unindexedCandidates) {
+			int length = tokenType.matcher.match(contents);
+			if (length > acceptedLength) {
+				matches.clear();
+				acceptedLength = length;
+			}
+			if (length == acceptedLength && length > 0) {
+				matches.add(tokenType);
+			}
+		}
+		
+		// Report the candidates that matched the longest prefix
+		if (acceptedLength == 0) {
+			result.addAll(candidates);
+		} else {
+			result.addAll(matches);
+		}
+		return acceptedLength;
+	}
+
+	/**
+	 * Returns the combined table of this Language lowered to the bytes of
+	 * UTF-8, constructing it the first time that it is needed.
+	 */
+	public synchronized ByteTransitionTable getByteTable() {
+		if (byteTable == null) {
+			byteTable = new ByteTransitionTable(combinedTable);
+		}
+		return byteTable;
+	}
+
 	/**
 	 * Returns a string representation of this object.
 	 */
@@ -0,0 +1,272 @@
+package immutable;
+
+import java.util.Arrays;
+
+import language.Alphabet;
+import utilities.Cursor;
+
+/**
+ * This class runs a nondeterministic StateMachine as a DFA whose States are
+ * only constructed once the input reaches them. Each DFA State is a set of NFA
+ * States, and both the States and their transitions are kept in a cache of a
+ * fixed size. When the cache is full, it is flushed and rebuilt from whatever
+ * States the input reaches next, so the memory used stays bounded while
+ * inputs that keep to a small part of the DFA run at nearly the speed of a
+ * TransitionTable.
+ *
+ * Note: The cache makes this class mutable, so match is synchronized.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class LazyTransitionTable implements Matcher {
+
+	/**
+	 * The number of DFA States that are cached unless specified otherwise.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * This value is stored in a cell of the cache when the transition has not
+	 * been computed yet.
+	 */
+	private static final int UNKNOWN_STATE = -2;
+
+	/**
+	 * The NFA whose subsets are the States of this table.
+	 */
+	private final NFATable nfa;
+
+	/**
+	 * The maximum number of DFA States in the cache.
+	 */
+	public final int capacity;
+
+	/**
+	 * The number of times that the cache has been flushed.
+	 */
+	private int flushCount;
+
+	/**
+	 * The number of DFA States currently in the cache.
+	 */
+	private int stateCount;
+
+	/**
+	 * The NFA States of each cached DFA State, stored one after another.
+	 */
+	private final long[] stateSets;
+
+	/**
+	 * The cached transitions, stored row by row.
+	 */
+	private final int[] transitions;
+
+	/**
+	 * A bitmap of the accepting cached DFA States.
+	 */
+	private final long[] accepting;
+
+	/**
+	 * An open addressing hash table from a set of NFA States to one plus the
+	 * identifier of its cached DFA State, or 0 for an empty slot.
+	 */
+	private final int[] slots;
+
+	/**
+	 * A scratch bitset used while computing a transition.
+	 */
+	private final long[] scratch;
+
+	/**
+	 * Constructs a LazyTransitionTable with the default capacity.
+	 */
+	public LazyTransitionTable(StateMachine stateMachine, Alphabet alphabet) {
+		this(new NFATable(stateMachine, alphabet), DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a LazyTransitionTable that caches at most the given number
+	 * of DFA States.
+	 */
+	public LazyTransitionTable(StateMachine stateMachine, Alphabet alphabet,
+			int capacity) {
+		this(new NFATable(stateMachine, alphabet), capacity);
+	}
+
+	/**
+	 * Constructs a LazyTransitionTable with the default capacity, indexed by
+	 * the given character classes, which must have been computed over the
+	 * StateMachine.
+	 */
+	public LazyTransitionTable(StateMachine stateMachine,
+			CharacterClasses classes) {
+		this(new NFATable(stateMachine, classes), DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a LazyTransitionTable that caches at most the given number
+	 * of DFA States, indexed by the given character classes, which must have
+	 * been computed over the StateMachine.
+	 */
+	public LazyTransitionTable(StateMachine stateMachine,
+			CharacterClasses classes, int capacity) {
+		this(new NFATable(stateMachine, classes), capacity);
+	}
+
+	/**
+	 * Constructs a LazyTransitionTable over the given NFA that caches at
+	 * most the given number of DFA States.
+	 */
+	private LazyTransitionTable(NFATable nfa, int capacity) {
+		this.nfa = nfa;
+		this.capacity = Math.max(2, capacity);
+		this.stateSets = new long[this.capacity * nfa.words];
+		this.transitions = new int[this.capacity * nfa.width];
+		this.accepting = new long[(this.capacity + 63) / 64];
+		this.slots = new int[Integer.highestOneBit(this.capacity) * 4];
+		this.scratch = new long[nfa.words];
+		flush();
+	}
+
+	/**
+	 * Returns the number of times that the cache has been flushed.
+	 */
+	public synchronized int getFlushCount() {
+		return flushCount;
+	}
+
+	/**
+	 * Returns the length of the longest prefix of the contents that is
+	 * accepted, or -1 if no prefix is accepted.
+	 */
+	public synchronized int match(Cursor contents) {
+		// Look up the initial State, which may have been flushed
+		int currentState = getState(nfa.initialStates);
+		int acceptedLength = isAccepting(currentState) ? 0 : -1;
+
+		for (int i = 0; contents.hasRemaining(i); i++) {
+			int column = nfa.classes.classOf(contents.peek(i));
+
+			// Follow the cached transition, computing it if necessary
+			int nextState = transitions[currentState * nfa.width + column];
+			if (nextState == UNKNOWN_STATE) {
+				nextState = computeTransition(currentState, column);
+			}
+			if (nextState == TransitionTable.DEAD_STATE) {
+				break;
+			}
+			currentState = nextState;
+
+			if (isAccepting(currentState)) {
+				acceptedLength = i + 1;
+			}
+		}
+		return acceptedLength;
+	}
+
+	/**
+	 * Computes, caches, and returns the DFA State that the given DFA State
+	 * transitions into with the given column.
+	 */
+	private int computeTransition(int state, int column) {
+		// Union the destinations of every NFA State in this DFA State
+		Arrays.fill(scratch, 0);
+		boolean alive = false;
+		for (int word = 0; word < nfa.words; word++) {
+			long bits = stateSets[state * nfa.words + word];
+			while (bits != 0) {
+				int nfaState = (word << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+
+				int offset = nfa.transitions[nfaState * nfa.width + column];
+				if (offset == NFATable.NO_STATES) {
+					continue;
+				}
+				for (int j = 0; j < nfa.words; j++) {
+					scratch[j] |= nfa.sets[offset + j];
+				}
+				alive = true;
+			}
+		}
+
+		if (alive == false) {
+			transitions[state * nfa.width + column] =
+					TransitionTable.DEAD_STATE;
+			return TransitionTable.DEAD_STATE;
+		}
+
+		// Look up the destination. If that flushes the cache, the source
+		// State no longer exists, so the transition is not recorded.
+		int flushes = flushCount;
+		int destination = getState(scratch);
+		if (flushes == flushCount) {
+			transitions[state * nfa.width + column] = destination;
+		}
+		return destination;
+	}
+
+	/**
+	 * Returns the identifier of the cached DFA State for the given set of NFA
+	 * States, adding it to the cache (and flushing the cache first if it is
+	 * full) if necessary.
+	 */
+	private int getState(long[] set) {
+		int mask = slots.length - 1;
+		int slot = Arrays.hashCode(set) & mask;
+		while (slots[slot] != 0) {
+			int state = slots[slot] - 1;
+			if (equalsStateSet(state, set)) {
+				return state;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// Make room for the new State
+		if (stateCount == capacity) {
+			flush();
+			flushCount++;
+			return getState(set);
+		}
+
+		// Add the new State
+		int state = stateCount;
+		stateCount++;
+		slots[slot] = state + 1;
+		System.arraycopy(set, 0, stateSets, state * nfa.words, nfa.words);
+		if (NFATable.intersects(set, nfa.acceptingStates)) {
+			accepting[state >> 6] |= 1L << state;
+		}
+		return state;
+	}
+
+	/**
+	 * Returns true if the given cached DFA State holds the given set of NFA
+	 * States.
+	 */
+	private boolean equalsStateSet(int state, long[] set) {
+		int offset = state * nfa.words;
+		for (int i = 0; i < nfa.words; i++) {
+			if (stateSets[offset + i] != set[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the given cached DFA State is an accept state.
+	 */
+	private boolean isAccepting(int state) {
+		return (accepting[state >> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	private void flush() {
+		stateCount = 0;
+		Arrays.fill(slots, 0);
+		Arrays.fill(transitions, UNKNOWN_STATE);
+		Arrays.fill(accepting, 0);
+	}
+}
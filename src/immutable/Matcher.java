@@ -0,0 +1,19 @@
+package immutable;
+
+import utilities.Cursor;
+
+/**
+ * This interface is implemented by the compiled forms of a StateMachine that
+ * can be run against a document.
+ * 
+ * @author Trironk Kiatkungwanglai
+ */
+public interface Matcher {
+
+	/**
+	 * Returns the length of the longest prefix of the contents that is
+	 * accepted, or -1 if no prefix is accepted. This neither consumes nor
+	 * copies the contents.
+	 */
+	public int match(Cursor contents);
+}
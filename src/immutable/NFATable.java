@@ -0,0 +1,253 @@
+package immutable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import language.Alphabet;
+import utilities.Cursor;
+
+/**
+ * This is an immutable information holder class, containing a
+ * nondeterministic StateMachine prepared for bit-parallel simulation. The set
+ * of active States is kept as a bitset, and the epsilon closure of every
+ * transition is computed once up front, so that each character costs one
+ * bitwise OR per active State and the memory used is bounded by the size of
+ * the NFA.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class NFATable implements Matcher {
+
+	/**
+	 * This value is stored in a cell of the table when a State cannot
+	 * transition with the character of that column.
+	 */
+	static final int NO_STATES = -1;
+
+	/**
+	 * The number of States in this table.
+	 */
+	public final int stateCount;
+
+	/**
+	 * The number of columns in this table, one per character class.
+	 */
+	public final int width;
+
+	/**
+	 * The classes of characters that index the columns of this table.
+	 */
+	public final CharacterClasses classes;
+
+	/**
+	 * The number of longs in a bitset of States.
+	 */
+	public final int words;
+
+	/**
+	 * The epsilon closure of the initial State.
+	 */
+	final long[] initialStates;
+
+	/**
+	 * The bitset of accepting States.
+	 */
+	final long[] acceptingStates;
+
+	/**
+	 * For each State and column, the offset into sets of the epsilon closed
+	 * bitset of destination States, or NO_STATES if there are none.
+	 */
+	final int[] transitions;
+
+	/**
+	 * The distinct bitsets of destination States, stored one after another.
+	 */
+	final long[] sets;
+
+	/**
+	 * Constructs an NFATable from a StateMachine, with character classes of
+	 * its own.
+	 */
+	public NFATable(StateMachine stateMachine, Alphabet alphabet) {
+		this(stateMachine, new CharacterClasses(
+				Collections.singletonList(stateMachine), alphabet));
+	}
+
+	/**
+	 * Constructs an NFATable from a StateMachine, indexed by the given
+	 * character classes, which must have been computed over it.
+	 */
+	public NFATable(StateMachine stateMachine, CharacterClasses classes) {
+		// Assign an identifier to each State
+		List<State> states = stateMachine.states;
+		Map<State, Integer> identifiers = new HashMap<State, Integer>();
+		for (State state : states) {
+			identifiers.put(state, identifiers.size());
+		}
+		int width = classes.count;
+		int words = Math.max(1, (states.size() + 63) / 64);
+
+		// Compute the epsilon closure of every State once
+		long[][] closures = new long[states.size()][];
+		for (State state : states) {
+			long[] closure = new long[words];
+			for (State equivalentState :
+					TransitionTable.getEpsilonStates(state)) {
+				int id = identifiers.get(equivalentState);
+				closure[id >> 6] |= 1L << id;
+			}
+			closures[identifiers.get(state)] = closure;
+		}
+
+		// Compute the epsilon closed destinations of every State and column,
+		// sharing identical bitsets.
+		Map<StateSet, Integer> offsets = new HashMap<StateSet, Integer>();
+		int[] transitions = new int[states.size() * width];
+		for (State state : states) {
+			int row = identifiers.get(state) * width;
+			Map<Character, Set<State>> map = state.charToStateSetMap;
+			for (int column = 0; column < width; column++) {
+				Character c = classes.getRepresentative(column);
+				Set<State> destinations = map.get(c);
+				if (destinations == null) {
+					destinations = map.get(null);
+				}
+				if (destinations == null || destinations.isEmpty()) {
+					transitions[row + column] = NO_STATES;
+					continue;
+				}
+
+				long[] closure = new long[words];
+				for (State destination : destinations) {
+					long[] destinationClosure =
+							closures[identifiers.get(destination)];
+					for (int i = 0; i < words; i++) {
+						closure[i] |= destinationClosure[i];
+					}
+				}
+
+				StateSet set = new StateSet(closure);
+				Integer offset = offsets.get(set);
+				if (offset == null) {
+					offset = offsets.size() * words;
+					offsets.put(set, offset);
+				}
+				transitions[row + column] = offset;
+			}
+		}
+
+		// Lay the distinct bitsets out one after another
+		long[] sets = new long[offsets.size() * words];
+		for (Map.Entry<StateSet, Integer> entry : offsets.entrySet()) {
+			System.arraycopy(entry.getKey().bits, 0, sets, entry.getValue(),
+					words);
+		}
+
+		// Mark the final State as the only accepting State. Any State that
+		// can reach it through epsilon transitions pulls it into the active
+		// set through its closure.
+		long[] acceptingStates = new long[words];
+		int finalId = identifiers.get(stateMachine.finalState);
+		acceptingStates[finalId >> 6] |= 1L << finalId;
+
+		// Assign final fields
+		this.stateCount = states.size();
+		this.width = width;
+		this.classes = classes;
+		this.words = words;
+		this.initialStates =
+				closures[identifiers.get(stateMachine.initialState)];
+		this.acceptingStates = acceptingStates;
+		this.transitions = transitions;
+		this.sets = sets;
+	}
+
+	/**
+	 * Returns the length of the longest prefix of the contents that is
+	 * accepted, or -1 if no prefix is accepted.
+	 */
+	public int match(Cursor contents) {
+		// Initialize bookkeeping
+		long[] currentStates = Arrays.copyOf(initialStates, words);
+		long[] nextStates = new long[words];
+		int acceptedLength = intersects(currentStates, acceptingStates) ?
+				0 : -1;
+
+		for (int i = 0; contents.hasRemaining(i); i++) {
+			int column = classes.classOf(contents.peek(i));
+
+			// Union the destinations of every active State
+			Arrays.fill(nextStates, 0);
+			boolean alive = false;
+			for (int word = 0; word < words; word++) {
+				long bits = currentStates[word];
+				while (bits != 0) {
+					int state = (word << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+
+					int offset = transitions[state * width + column];
+					if (offset == NO_STATES) {
+						continue;
+					}
+					for (int j = 0; j < words; j++) {
+						nextStates[j] |= sets[offset + j];
+					}
+					alive = true;
+				}
+			}
+
+			// Stop once no State is active
+			if (alive == false) {
+				break;
+			}
+
+			long[] temp = currentStates;
+			currentStates = nextStates;
+			nextStates = temp;
+
+			if (intersects(currentStates, acceptingStates)) {
+				acceptedLength = i + 1;
+			}
+		}
+		return acceptedLength;
+	}
+
+	/**
+	 * Returns true if the two bitsets share any State.
+	 */
+	static boolean intersects(long[] lhs, long[] rhs) {
+		for (int i = 0; i < lhs.length; i++) {
+			if ((lhs[i] & rhs[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This is a hashable bitset of States.
+	 */
+	private static class StateSet {
+		private final long[] bits;
+		private final int hashCode;
+
+		private StateSet(long[] bits) {
+			this.bits = bits;
+			this.hashCode = Arrays.hashCode(bits);
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof StateSet &&
+					Arrays.equals(bits, ((StateSet)o).bits);
+		}
+
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
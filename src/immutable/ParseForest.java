@@ -0,0 +1,136 @@
+package immutable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is an information holder class, containing every parse of a
+ * TokenBuffer with a Grammar. Rather than one tree per parse, the parses are
+ * packed into a single graph: each Node stands for a Rule or TokenType over a
+ * span of tokens and is shared by every parse that uses it, and a Node with
+ * more than one Alternative is where the parses differ.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class ParseForest {
+
+	/**
+	 * The Grammar that the tokens were parsed with.
+	 */
+	public final Grammar grammar;
+
+	/**
+	 * The tokens that were parsed.
+	 */
+	public final TokenBuffer tokens;
+
+	/**
+	 * The Node of the root Rule over all of the tokens.
+	 */
+	public final Node root;
+
+	/**
+	 * The number of distinct Nodes in this forest.
+	 */
+	public final int nodeCount;
+
+	/**
+	 * This is true if some Node of this forest has more than one
+	 * Alternative, meaning that the tokens can be parsed in more than one
+	 * way.
+	 */
+	public final boolean ambiguous;
+
+	/**
+	 * Standard constructor.
+	 */
+	public ParseForest(Grammar grammar, TokenBuffer tokens, Node root,
+			int nodeCount, boolean ambiguous) {
+		this.grammar = grammar;
+		this.tokens = tokens;
+		this.root = root;
+		this.nodeCount = nodeCount;
+		this.ambiguous = ambiguous;
+	}
+
+	/**
+	 * This class represents a Rule or TokenType matching the tokens from
+	 * start up to end. A TokenType Node spans one token, or none if the
+	 * TokenType matched nothing, and has no Alternatives.
+	 *
+	 * Note: The Alternatives are filled in while the forest is generated,
+	 * after the Node has been shared with its parents.
+	 */
+	public static class Node {
+
+		/**
+		 * The Rule or TokenType of this Node.
+		 */
+		public final Object symbol;
+
+		/**
+		 * The index of the first token of this Node.
+		 */
+		public final int start;
+
+		/**
+		 * The index just past the last token of this Node.
+		 */
+		public final int end;
+
+		/**
+		 * The ways in which a Rule matches this span of tokens.
+		 */
+		public final List<Alternative> alternatives;
+
+		/**
+		 * Standard constructor.
+		 */
+		public Node(Object symbol, int start, int end) {
+			this.symbol = symbol;
+			this.start = start;
+			this.end = end;
+			this.alternatives = new ArrayList<Alternative>();
+		}
+
+		public String toString() {
+			return symbol + "[" + start + ", " + end + ")";
+		}
+	}
+
+	/**
+	 * This class represents one way that a Rule matches a span of tokens: a
+	 * chain of the Rule, and the Node that each item of the chain matched.
+	 */
+	public static class Alternative {
+
+		/**
+		 * This value is the chain of a Rule that matched nothing because it
+		 * was reached at the end of the tokens.
+		 */
+		public static final int NO_CHAIN = -1;
+
+		/**
+		 * The index of the chain within the possible children of the Rule,
+		 * or NO_CHAIN.
+		 */
+		public final int chain;
+
+		/**
+		 * The Node of each item of the chain.
+		 */
+		public final List<Node> children;
+
+		/**
+		 * Standard constructor.
+		 */
+		public Alternative(int chain, List<Node> children) {
+			this.chain = chain;
+			this.children = children;
+		}
+
+		public String toString() {
+			return chain + ": " + children;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package immutable;
+
+import java.util.Arrays;
+
+/**
+ * This is an immutable information holder class, containing the parse tree of
+ * a TokenBuffer. Rather than one object per node, the nodes are numbered in
+ * the order they were parsed, and each of their fields is kept in an array
+ * indexed by that number. Node 0 is the root.
+ *
+ * A node is either a Rule or a TokenType. The kind of a Rule node is the index
+ * of the Rule, and the kind of a TokenType node is -1 minus the index of the
+ * TokenType, both within the Grammar.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class ParseTree {
+
+	/**
+	 * This value stands for a missing parent, child, or sibling.
+	 */
+	public static final int NO_NODE = -1;
+
+	/**
+	 * The Grammar that the tokens were parsed with.
+	 */
+	public final Grammar grammar;
+
+	/**
+	 * The tokens that were parsed.
+	 */
+	public final TokenBuffer tokens;
+
+	/**
+	 * The number of nodes in this tree.
+	 */
+	public final int size;
+
+	/**
+	 * The kind of each node.
+	 */
+	private final int[] kinds;
+
+	/**
+	 * The parent of each node.
+	 */
+	private final int[] parents;
+
+	/**
+	 * The first child of each node.
+	 */
+	private final int[] firstChildren;
+
+	/**
+	 * The next sibling of each node.
+	 */
+	private final int[] nextSiblings;
+
+	/**
+	 * The index of the first token of each node.
+	 */
+	private final int[] tokenStarts;
+
+	/**
+	 * The index just past the last token of each node.
+	 */
+	private final int[] tokenEnds;
+
+	/**
+	 * Constructs a ParseTree holding the first size nodes of the given
+	 * arrays.
+	 */
+	public ParseTree(Grammar grammar, TokenBuffer tokens, int[] kinds,
+			int[] parents, int[] firstChildren, int[] nextSiblings,
+			int[] tokenStarts, int[] tokenEnds, int size) {
+		this.grammar = grammar;
+		this.tokens = tokens;
+		this.size = size;
+		this.kinds = Arrays.copyOf(kinds, size);
+		this.parents = Arrays.copyOf(parents, size);
+		this.firstChildren = Arrays.copyOf(firstChildren, size);
+		this.nextSiblings = Arrays.copyOf(nextSiblings, size);
+		this.tokenStarts = Arrays.copyOf(tokenStarts, size);
+		this.tokenEnds = Arrays.copyOf(tokenEnds, size);
+	}
+
+	/**
+	 * Returns the root node, or NO_NODE if this tree is empty.
+	 */
+	public int getRoot() {
+		return size == 0 ? NO_NODE : 0;
+	}
+
+	/**
+	 * Returns the kind of the given node.
+	 */
+	public int getKind(int node) {
+		return kinds[node];
+	}
+
+	/**
+	 * Returns true if the given node is a Rule node.
+	 */
+	public boolean isRule(int node) {
+		return kinds[node] >= 0;
+	}
+
+	/**
+	 * Returns the Rule of the given node, or null if it is a TokenType node.
+	 */
+	public Rule getRule(int node) {
+		return isRule(node) ? grammar.getRule(kinds[node]) : null;
+	}
+
+	/**
+	 * Returns the TokenType of the given node, or null if it is a Rule node.
+	 */
+	public TokenType getTokenType(int node) {
+		return isRule(node) ? null : grammar.getTokenType(-1 - kinds[node]);
+	}
+
+	/**
+	 * Returns the parent of the given node, or NO_NODE for the root.
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * Returns the first child of the given node, or NO_NODE if it has none.
+	 */
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	/**
+	 * Returns the next sibling of the given node, or NO_NODE if it is the
+	 * last child of its parent.
+	 */
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	/**
+	 * Returns the index of the first token of the given node.
+	 */
+	public int getTokenStart(int node) {
+		return tokenStarts[node];
+	}
+
+	/**
+	 * Returns the index just past the last token of the given node.
+	 */
+	public int getTokenEnd(int node) {
+		return tokenEnds[node];
+	}
+
+	/**
+	 * Returns a String representation of this object, with one node per
+	 * line, indented by its depth.
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		int[] depths = new int[size];
+		for (int node = 0; node < size; node++) {
+			if (parents[node] != NO_NODE) {
+				depths[node] = depths[parents[node]] + 1;
+			}
+			for (int i = 0; i < depths[node]; i++) {
+				result.append("  ");
+			}
+			if (isRule(node)) {
+				result.append(getRule(node).name);
+			} else if (tokenStarts[node] == tokenEnds[node]) {
+				result.append(getTokenType(node).name);
+			} else {
+				result.append(tokens.getToken(tokenStarts[node]));
+			}
+			result.append('\n');
+		}
+		return result.toString();
+	}
+}
@@ -37,30 +37,48 @@ public class Report
 	 * Returns a String representation of this object.
 	 */
 	public String toString() {
-		String result = new String();
+		StringBuilder result = new StringBuilder();
 		
 		// TODO: Extract formatting constants into public static final variables
 		// TODO: Intelligently determine the appropriate size of the TokenType
 		// name.
 		
 		// Get the width of the index
-		int indexWidth = 2;
-		int temp = tokens.size();
-		while (temp > 0) {
-			temp /= 10;
-			indexWidth++;
-		}
+		int indexWidth = getIndexWidth(tokens.size());
 		
 		int count = 1;
 		for (Token token : tokens) {
-			result += StringUtilities.padRight("" + count + ":", indexWidth) + 
-					StringUtilities.padRight(token.toString(), 35);
+			result.append(getLine(count, token, indexWidth));
 
 			// TODO: Add in a way of printing columns
 			count++;
-			result += '\n';
+			result.append('\n');
 		}
 		
-		return result;
+		return result.toString();
+	}
+	
+	/**
+	 * Returns the width of the index column of a Report with the given
+	 * number of tokens.
+	 */
+	public static int getIndexWidth(long tokenCount) {
+		int indexWidth = 2;
+		long temp = tokenCount;
+		while (temp > 0) {
+			temp /= 10;
+			indexWidth++;
+		}
+		return indexWidth;
+	}
+	
+	/**
+	 * Returns the line of a Report that shows the given token, whose count
+	 * starts from 1, with an index column of the given width. This is how
+	 * tokens are printed one at a time, as they are lexed.
+	 */
+	public static String getLine(int count, Token token, int indexWidth) {
+		return StringUtilities.padRight("" + count + ":", indexWidth) +
+				StringUtilities.padRight(token.toString(), 35);
 	}
 }
@@ -31,14 +31,29 @@ public class Rule {
 	 */
 	public final Set<TokenType> startingTokenTypes;
 	
+	/**
+	 * The index of this Rule within its Grammar, which selects its row of the
+	 * prediction table, or -1 if this Rule is not part of a Grammar.
+	 */
+	public final int index;
+	
 	/**
 	 * Standard constructor.
 	 */
 	public Rule(String name, List<ArrayList<Object>> possibleChildren,
 			Set<TokenType> startingTokenTypes) {
+		this(name, possibleChildren, startingTokenTypes, -1);
+	}
+	
+	/**
+	 * Constructs a Rule with the given index within its Grammar.
+	 */
+	public Rule(String name, List<ArrayList<Object>> possibleChildren,
+			Set<TokenType> startingTokenTypes, int index) {
 		this.name = name;
 		this.possibleChildren = possibleChildren;
 		this.startingTokenTypes = startingTokenTypes;
+		this.index = index;
 	}
 	
 	public String toString() {
@@ -2,10 +2,17 @@ package immutable;
 
 import immutable.TokenType;
 import utilities.StringUtilities;
+import utilities.SubSequence;
 
 /**
  * This class is an information holder for a Token.
  * 
+ * Rather than a copy of its characters, a Token holds the document that it
+ * was lexed from and its offsets within it, so lexing a Token allocates
+ * nothing but the Token itself. Its characters are only copied into a String
+ * when getContents is called, but the Token keeps the whole document in
+ * memory for as long as it is kept.
+ * 
  * Note: This class does not contain any parsing logic. See TokenParser instead. 
  * 
  * @author Trironk Kiatkungwanglai
@@ -18,16 +25,61 @@ public class Token {
 	public final TokenType tokenType;
 	
 	/**
-	 * This value is the string representation of this Token.
+	 * The document that this Token was lexed from.
+	 */
+	public final CharSequence source;
+	
+	/**
+	 * The offset of the first character of this Token within the source.
+	 */
+	public final int start;
+	
+	/**
+	 * The offset just past the last character of this Token within the
+	 * source.
 	 */
-	public final String contents;
+	public final int end;
 	
 	/**
-	 * Constructs a Token object.
+	 * Constructs a Token object whose source is its own contents.
 	 */
 	public Token(TokenType tokenType, String contents) {
+		this(tokenType, contents, 0, contents.length());
+	}
+	
+	/**
+	 * Constructs a Token object over the characters of the source from start
+	 * up to end.
+	 */
+	public Token(TokenType tokenType, CharSequence source, int start,
+			int end) {
 		this.tokenType = tokenType;
-		this.contents = contents;
+		this.source = source;
+		this.start = start;
+		this.end = end;
+	}
+	
+	/**
+	 * Returns the number of characters of this Token.
+	 */
+	public int length() {
+		return end - start;
+	}
+	
+	/**
+	 * Returns a view of the characters of this Token, which reads them from
+	 * the source rather than copying them.
+	 */
+	public CharSequence getText() {
+		return new SubSequence(source, start, end);
+	}
+	
+	/**
+	 * Returns the characters of this Token as a String. Unless the source is
+	 * the String itself, this copies them.
+	 */
+	public String getContents() {
+		return source.subSequence(start, end).toString();
 	}
 	
 	/**
@@ -35,6 +87,6 @@ public class Token {
 	 */
 	public String toString() {
 		return '[' + StringUtilities.padCenter(tokenType.name, 15) + "]: " +
-				StringUtilities.escaped(contents); 
+				StringUtilities.escaped(getContents()); 
 	}
 }
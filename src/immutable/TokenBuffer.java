@@ -0,0 +1,106 @@
+package immutable;
+
+import java.util.Arrays;
+
+import utilities.Cursor;
+
+/**
+ * This is an immutable information holder class, containing the tokens of a
+ * document that has been lexed once up front. Rather than keeping a Token
+ * object per token, each token is stored as its TokenType and the offsets of
+ * its contents, so the buffer stays compact and can be read by index by any
+ * number of parses.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class TokenBuffer {
+
+	/**
+	 * The contents of the document that was lexed.
+	 */
+	public final CharSequence contents;
+
+	/**
+	 * The number of tokens in this buffer.
+	 */
+	public final int size;
+
+	/**
+	 * The TokenType of each token.
+	 */
+	private final TokenType[] tokenTypes;
+
+	/**
+	 * The offset of the first character of each token.
+	 */
+	private final int[] starts;
+
+	/**
+	 * The offset just past the last character of each token.
+	 */
+	private final int[] ends;
+
+	/**
+	 * Constructs a TokenBuffer holding the first size tokens of the given
+	 * arrays.
+	 */
+	public TokenBuffer(CharSequence contents, TokenType[] tokenTypes,
+			int[] starts, int[] ends, int size) {
+		this.contents = contents;
+		this.size = size;
+		this.tokenTypes = Arrays.copyOf(tokenTypes, size);
+		this.starts = Arrays.copyOf(starts, size);
+		this.ends = Arrays.copyOf(ends, size);
+	}
+
+	/**
+	 * Returns the TokenType of the given token.
+	 */
+	public TokenType getTokenType(int index) {
+		return tokenTypes[index];
+	}
+
+	/**
+	 * Returns the offset of the first character of the given token, or the
+	 * length of the contents if the index is past the last token.
+	 */
+	public int getStart(int index) {
+		return index < size ? starts[index] : contents.length();
+	}
+
+	/**
+	 * Returns the offset just past the last character of the given token.
+	 */
+	public int getEnd(int index) {
+		return ends[index];
+	}
+
+	/**
+	 * Returns the given token as a Token object.
+	 */
+	public Token getToken(int index) {
+		return new Token(tokenTypes[index], contents, starts[index],
+				ends[index]);
+	}
+
+	/**
+	 * Returns a Cursor positioned at the start of the given token.
+	 */
+	public Cursor getCursor(int index) {
+		Cursor cursor = new Cursor(contents);
+		cursor.setOffset(getStart(index));
+		return cursor;
+	}
+
+	/**
+	 * Returns a String representation of this object.
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			result.append(getToken(i));
+			result.append('\n');
+		}
+		return result.toString();
+	}
+}
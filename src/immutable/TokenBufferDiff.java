@@ -0,0 +1,66 @@
+package immutable;
+
+/**
+ * This is an immutable information holder class, describing how the tokens of
+ * a document changed after an Edit. The old tokens from start up to oldEnd
+ * were replaced by the new tokens from start up to newEnd. Every other token
+ * is the same in both buffers, apart from the tokens after the change being
+ * moved by the length of the Edit.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class TokenBufferDiff {
+
+	/**
+	 * The tokens before the Edit.
+	 */
+	public final TokenBuffer oldTokens;
+
+	/**
+	 * The tokens after the Edit.
+	 */
+	public final TokenBuffer newTokens;
+
+	/**
+	 * The index of the first token that changed, in both buffers.
+	 */
+	public final int start;
+
+	/**
+	 * The index just past the last old token that changed.
+	 */
+	public final int oldEnd;
+
+	/**
+	 * The index just past the last new token that changed.
+	 */
+	public final int newEnd;
+
+	/**
+	 * Standard constructor.
+	 */
+	public TokenBufferDiff(TokenBuffer oldTokens, TokenBuffer newTokens,
+			int start, int oldEnd, int newEnd) {
+		this.oldTokens = oldTokens;
+		this.newTokens = newTokens;
+		this.start = start;
+		this.oldEnd = oldEnd;
+		this.newEnd = newEnd;
+	}
+
+	/**
+	 * Returns the number of tokens that the change added, which is negative
+	 * if it removed tokens.
+	 */
+	public int getShift() {
+		return newEnd - oldEnd;
+	}
+
+	/**
+	 * Returns a String representation of this object.
+	 */
+	public String toString() {
+		return "[" + start + ", " + oldEnd + ") -> [" + start + ", " +
+				newEnd + ")";
+	}
+}
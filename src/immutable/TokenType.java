@@ -1,5 +1,14 @@
 package immutable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import language.MatchingMode;
+import language.defaults.RegExAlphabet;
+
 /**
  * This class is an information holder.
  * 
@@ -7,6 +16,22 @@ package immutable;
  */
 public class TokenType
 {
+	/**
+	 * Orders TokenTypes by their index, with those outside of the combined
+	 * table last, and then by their name.
+	 */
+	public static final Comparator<TokenType> ORDER =
+			new Comparator<TokenType>() {
+		public int compare(TokenType lhs, TokenType rhs) {
+			int lhsIndex = lhs.index < 0 ? Integer.MAX_VALUE : lhs.index;
+			int rhsIndex = rhs.index < 0 ? Integer.MAX_VALUE : rhs.index;
+			if (lhsIndex != rhsIndex) {
+				return lhsIndex < rhsIndex ? -1 : 1;
+			}
+			return lhs.name.compareTo(rhs.name);
+		}
+	};
+	
 	/**
 	 * A reference to the language to which this TokenType belongs.
 	 */
@@ -29,15 +54,102 @@ public class TokenType
 	 */
 	public final boolean reservedWord;
 	
+	/**
+	 * The index of this TokenType within its Language. Lower indices have a
+	 * higher priority, and this value is -1 if the TokenType is not part of
+	 * its Language's combined table.
+	 */
+	public final int index;
+	
+	/**
+	 * The way in which the state machine of this TokenType is compiled and
+	 * run.
+	 */
+	public final MatchingMode mode;
+	
+	/**
+	 * This is the compiled state machine that the TokenGenerator runs when
+	 * matching this token type.
+	 */
+	public final Matcher matcher;
+	
+	/**
+	 * This table is the state machine lowered into a dense array, or null if
+	 * this TokenType is not matched as a DFA.
+	 */
+	public final TransitionTable table;
+	
 	/**
 	 * Standard constructor.
 	 */
 	public TokenType(Language language, String name,
-			StateMachine stateMachine, boolean reservedWord) {
+			StateMachine stateMachine, boolean reservedWord, int index) {
+		this(language, name, stateMachine, reservedWord, index,
+				MatchingMode.DFA);
+	}
+	
+	/**
+	 * Constructs a TokenType whose state machine is run in the given mode.
+	 * The state machine must already be deterministic for MatchingMode.DFA.
+	 */
+	public TokenType(Language language, String name,
+			StateMachine stateMachine, boolean reservedWord, int index,
+			MatchingMode mode) {
+		this(language, name, stateMachine, reservedWord, index, mode,
+				new CharacterClasses(Collections.singletonList(stateMachine),
+						language == null ? RegExAlphabet.DEFAULT_ALPHABET :
+						language.alphabet));
+	}
+	
+	/**
+	 * Constructs a TokenType whose state machine is run in the given mode,
+	 * and whose tables are indexed by the given character classes.
+	 */
+	public TokenType(Language language, String name,
+			StateMachine stateMachine, boolean reservedWord, int index,
+			MatchingMode mode, CharacterClasses classes) {
+		this(language, name, stateMachine, reservedWord, index, mode, classes,
+				LazyTransitionTable.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructs a TokenType whose state machine is run in the given mode,
+	 * and whose tables are indexed by the given character classes. If the
+	 * mode is MatchingMode.LAZY_DFA, at most cacheCapacity of its DFA States
+	 * are cached at once.
+	 */
+	public TokenType(Language language, String name,
+			StateMachine stateMachine, boolean reservedWord, int index,
+			MatchingMode mode, CharacterClasses classes, int cacheCapacity) {
 		this.language = language;
 		this.name = name;
 		this.stateMachine = stateMachine;
 		this.reservedWord = reservedWord;
+		this.index = index;
+		this.mode = mode;
+		
+		// Compile the state machine
+		if (mode == MatchingMode.NFA) {
+			this.table = null;
+			this.matcher = new NFATable(stateMachine, classes);
+		} else if (mode == MatchingMode.LAZY_DFA) {
+			this.table = null;
+			this.matcher = new LazyTransitionTable(stateMachine, classes,
+					cacheCapacity);
+		} else {
+			this.table = new TransitionTable(stateMachine, classes);
+			this.matcher = this.table;
+		}
+	}
+
+	/**
+	 * Returns the given TokenTypes in ORDER. Sets of TokenTypes are listed
+	 * this way so that they read the same on every run.
+	 */
+	public static List<TokenType> sort(Collection<TokenType> tokenTypes) {
+		List<TokenType> result = new ArrayList<TokenType>(tokenTypes);
+		Collections.sort(result, ORDER);
+		return result;
 	}
 
 	/**
@@ -0,0 +1,217 @@
+package immutable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import language.Alphabet;
+import utilities.Cursor;
+import utilities.ErrorUtilities;
+
+/**
+ * This is an immutable information holder class, containing a deterministic
+ * StateMachine lowered into a dense transition table. Each State is assigned an
+ * integer identifier, and each row of the table holds the destination of that
+ * State for every class of CharacterClasses, so that matching a character
+ * costs two array loads.
+ *
+ * Note: Characters that fall outside of the Alphabet share the class of the
+ * wild card (null) transitions.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class TransitionTable implements Matcher {
+
+	/**
+	 * This value is stored in a cell of the table when a State cannot
+	 * transition with the character of that column.
+	 */
+	public static final int DEAD_STATE = -1;
+
+	/**
+	 * The identifier of the initial State.
+	 */
+	public final int initialState;
+
+	/**
+	 * The number of States (rows) in this table.
+	 */
+	public final int stateCount;
+
+	/**
+	 * The number of columns in this table, one per character class.
+	 */
+	public final int width;
+
+	/**
+	 * The classes of characters that index the columns of this table.
+	 */
+	public final CharacterClasses classes;
+
+	/**
+	 * The transitions of this table, stored row by row.
+	 */
+	private final int[] transitions;
+
+	/**
+	 * A bitmap of the accepting States, indexed by State identifier.
+	 */
+	private final long[] accepting;
+
+	/**
+	 * Constructs a TransitionTable from a deterministic StateMachine, with
+	 * character classes of its own.
+	 */
+	public TransitionTable(StateMachine stateMachine, Alphabet alphabet) {
+		this(stateMachine, new CharacterClasses(
+				Collections.singletonList(stateMachine), alphabet));
+	}
+
+	/**
+	 * Constructs a TransitionTable from a deterministic StateMachine, indexed
+	 * by the given character classes, which must have been computed over it.
+	 */
+	public TransitionTable(StateMachine stateMachine,
+			CharacterClasses classes) {
+		// Assign an identifier to each State
+		List<State> states = stateMachine.states;
+		Map<State, Integer> identifiers = new HashMap<State, Integer>();
+		for (State state : states) {
+			identifiers.put(state, identifiers.size());
+		}
+
+		int width = classes.count;
+
+		// Initialize the table and the accept bitmap
+		int[] transitions = new int[states.size() * width];
+		long[] accepting = new long[(states.size() + 63) / 64];
+
+		for (State state : states) {
+			int row = identifiers.get(state) * width;
+
+			// Mark the State as accepting if it can reach the final State
+			// through epsilon transitions.
+			Set<State> equivalentStates = getEpsilonStates(state);
+			if (equivalentStates.contains(stateMachine.finalState)) {
+				int id = identifiers.get(state);
+				accepting[id >> 6] |= 1L << id;
+			}
+
+			// Hydrate each column of the row from a representative of its
+			// class
+			for (int column = 0; column < width; column++) {
+				Character c = classes.getRepresentative(column);
+
+				Set<State> destinations = new HashSet<State>();
+				for (State equivalentState : equivalentStates) {
+					Map<Character, Set<State>> map =
+							equivalentState.charToStateSetMap;
+					if (map.containsKey(c)) {
+						destinations.addAll(map.get(c));
+					} else if (map.containsKey(null)) {
+						destinations.addAll(map.get(null));
+					}
+				}
+
+				if (destinations.size() > 1) {
+					ErrorUtilities.throwError(
+							"We do not support NFA traversal yet.");
+				}
+
+				if (destinations.isEmpty()) {
+					transitions[row + column] = DEAD_STATE;
+				} else {
+					transitions[row + column] =
+							identifiers.get(destinations.iterator().next());
+				}
+			}
+		}
+
+		// Assign final fields
+		this.initialState = identifiers.get(stateMachine.initialState);
+		this.stateCount = states.size();
+		this.width = width;
+		this.classes = classes;
+		this.transitions = transitions;
+		this.accepting = accepting;
+	}
+
+	/**
+	 * Returns the set of States that the given State can reach through
+	 * epsilon transitions, including itself.
+	 */
+	static Set<State> getEpsilonStates(State state) {
+		Set<State> result = new HashSet<State>();
+		result.add(state);
+
+		State[] fringe = new State[] { state };
+		while (fringe.length > 0) {
+			Set<State> next = new HashSet<State>();
+			for (State s : fringe) {
+				for (State epsilonState : s.epsilonTransitions) {
+					if (result.add(epsilonState)) {
+						next.add(epsilonState);
+					}
+				}
+			}
+			fringe = next.toArray(new State[next.size()]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the length of the longest prefix of the contents that is
+	 * accepted, or -1 if no prefix is accepted.
+	 */
+	public int match(Cursor contents) {
+		// Initialize bookkeeping
+		int currentState = initialState;
+		int acceptedLength = isAccepting(currentState) ? 0 : -1;
+		
+		// Walk the table until the current state cannot transition,
+		// remembering the last position at which we were in an accept state.
+		for (int i = 0; contents.hasRemaining(i); i++) {
+			currentState = getDestination(currentState, contents.peek(i));
+			if (currentState == DEAD_STATE) {
+				break;
+			}
+			if (isAccepting(currentState)) {
+				acceptedLength = i + 1;
+			}
+		}
+		return acceptedLength;
+	}
+
+	/**
+	 * Returns the column of the table that the given character indexes into.
+	 */
+	public int getColumn(char c) {
+		return classes.classOf(c);
+	}
+
+	/**
+	 * Returns the identifier of the State that the given State transitions
+	 * into with the given character, or DEAD_STATE if there is none.
+	 */
+	public int getDestination(int state, char c) {
+		return transitions[state * width + classes.classOf(c)];
+	}
+
+	/**
+	 * Returns the identifier of the State that the given State transitions
+	 * into with the given column, or DEAD_STATE if there is none.
+	 */
+	public int getDestinationAt(int state, int column) {
+		return transitions[state * width + column];
+	}
+
+	/**
+	 * Returns true if the given State is an accept state.
+	 */
+	public boolean isAccepting(int state) {
+		return (accepting[state >> 6] & (1L << state)) != 0;
+	}
+}
@@ -0,0 +1,32 @@
+package language;
+
+/**
+ * This enumerates the ways in which the state machine of a token type can be
+ * compiled and run.
+ * 
+ * @author Trironk Kiatkungwanglai
+ */
+public enum MatchingMode {
+	
+	/**
+	 * The state machine is converted into a DFA and lowered into a dense
+	 * transition table. This is the fastest mode, but the conversion can blow
+	 * up exponentially for some patterns.
+	 */
+	DFA,
+	
+	/**
+	 * The state machine is kept as an NFA and simulated with a bitset of
+	 * active states. This mode matches in bounded memory at a predictable
+	 * speed, regardless of how large the equivalent DFA would be.
+	 */
+	NFA,
+	
+	/**
+	 * The state machine is kept as an NFA, and the States of the equivalent
+	 * DFA are constructed as the input reaches them and kept in a cache of a
+	 * bounded size. This mode runs at nearly the speed of a DFA without
+	 * constructing the parts of it that the input never reaches.
+	 */
+	LAZY_DFA
+}
@@ -31,7 +31,7 @@ public class _Language {
 		if (tokenTypes.containsKey(tokenType.name)) {
 			String msg = "Already contains a tokenType called " +
 					tokenType.name + ".";
-			ErrorUtilities.throwError(msg);
+			ErrorUtilities.throwGrammarError(msg);
 		}
 		tokenTypes.put(tokenType.name, tokenType);
 	}
@@ -258,17 +258,4 @@ public class _State {
 	
 		return result;
 	}
-	
-	public boolean equals(Object rhs) {
-		if (rhs == null)
-			return false;
-		if (this.getClass() != rhs.getClass())
-			return false;
-		_State o = (_State)rhs;
-		return o.id == this.id;
-	}
-	
-	public int hashcode() {
-		return this.id;
-	}
 }
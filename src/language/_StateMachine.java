@@ -1,8 +1,11 @@
 package language;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -188,93 +191,55 @@ public class _StateMachine {
 	/**
 	 * Returns a set of characters that can begin a string that matches this
 	 * TokenType.
+	 * 
+	 * Note: This state machine does not need to be a DFA. A state that does
+	 * not map a character explicitly follows its wild card (null) transition
+	 * with it instead, and a character can begin a match if any of the states
+	 * equivalent to the initial state leads with it towards the final state.
 	 */
 	public Set<Character> getStartingCharacters() {
-		Set<Character> includedCharacters = new HashSet<Character>();
+		Set<_State> equivalentStates = this.initialState.getEpsilonStates();
+		Set<_State> coreachableStates = getCoreachableStates();
 
-		// Get a mapping of all transition states to a set of characters
-		// associate with them. This is non-trivial because of the null
-		// character.
-		Set<_State> nullStates = new HashSet<_State>();
-		Map<_State, Set<Character>> transitions =
-				new HashMap<_State, Set<Character>>();
-		for (_State dest : this.initialState.getDestinations()) {
-			Set<Character> charactersToDest =
-					this.initialState.getCharactersToDestinations(dest); 
-			transitions.put(dest, charactersToDest);
-			if (transitions.get(dest).contains(null)) {
-				nullStates.add(dest);
+		// Collect the characters that are mapped explicitly, and check if a
+		// wild card transition can lead to an accept state.
+		Set<Character> explicitCharacters = new HashSet<Character>();
+		boolean acceptedNullTransition = false;
+		for (_State state : equivalentStates) {
+			explicitCharacters.addAll(state.charToStateSetMap.keySet());
+			Set<_State> destinations = state.charToStateSetMap.get(null);
+			if (destinations != null &&
+					Collections.disjoint(destinations, coreachableStates)
+					== false) {
+				acceptedNullTransition = true;
 			}
 		}
+		explicitCharacters.remove(null);
 
-		// If there are multiple State objects with a null transition
-		// Character, we need to alert the user.
-		if (nullStates.size() > 1) {
-			String msg = "";
-			msg +="Multiple null transitions detected in the initial state of ";
-			msg += this.initialState.name;
-			msg += ".";
-			ErrorUtilities.throwError(msg);
-		}
-
-		// Perform a naive search over the transition states for accept states.
-		// Track if we found an accepted state that has a null transition and
-		// all Characters that fail to match.
-		boolean acceptedNullTransition = false;
-		Set<Character> excludedCharacters = new HashSet<Character>();
-		for (_State state : transitions.keySet()) {
-			// Initializing bookkeeping variables
-			Set<_State> visitedStates = new HashSet<_State>();
-			Set<_State> fringeStates = new HashSet<_State>();
-			fringeStates.add(state);
-			visitedStates.add(state);
-			boolean found = false;
-
-			while (fringeStates.isEmpty() == false) {
-				// Get the next state and remove it from the fringe.
-				_State fringe = fringeStates.iterator().next();
-				fringeStates.remove(fringe);
-
-				// Add this state to the visited set
-				visitedStates.add(fringe);
-
-				// Check terminal condition
-				if (this.finalState.equals(fringe)) {
-					// If the state we started searching from has a null
-					// transition, mark a flag
-					if (nullStates.contains(state)) {
-						acceptedNullTransition = true;
-					} else {
-						includedCharacters.addAll(transitions.get(state));
-					}
-					found = true;
-					break;
+		// Check which of the explicit characters can lead to an accept state
+		Set<Character> includedCharacters = new HashSet<Character>();
+		for (Character c : explicitCharacters) {
+			for (_State state : equivalentStates) {
+				Set<_State> destinations = state.charToStateSetMap.get(c);
+				if (destinations == null) {
+					destinations = state.charToStateSetMap.get(null);
 				}
-
-				// Add to the fringe set
-				for (_State newFringeState : fringe.getDestinations()) {
-					if (visitedStates.contains(newFringeState) == false) {
-						fringeStates.add(newFringeState);
-					}
+				if (destinations != null &&
+						Collections.disjoint(destinations, coreachableStates)
+						== false) {
+					includedCharacters.add(c);
+					break;
 				}
 			}
-
-			// If we cannot hit an accept state from the original destination, 
-			// add its characters to the excludedCharacters list.
-			if (found == false) {
-				excludedCharacters.addAll(transitions.get(state));
-			}
 		}
 
-		// If the we found a state that can be accepted that is transitioned
-		// into by a wildcard, we add everything to the set of accepted
-		// characters, remove the excluded characters, and then re-add the
-		// characters that we found to be able to hit the accept state.
+		// If a wild card transition can lead to an accept state, every
+		// character that is not mapped explicitly can begin a match as well.
 		// TODO: Change to a different alphabet
 		if (acceptedNullTransition) {
 			Set<Character> result =
 					RegExAlphabet.DEFAULT_ALPHABET.getAllCharacters();
-			result.removeAll(excludedCharacters);
+			result.removeAll(explicitCharacters);
 			result.addAll(includedCharacters);
 			return result;
 		}
@@ -283,168 +248,273 @@ public class _StateMachine {
 		return includedCharacters;
 	}
 
+	/**
+	 * Returns the set of states reachable from the initial state that can
+	 * reach the final state through any transitions, found with one backwards
+	 * search from the final state.
+	 */
+	private Set<_State> getCoreachableStates() {
+		// Index the transitions backwards
+		Map<_State, List<_State>> sources =
+				new IdentityHashMap<_State, List<_State>>();
+		List<_State> fringe = new ArrayList<_State>();
+		sources.put(this.initialState, new ArrayList<_State>());
+		fringe.add(this.initialState);
+		while (fringe.isEmpty() == false) {
+			_State state = fringe.remove(fringe.size() - 1);
+			List<_State> destinations =
+					new ArrayList<_State>(state.epsilonTransitions);
+			for (Set<_State> set : state.charToStateSetMap.values()) {
+				destinations.addAll(set);
+			}
+			for (_State destination : destinations) {
+				if (sources.containsKey(destination) == false) {
+					sources.put(destination, new ArrayList<_State>());
+					fringe.add(destination);
+				}
+				sources.get(destination).add(state);
+			}
+		}
+		
+		// Search backwards from the final state
+		Set<_State> result = new HashSet<_State>();
+		if (sources.containsKey(this.finalState)) {
+			result.add(this.finalState);
+			fringe.add(this.finalState);
+		}
+		while (fringe.isEmpty() == false) {
+			for (_State source : sources.get(fringe.remove(fringe.size() - 1))) {
+				if (result.add(source)) {
+					fringe.add(source);
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Converts this state machine into a DFA.
+	 * 
+	 * Note: Each State is numbered by its position, and each set of States is
+	 * a bitset of those numbers, so that subsets can be hashed and compared
+	 * without building any collections.
 	 */
 	public void convertToDFA() {
-		// TODO: Fix up equality and hashing of _State and Set<_State> objects
-//		LogUtilities.logln("NFA: ");
-//		LogUtilities.logln(this);
-		
-		// Construct the first table
-		// First initialize our table and epsilon column
-		Map<_State, Map<Character, Set<_State>>> table1 =
-				new HashMap<_State, Map<Character,Set<_State>>>();
-		Map<_State, Set<_State>> table1Epsilons =
-				new HashMap<_State, Set<_State>>();
+		// Number the states, including any that are only reachable through
+		// transitions
+		Map<_State, Integer> identifiers = new IdentityHashMap<_State, Integer>();
+		List<_State> oldStates = new ArrayList<_State>();
+		List<_State> fringe = new ArrayList<_State>(this.states);
+		fringe.add(this.initialState);
+		fringe.add(this.finalState);
+		while (fringe.isEmpty() == false) {
+			_State state = fringe.remove(fringe.size() - 1);
+			if (identifiers.containsKey(state)) {
+				continue;
+			}
+			identifiers.put(state, oldStates.size());
+			oldStates.add(state);
+			fringe.addAll(state.epsilonTransitions);
+			for (Set<_State> destinations : state.charToStateSetMap.values()) {
+				fringe.addAll(destinations);
+			}
+		}
+		int stateCount = oldStates.size();
+		int words = Math.max(1, (stateCount + 63) / 64);
 		
-		// Iterate over all states
-		for (_State state : this.states) {
-			// Record all transitions
-			table1.put(state, new HashMap<Character, Set<_State>>());
+		// Number the columns of the table, including the wild card column
+		Map<Character, Integer> columns = new HashMap<Character, Integer>();
+		List<Character> symbols = new ArrayList<Character>();
+		for (_State state : oldStates) {
 			for (Character c : state.charToStateSetMap.keySet()) {
-				table1.get(state).put(c, state.charToStateSetMap.get(c));
+				if (columns.containsKey(c) == false) {
+					columns.put(c, symbols.size());
+					symbols.add(c);
+				}
 			}
-			
-			// Record all epsilon equivalences
-			table1Epsilons.put(state, state.getEpsilonStates());
 		}
+		int symbolCount = symbols.size();
 		
-		// Now we construct second table.
-		// First initialize a bunch of bookkeeping variables
-		Map<Set<_State>, Map<Character, Set<_State>>> table2 =
-				new HashMap<Set<_State>, Map<Character,Set<_State>>>();
-		Set<Set<_State>> processedSets = new HashSet<Set<_State>>();
-		Set<Set<_State>> unprocessedSets = new HashSet<Set<_State>>();
-		Set<_State> initialSet = new HashSet<_State>();
-		initialSet.add(this.initialState);
-		initialSet.addAll(table1Epsilons.get(this.initialState));
-		unprocessedSets.add(initialSet);
+		// Compute the epsilon closure of every state once
+		long[][] closures = new long[stateCount][];
+		for (int i = 0; i < stateCount; i++) {
+			long[] closure = new long[words];
+			for (_State equivalentState : oldStates.get(i).getEpsilonStates()) {
+				int id = identifiers.get(equivalentState);
+				closure[id >> 6] |= 1L << id;
+			}
+			closures[i] = closure;
+		}
 		
-		// Iterate while there are still sets to process 
-		while (unprocessedSets.isEmpty() == false) {
-//			LogUtilities.logln("unprocessedStates: {");
-//			ArrayList<Set<_State>> unprocessedStates = new ArrayList<Set<_State>>();
-//			unprocessedStates.addAll(unprocessedSets);
-//			for (Set<_State> stateSet : unprocessedStates) {
-//				ArrayList<_State> stateSetList = new ArrayList<_State>();
-//				stateSetList.addAll(stateSet);
-//				LogUtilities.log("\t[ ");
-//				for (_State state : stateSetList) {
-//					LogUtilities.log(state.id + " ");
-//				}
-//				LogUtilities.logln("]");
-//			}
-//			LogUtilities.logln("}");
-//			
-//			LogUtilities.logln("processedStates: {");
-//			ArrayList<Set<_State>> processedStates = new ArrayList<Set<_State>>();
-//			processedStates.addAll(processedSets);
-//			for (Set<_State> stateSet : processedStates) {
-//				ArrayList<_State> stateSetList = new ArrayList<_State>();
-//				stateSetList.addAll(stateSet);
-//				LogUtilities.log("\t[ ");
-//				for (_State state : stateSetList) {
-//					LogUtilities.log(state.id + " ");
-//				}
-//				LogUtilities.logln("]");
-//			}
-//			LogUtilities.logln("}");
-			
-			// Pull off a set from the set of unprocessed sets
-			Set<_State> currentSet = unprocessedSets.iterator().next();
-			unprocessedSets.remove(currentSet);
-			processedSets.add(currentSet);
-			
-			
-//			LogUtilities.log("currentSet: [");
-//			ArrayList<_State> currentStates = new ArrayList<_State>(currentSet);
-//			for (_State state : currentStates) {
-//				LogUtilities.log(" " + state.id);
-//			}
-//			LogUtilities.logln(" ]\n");
-			
-			// Initialize and extract the involved row of the table
-			table2.put(currentSet, new HashMap<Character, Set<_State>>());
-			Map<Character, Set<_State>> currentRow = table2.get(currentSet);
-			
-			// Collect all involved columns of the table
-			Set<Character> transitions = new HashSet<Character>();
-			for (_State startState : currentSet) {
-				transitions.addAll(table1.get(startState).keySet());
+		// Record the columns of each state, along with the epsilon closed
+		// bitset of its destinations in that column. The destinations of the
+		// wild card column are also recorded on their own.
+		int[][] stateColumns = new int[stateCount][];
+		long[][][] stateDestinations = new long[stateCount][][];
+		long[][] stateWildcards = new long[stateCount][];
+		for (int i = 0; i < stateCount; i++) {
+			Map<Character, Set<_State>> map = oldStates.get(i).charToStateSetMap;
+			stateColumns[i] = new int[map.size()];
+			stateDestinations[i] = new long[map.size()][];
+			int j = 0;
+			for (Character c : map.keySet()) {
+				long[] destinations = new long[words];
+				for (_State destination : map.get(c)) {
+					long[] closure = closures[identifiers.get(destination)];
+					for (int k = 0; k < words; k++) {
+						destinations[k] |= closure[k];
+					}
+				}
+				stateColumns[i][j] = columns.get(c);
+				stateDestinations[i][j] = destinations;
+				if (c == null) {
+					stateWildcards[i] = destinations;
+				}
+				j++;
 			}
-			
-			// Iterate over each of those columns
-			for (Character transition : transitions) {
-				// Initialize and extract the contents of a cell of our table
-				currentRow.put(transition, new HashSet<_State>());
-				Set<_State> followingStates = currentRow.get(transition);
-				
-				// Iterate over each of the current states, adding states to the
-				// current cell of our table
-				for (_State startingState : currentSet) {
-					// Add their direct transitions
-					Set<_State> destinations =
-							table1.get(startingState).get(transition);
+		}
+		
+		// Initialize the bookkeeping of the subset construction. Subsets are
+		// stored one after another, and found through an open addressing
+		// table of their signatures.
+		long[] subsets = new long[16 * words];
+		int[] slots = new int[32];
+		int subsetCount = 0;
+		int[] transitionSources = new int[16];
+		int[] transitionColumns = new int[16];
+		int[] transitionDestinations = new int[16];
+		int transitionCount = 0;
+		long[] row = new long[Math.max(1, symbolCount) * words];
+		boolean[] present = new boolean[symbolCount];
+		boolean[] mapped = new boolean[symbolCount];
+		
+		// Add the initial subset
+		long[] initialSubset = closures[identifiers.get(this.initialState)];
+		System.arraycopy(initialSubset, 0, subsets, 0, words);
+		slots[hashSubset(subsets, 0, words) & (slots.length - 1)] = 1;
+		subsetCount = 1;
+		
+		// Process the subsets in the order they were found
+		for (int subset = 0; subset < subsetCount; subset++) {
+			// Union the destinations of every state in the subset, column by
+			// column
+			Arrays.fill(row, 0);
+			Arrays.fill(present, false);
+			for (int word = 0; word < words; word++) {
+				long bits = subsets[subset * words + word];
+				while (bits != 0) {
+					int state = (word << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
 					
-					// If this transition doesn't exist, move on
-					if (destinations == null) {
-						continue;
+					for (int j = 0; j < stateColumns[state].length; j++) {
+						int column = stateColumns[state][j];
+						long[] destinations = stateDestinations[state][j];
+						for (int k = 0; k < words; k++) {
+							row[column * words + k] |= destinations[k];
+						}
+						present[column] = true;
 					}
 					
-					followingStates.addAll(destinations);
+					// A state follows its wild card transition with every
+					// character that it does not map explicitly
+					long[] wildcard = stateWildcards[state];
+					if (wildcard == null) {
+						continue;
+					}
+					Arrays.fill(mapped, false);
+					for (int column : stateColumns[state]) {
+						mapped[column] = true;
+					}
+					for (int column = 0; column < symbolCount; column++) {
+						if (mapped[column]) {
+							continue;
+						}
+						for (int k = 0; k < words; k++) {
+							row[column * words + k] |= wildcard[k];
+						}
+						present[column] = true;
+					}
+				}
+			}
+			
+			for (int column = 0; column < symbolCount; column++) {
+				if (present[column] == false) {
+					continue;
+				}
+				
+				// Look up the destination subset
+				int mask = slots.length - 1;
+				int slot = hashSubset(row, column * words, words) & mask;
+				int destination = -1;
+				while (slots[slot] != 0) {
+					if (equalsSubset(subsets, (slots[slot] - 1) * words, row,
+							column * words, words)) {
+						destination = slots[slot] - 1;
+						break;
+					}
+					slot = (slot + 1) & mask;
+				}
+				
+				// Otherwise add it as a new subset
+				if (destination == -1) {
+					destination = subsetCount;
+					if ((subsetCount + 1) * words > subsets.length) {
+						subsets = Arrays.copyOf(subsets, subsets.length * 2);
+					}
+					System.arraycopy(row, column * words, subsets,
+							subsetCount * words, words);
+					slots[slot] = subsetCount + 1;
+					subsetCount++;
 					
-					// Account for one or more epsilon transitions
-					for (_State destination : destinations) {
-						followingStates.addAll(table1Epsilons.get(destination));
+					// Keep the table at most half full
+					if (subsetCount * 2 > slots.length) {
+						slots = new int[slots.length * 2];
+						mask = slots.length - 1;
+						for (int i = 0; i < subsetCount; i++) {
+							int s = hashSubset(subsets, i * words, words) & mask;
+							while (slots[s] != 0) {
+								s = (s + 1) & mask;
+							}
+							slots[s] = i + 1;
+						}
 					}
 				}
 				
-				// If the set of states in this cell of our table has already
-				// been processed or is about to be processed, continue
-				if (processedSets.contains(followingStates) ||
-						unprocessedSets.contains(followingStates)) {
-					continue;
+				// Record the transition
+				if (transitionCount == transitionSources.length) {
+					int length = transitionCount * 2;
+					transitionSources = Arrays.copyOf(transitionSources, length);
+					transitionColumns = Arrays.copyOf(transitionColumns, length);
+					transitionDestinations =
+							Arrays.copyOf(transitionDestinations, length);
 				}
-				// Otherwise add it to our set of unprocessed sets
-				unprocessedSets.add(followingStates);
+				transitionSources[transitionCount] = subset;
+				transitionColumns[transitionCount] = column;
+				transitionDestinations[transitionCount] = destination;
+				transitionCount++;
 			}
 		}
 		
-		// Construct a new state for each set of former states
-		Map<Set<_State>, _State> oldToNewMap =
-				new HashMap<Set<_State>, _State>();
-		Set<_State> newStateSet = new HashSet<_State>();
-		for (Set<_State> set : processedSets) {
-			oldToNewMap.put(set, new _State(oldToNewMap.size()));
-			newStateSet.add(oldToNewMap.get(set));
+		// Construct a new state for each subset of former states
+		List<_State> newStates = new ArrayList<_State>();
+		for (int subset = 0; subset < subsetCount; subset++) {
+			newStates.add(new _State(subset));
 		}
 		
-		// Hydrate the new states with the mappings of the sets of old states
-		for (Set<_State> set : oldToNewMap.keySet()) {
-			_State newState = oldToNewMap.get(set);
-			
-			// Iterate over all columns of table2
-			for (Character c : table2.get(set).keySet()) {
-				// Get the destination set of old states
-				Set<_State> dest = table2.get(set).get(c);
-				
-				// Get the corresponding new state
-				_State newDest = oldToNewMap.get(dest);
-				
-				// Create the transition
-				newState.addTransition(c, newDest);
-			}
+		// Hydrate the new states with the recorded transitions
+		for (int i = 0; i < transitionCount; i++) {
+			newStates.get(transitionSources[i]).addTransition(
+					symbols.get(transitionColumns[i]),
+					newStates.get(transitionDestinations[i]));
 		}
 		
-		// Get the initial state
-		_State newInitialState = oldToNewMap.get(initialSet);
-		
 		// Get the new final state(s)
+		int finalId = identifiers.get(this.finalState);
 		Set<_State> newFinalStates = new HashSet<_State>();
-		for (Set<_State> oldStateSet : oldToNewMap.keySet()) {
-			if (oldStateSet.contains(this.finalState)) {
-				newFinalStates.add(oldToNewMap.get(oldStateSet));
+		for (int subset = 0; subset < subsetCount; subset++) {
+			if ((subsets[subset * words + (finalId >> 6)] &
+					(1L << finalId)) != 0) {
+				newFinalStates.add(newStates.get(subset));
 			}
 		}
 		
@@ -453,25 +523,354 @@ public class _StateMachine {
 		if (newFinalStates.size() == 1) {
 			newFinalState = newFinalStates.iterator().next();
 		} else {
-			newFinalState = new _State(oldToNewMap.size());
+			newFinalState = new _State(subsetCount);
 			for (_State state : newFinalStates) {
 				state.epsilonTransitions.add(newFinalState);
 			}
-			newStateSet.add(newFinalState);
+			newStates.add(newFinalState);
 		}
 		
-		// Get the states list
-		List<_State> newStates = new ArrayList<_State>();
-		for (_State newState : newStateSet) {
-			newStates.add(newState);
+		// Update this state machine
+		this.initialState = newStates.get(0);
+		this.finalState = newFinalState;
+		this.states = newStates;
+	}
+	
+	/**
+	 * Returns the hash of the subset stored at the given offset.
+	 */
+	private static int hashSubset(long[] subsets, int offset, int words) {
+		int result = 1;
+		for (int i = offset; i < offset + words; i++) {
+			long bits = subsets[i];
+			result = 31 * result + (int)(bits ^ (bits >>> 32));
+		}
+		// Spread the bits, since the table is indexed by the low ones
+		return result ^ (result >>> 16);
+	}
+	
+	/**
+	 * Returns true if the two subsets stored at the given offsets are equal.
+	 */
+	private static boolean equalsSubset(long[] lhs, int lhsOffset, long[] rhs,
+			int rhsOffset, int words) {
+		for (int i = 0; i < words; i++) {
+			if (lhs[lhsOffset + i] != rhs[rhsOffset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Minimizes this state machine, which must already be a DFA, with
+	 * Hopcroft's partition refinement algorithm. States that cannot be told
+	 * apart by any input are merged, and States that cannot reach an accept
+	 * state are dropped.
+	 * 
+	 * Note: A character with no explicit transition follows the wild card
+	 * (null) transition, so States are compared by these effective
+	 * transitions rather than by the transitions they happen to list.
+	 */
+	public void minimizeDFA() {
+		// Number the States that characters can reach from the initial State.
+		// The synthetic final State that convertToDFA joins with epsilon
+		// transitions is only reachable that way, and is left out.
+		Map<_State, Integer> identifiers = new IdentityHashMap<_State, Integer>();
+		List<_State> reachableStates = new ArrayList<_State>();
+		identifiers.put(this.initialState, 0);
+		reachableStates.add(this.initialState);
+		for (int i = 0; i < reachableStates.size(); i++) {
+			for (_State s : reachableStates.get(i).getEpsilonStates()) {
+				for (Set<_State> destinations : s.charToStateSetMap.values()) {
+					for (_State destination : destinations) {
+						if (identifiers.containsKey(destination) == false) {
+							identifiers.put(destination,
+									reachableStates.size());
+							reachableStates.add(destination);
+						}
+					}
+				}
+			}
+		}
+		
+		// Collect the symbols. The last symbol stands for the wild card.
+		Set<Character> explicitCharacters = new HashSet<Character>();
+		for (_State state : reachableStates) {
+			for (_State s : state.getEpsilonStates()) {
+				explicitCharacters.addAll(s.charToStateSetMap.keySet());
+			}
+		}
+		explicitCharacters.remove(null);
+		Character[] symbols = new Character[explicitCharacters.size() + 1];
+		explicitCharacters.toArray(symbols);
+		int symbolCount = symbols.length;
+		int wildcard = symbolCount - 1;
+		
+		// Compute the effective transitions. The extra State at index
+		// stateCount is the dead State, which loops to itself.
+		int stateCount = reachableStates.size();
+		int dead = stateCount;
+		int[] transitions = new int[(stateCount + 1) * symbolCount];
+		boolean[] accepting = new boolean[stateCount + 1];
+		for (int state = 0; state < stateCount; state++) {
+			Set<_State> equivalentStates =
+					reachableStates.get(state).getEpsilonStates();
+			accepting[state] = equivalentStates.contains(this.finalState);
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				Set<_State> destinations = new HashSet<_State>();
+				for (_State s : equivalentStates) {
+					Map<Character, Set<_State>> map = s.charToStateSetMap;
+					if (symbol != wildcard && map.containsKey(symbols[symbol])) {
+						destinations.addAll(map.get(symbols[symbol]));
+					} else if (map.containsKey(null)) {
+						destinations.addAll(map.get(null));
+					}
+				}
+				if (destinations.size() > 1) {
+					ErrorUtilities.throwError("Cannot minimize " +
+							this.initialState.name + ", which is not a DFA.");
+				}
+				transitions[state * symbolCount + symbol] =
+						destinations.isEmpty() ? dead :
+						identifiers.get(destinations.iterator().next());
+			}
+		}
+		for (int symbol = 0; symbol < symbolCount; symbol++) {
+			transitions[dead * symbolCount + symbol] = dead;
+		}
+		
+		// Refine the partition of States into blocks
+		int[] blocks = refinePartition(transitions, accepting, stateCount + 1,
+				symbolCount);
+		
+		// Construct a new State for each block, except for the dead block
+		// unless some State needs it to override a wild card transition.
+		int blockCount = 0;
+		for (int block : blocks) {
+			blockCount = Math.max(blockCount, block + 1);
+		}
+		// If the initial State is itself dead, keep the dead block so that
+		// there is still an initial State.
+		int deadBlock = blocks[dead] == blocks[0] ? -1 : blocks[dead];
+		_State[] newStates = new _State[blockCount];
+		List<_State> newStateList = new ArrayList<_State>();
+		int[] representatives = new int[blockCount];
+		for (int state = stateCount; state >= 0; state--) {
+			representatives[blocks[state]] = state;
+		}
+		for (int block = 0; block < blockCount; block++) {
+			if (block != deadBlock) {
+				newStates[block] = new _State(newStateList.size());
+				newStateList.add(newStates[block]);
+			}
+		}
+		
+		// Hydrate the transitions of the new States
+		for (int block = 0; block < blockCount; block++) {
+			if (block == deadBlock) {
+				continue;
+			}
+			int row = representatives[block] * symbolCount;
+			int wildcardBlock = blocks[transitions[row + wildcard]];
+			for (int symbol = 0; symbol < wildcard; symbol++) {
+				int destinationBlock = blocks[transitions[row + symbol]];
+				if (destinationBlock == wildcardBlock) {
+					continue;
+				}
+				if (newStates[destinationBlock] == null) {
+					newStates[destinationBlock] =
+							new _State(newStateList.size());
+					newStateList.add(newStates[destinationBlock]);
+				}
+				newStates[block].addTransition(symbols[symbol],
+						newStates[destinationBlock]);
+			}
+			if (wildcardBlock != deadBlock) {
+				newStates[block].addTransition(null,
+						newStates[wildcardBlock]);
+			}
+		}
+		
+		// Get the new final state(s), and if necessary, reduce them to one
+		// state like convertToDFA does.
+		Set<_State> newFinalStates = new HashSet<_State>();
+		for (int state = 0; state < stateCount; state++) {
+			if (accepting[state]) {
+				newFinalStates.add(newStates[blocks[state]]);
+			}
+		}
+		_State newFinalState = null;
+		if (newFinalStates.size() == 1) {
+			newFinalState = newFinalStates.iterator().next();
+		} else {
+			newFinalState = new _State(newStateList.size());
+			for (_State state : newFinalStates) {
+				state.epsilonTransitions.add(newFinalState);
+			}
+			newStateList.add(newFinalState);
 		}
 		
 		// Update this state machine
-		this.initialState = newInitialState;
+		this.initialState = newStates[blocks[0]];
 		this.finalState = newFinalState;
-		this.states = newStates;
+		this.states = newStateList;
+	}
+	
+	/**
+	 * Partitions the States of a complete DFA into blocks of equivalent
+	 * States with Hopcroft's algorithm, and returns the block of each State.
+	 * The transitions are given row by row.
+	 */
+	private static int[] refinePartition(int[] transitions,
+			boolean[] accepting, int stateCount, int symbolCount) {
+		// Index the inverse transitions by symbol and destination
+		int[] inverseStarts = new int[symbolCount * stateCount + 1];
+		for (int state = 0; state < stateCount; state++) {
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				int destination = transitions[state * symbolCount + symbol];
+				inverseStarts[symbol * stateCount + destination + 1]++;
+			}
+		}
+		for (int i = 1; i < inverseStarts.length; i++) {
+			inverseStarts[i] += inverseStarts[i - 1];
+		}
+		int[] inverseSources = new int[stateCount * symbolCount];
+		int[] inverseFill = Arrays.copyOf(inverseStarts, inverseStarts.length);
+		for (int state = 0; state < stateCount; state++) {
+			for (int symbol = 0; symbol < symbolCount; symbol++) {
+				int destination = transitions[state * symbolCount + symbol];
+				inverseSources[inverseFill[symbol * stateCount +
+						destination]++] = state;
+			}
+		}
+		
+		// Lay the States out so that every block is a contiguous range of
+		// elements, starting with the accepting and non-accepting blocks.
+		int[] elements = new int[stateCount];
+		int[] locations = new int[stateCount];
+		int[] blocks = new int[stateCount];
+		int[] blockStarts = new int[stateCount + 1];
+		int[] blockEnds = new int[stateCount + 1];
+		int[] markedCounts = new int[stateCount + 1];
+		int count = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			for (int state = 0; state < stateCount; state++) {
+				if (accepting[state] == (pass == 0)) {
+					locations[state] = count;
+					elements[count++] = state;
+				}
+			}
+		}
+		int acceptingCount = 0;
+		for (boolean b : accepting) {
+			acceptingCount += b ? 1 : 0;
+		}
+		int blockCount = 0;
+		if (acceptingCount > 0) {
+			blockStarts[blockCount] = 0;
+			blockEnds[blockCount] = acceptingCount;
+			blockCount++;
+		}
+		if (acceptingCount < stateCount) {
+			blockStarts[blockCount] = acceptingCount;
+			blockEnds[blockCount] = stateCount;
+			blockCount++;
+		}
+		for (int block = 0; block < blockCount; block++) {
+			for (int i = blockStarts[block]; i < blockEnds[block]; i++) {
+				blocks[elements[i]] = block;
+			}
+		}
+		
+		// Seed the work list with the smaller of the initial blocks
+		boolean[] waiting = new boolean[(stateCount + 1) * symbolCount];
+		int[] workList = new int[(stateCount + 1) * symbolCount];
+		int workCount = 0;
+		int seed = 0;
+		if (blockCount == 2 && blockEnds[1] - blockStarts[1] <
+				blockEnds[0] - blockStarts[0]) {
+			seed = 1;
+		}
+		for (int symbol = 0; symbol < symbolCount; symbol++) {
+			workList[workCount++] = seed * symbolCount + symbol;
+			waiting[seed * symbolCount + symbol] = true;
+		}
+		
+		// Refine the blocks until no splitter is left
+		int[] touchedBlocks = new int[stateCount];
+		while (workCount > 0) {
+			int splitter = workList[--workCount];
+			waiting[splitter] = false;
+			int splitterBlock = splitter / symbolCount;
+			int symbol = splitter % symbolCount;
+			
+			// Mark every State that transitions into the splitter block by
+			// moving it to the front of its own block. The splitter block can
+			// itself be rearranged by the marking, so its States are copied
+			// out first.
+			int[] splitterStates = Arrays.copyOfRange(elements,
+					blockStarts[splitterBlock], blockEnds[splitterBlock]);
+			int touchedCount = 0;
+			for (int destination : splitterStates) {
+				int base = symbol * stateCount + destination;
+				for (int j = inverseStarts[base];
+						j < inverseStarts[base + 1]; j++) {
+					int source = inverseSources[j];
+					int block = blocks[source];
+					int marked = blockStarts[block] + markedCounts[block];
+					if (locations[source] < marked) {
+						continue;
+					}
+					if (markedCounts[block] == 0) {
+						touchedBlocks[touchedCount++] = block;
+					}
+					int other = elements[marked];
+					elements[locations[source]] = other;
+					locations[other] = locations[source];
+					elements[marked] = source;
+					locations[source] = marked;
+					markedCounts[block]++;
+				}
+			}
+			
+			// Split every block that was only partly marked
+			for (int t = 0; t < touchedCount; t++) {
+				int block = touchedBlocks[t];
+				int marked = markedCounts[block];
+				markedCounts[block] = 0;
+				if (marked == blockEnds[block] - blockStarts[block]) {
+					continue;
+				}
+				
+				// The marked States become a new block
+				int newBlock = blockCount++;
+				blockStarts[newBlock] = blockStarts[block];
+				blockEnds[newBlock] = blockStarts[block] + marked;
+				blockStarts[block] = blockEnds[newBlock];
+				for (int i = blockStarts[newBlock]; i < blockEnds[newBlock];
+						i++) {
+					blocks[elements[i]] = newBlock;
+				}
+				
+				// Queue the new block for every symbol the old block is
+				// waiting on, and otherwise the smaller of the two.
+				int smaller = newBlock;
+				if (blockEnds[block] - blockStarts[block] <
+						blockEnds[newBlock] - blockStarts[newBlock]) {
+					smaller = block;
+				}
+				for (int s = 0; s < symbolCount; s++) {
+					int next = waiting[block * symbolCount + s] ?
+							newBlock : smaller;
+					if (waiting[next * symbolCount + s] == false) {
+						waiting[next * symbolCount + s] = true;
+						workList[workCount++] = next * symbolCount + s;
+					}
+				}
+			}
+		}
 		
-//		LogUtilities.logln("DFA: ");
-//		LogUtilities.logln(this);
+		return blocks;
 	}
 }
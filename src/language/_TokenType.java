@@ -1,6 +1,7 @@
 package language;
 
 import immutable.Language;
+import immutable.LazyTransitionTable;
 import immutable.TokenType;
 
 import java.util.ArrayList;
@@ -56,6 +57,18 @@ public class _TokenType
 	 */
 	public boolean reservedWord;
 	
+	/**
+	 * The way in which the state machine of this token type will be compiled
+	 * and run once the Language is locked.
+	 */
+	public MatchingMode matchingMode;
+	
+	/**
+	 * The number of DFA States that are cached at once if the matching mode
+	 * is MatchingMode.LAZY_DFA.
+	 */
+	public int cacheCapacity;
+	
 	/**
 	 * Blank constructor.
 	 */
@@ -65,6 +78,8 @@ public class _TokenType
 		this.processedTokens = new ArrayList<Token>();
 		this.stateMachine = new _StateMachine();
 		this.reservedWord = true;
+		this.matchingMode = MatchingMode.DFA;
+		this.cacheCapacity = LazyTransitionTable.DEFAULT_CAPACITY;
 	}
 
 	/**
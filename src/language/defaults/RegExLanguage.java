@@ -8,6 +8,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import language.*;
+import utilities.SnapshotUtilities;
 
 /**
  * This class represents a regular expression Language, to be used in the
@@ -84,6 +85,37 @@ public final class RegExLanguage {
 	 */
 	static
 	{
+		// Load this language from the bootstrap snapshot if possible, and
+		// otherwise build it.
+		Language snapshot = SnapshotUtilities.getRegExLanguage();
+		if (snapshot != null) {
+			instance = snapshot;
+		} else {
+			instance = createInstance();
+		}
+		
+		UNION = instance.tokenTypes.get(UNION_NAME);
+		RE_CHAR = instance.tokenTypes.get(RE_CHAR_NAME);
+		CLS_CHAR = instance.tokenTypes.get(CLS_CHAR_NAME);
+		OPEN_BRACKET = instance.tokenTypes.get(OPEN_BRACKET_NAME);
+		CLOSE_BRACKET = instance.tokenTypes.get(CLOSE_BRACKET_NAME);
+		OPEN_PARENS = instance.tokenTypes.get(OPEN_PARENS_NAME);
+		CLOSE_PARENS = instance.tokenTypes.get(CLOSE_PARENS_NAME);
+		PLUS = instance.tokenTypes.get(PLUS_NAME);
+		STAR = instance.tokenTypes.get(STAR_NAME);
+		DOT = instance.tokenTypes.get(DOT_NAME);
+		DASH = instance.tokenTypes.get(DASH_NAME);
+		CARROT = instance.tokenTypes.get(CARROT_NAME);
+		IN = instance.tokenTypes.get(IN_NAME);
+		DEFINED_CLASS = instance.tokenTypes.get(DEFINED_CLASS_NAME);
+		EPSILON = instance.tokenTypes.get(EPSILON_NAME);
+		NEW_LINE = instance.tokenTypes.get(NEW_LINE_NAME);
+	}
+	
+	/**
+	 * Builds the Language from the definitions of its token types.
+	 */
+	private static Language createInstance() {
 		_Language temporary = new _Language(null,
 				new HashMap<String, _TokenType>());
 		
@@ -104,24 +136,7 @@ public final class RegExLanguage {
 		temporary.put(createEPSILONTokenType());
 		temporary.put(createNEWLINETokenType());
 		
-		instance = new Language(temporary.alphabet, temporary.tokenTypes);
-		
-		UNION = instance.tokenTypes.get(UNION_NAME);
-		RE_CHAR = instance.tokenTypes.get(RE_CHAR_NAME);
-		CLS_CHAR = instance.tokenTypes.get(CLS_CHAR_NAME);
-		OPEN_BRACKET = instance.tokenTypes.get(OPEN_BRACKET_NAME);
-		CLOSE_BRACKET = instance.tokenTypes.get(CLOSE_BRACKET_NAME);
-		OPEN_PARENS = instance.tokenTypes.get(OPEN_PARENS_NAME);
-		CLOSE_PARENS = instance.tokenTypes.get(CLOSE_PARENS_NAME);
-		PLUS = instance.tokenTypes.get(PLUS_NAME);
-		STAR = instance.tokenTypes.get(STAR_NAME);
-		DOT = instance.tokenTypes.get(DOT_NAME);
-		DASH = instance.tokenTypes.get(DASH_NAME);
-		CARROT = instance.tokenTypes.get(CARROT_NAME);
-		IN = instance.tokenTypes.get(IN_NAME);
-		DEFINED_CLASS = instance.tokenTypes.get(DEFINED_CLASS_NAME);
-		EPSILON = instance.tokenTypes.get(EPSILON_NAME);
-		NEW_LINE = instance.tokenTypes.get(NEW_LINE_NAME);
+		return new Language(temporary.alphabet, temporary.tokenTypes);
 	}
 	
 	private static _TokenType createNEWLINETokenType() {
@@ -0,0 +1,276 @@
+package utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+
+/**
+ * This class tracks a position within a document that is read from a
+ * ReadableByteChannel as it is needed, rather than from a CharSequence held
+ * in memory. Only a window of the document is kept, starting at the current
+ * offset: the characters before it are dropped whenever the window is
+ * refilled, and the window only grows when a single lookahead does not fit
+ * in it. So a document of any length is read in constant memory, and parsing
+ * starts before the end of the document has been read.
+ *
+ * The document is read in the same way as FileUtilities.getFileContents
+ * reads a file: each carriage return, alone or before a new line, is read as
+ * a new line, and a new line is added after the last line if it has none.
+ *
+ * Note: Since the characters before the window are gone, this Cursor cannot
+ * move back past the offset it had when the window was last refilled.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class ChannelCursor extends Cursor {
+
+	/**
+	 * The number of bytes and characters that are read at a time, unless
+	 * another capacity is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * The channel that the document is read from.
+	 */
+	private final ReadableByteChannel channel;
+
+	/**
+	 * The decoder of the bytes of the document into characters.
+	 */
+	private final CharsetDecoder decoder;
+
+	/**
+	 * The bytes that have been read but not yet decoded. This only grows when
+	 * a single character does not fit in it.
+	 */
+	private ByteBuffer bytes;
+
+	/**
+	 * The window of decoded characters.
+	 */
+	private char[] window;
+
+	/**
+	 * The offset of the first character of the window.
+	 */
+	private int windowStart;
+
+	/**
+	 * The offset just past the last character of the window.
+	 */
+	private int windowEnd;
+
+	/**
+	 * The last character that was added to the window. This starts as a new
+	 * line, so that an empty document is not given one.
+	 */
+	private char lastCharacter = '\n';
+
+	/**
+	 * This is true if the last character that was decoded was a carriage
+	 * return, so a new line right after it is dropped.
+	 */
+	private boolean afterCarriageReturn;
+
+	/**
+	 * This is true once the whole channel has been read and decoded.
+	 */
+	private boolean finished;
+
+	/**
+	 * Constructs a ChannelCursor positioned at the start of the document
+	 * read from the given channel, which is decoded with the given Charset.
+	 */
+	public ChannelCursor(ReadableByteChannel channel, Charset charset) {
+		this(channel, charset, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a ChannelCursor reading the given number of bytes at a
+	 * time.
+	 */
+	public ChannelCursor(ReadableByteChannel channel, Charset charset,
+			int capacity) {
+		super("");
+		this.channel = channel;
+		this.decoder = charset.newDecoder();
+		this.bytes = ByteBuffer.allocate(capacity);
+		this.window = new char[capacity];
+	}
+
+	/**
+	 * Returns null, since the characters before the window are not kept.
+	 */
+	public CharSequence getContents() {
+		return null;
+	}
+
+	/**
+	 * Moves this Cursor to the given offset, which must still be within the
+	 * window.
+	 */
+	public void setOffset(int offset) {
+		if (offset < windowStart) {
+			ErrorUtilities.throwError("Cannot move back to offset " + offset +
+					", which has already been dropped from the window.");
+		}
+		super.setOffset(offset);
+	}
+
+	/**
+	 * Returns true if there are characters left to read.
+	 */
+	public boolean hasRemaining() {
+		return fill(getOffset());
+	}
+
+	/**
+	 * Returns true if there is a character the given distance ahead of the
+	 * current offset.
+	 */
+	public boolean hasRemaining(int ahead) {
+		return fill(getOffset() + ahead);
+	}
+
+	/**
+	 * Returns the next character without consuming it.
+	 */
+	public char peek() {
+		int offset = getOffset();
+		fill(offset);
+		return window[offset - windowStart];
+	}
+
+	/**
+	 * Returns the character the given distance ahead of the current offset
+	 * without consuming it.
+	 */
+	public char peek(int ahead) {
+		int offset = getOffset() + ahead;
+		fill(offset);
+		return window[offset - windowStart];
+	}
+
+	/**
+	 * Consumes the given number of characters and returns them.
+	 */
+	public String consume(int length) {
+		int offset = getOffset();
+		fill(offset + length - 1);
+		String result = new String(window, offset - windowStart, length);
+		advance(length);
+		return result;
+	}
+
+	/**
+	 * Returns the characters of the window that have not been read yet.
+	 * Unlike a Cursor over a CharSequence, this stops at the end of the
+	 * window rather than at the end of the document.
+	 */
+	public String toString() {
+		int offset = getOffset();
+		if (fill(offset) == false) {
+			return "";
+		}
+		return new String(window, offset - windowStart, windowEnd - offset);
+	}
+
+	/**
+	 * Reads from the channel until the character at the given offset is in
+	 * the window, and returns false if the document ends before it.
+	 */
+	private boolean fill(int offset) {
+		while (offset >= windowEnd && finished == false) {
+			// Drop the characters before the current offset
+			int dropped = Math.min(getOffset(), windowEnd) - windowStart;
+			if (dropped > 0) {
+				System.arraycopy(window, dropped, window, 0,
+						windowEnd - windowStart - dropped);
+				windowStart += dropped;
+			}
+
+			// Grow the window if a lookahead does not fit in it
+			if (windowEnd - windowStart == window.length) {
+				window = Arrays.copyOf(window, window.length * 2);
+			}
+
+			// Read and decode the next bytes
+			int length = windowEnd - windowStart;
+			CharBuffer chars = CharBuffer.wrap(window);
+			chars.position(length);
+			try {
+				boolean endOfInput = channel.read(bytes) < 0;
+				bytes.flip();
+				CoderResult result = decoder.decode(bytes, chars, endOfInput);
+				bytes.compact();
+				if (result.isError()) {
+					result.throwException();
+				}
+				
+				// The document is finished once every byte has been decoded
+				if (endOfInput && result.isUnderflow()) {
+					result = decoder.flush(chars);
+					finished = result.isUnderflow();
+				}
+				
+				// If nothing was decoded, the next character does not fit in
+				// the window or its bytes do not fit in the byte buffer, so
+				// grow the one that is full
+				if (chars.position() == length && finished == false) {
+					if (result.isOverflow()) {
+						window = Arrays.copyOf(window, window.length * 2);
+					} else if (bytes.hasRemaining() == false) {
+						ByteBuffer grown =
+								ByteBuffer.allocate(bytes.capacity() * 2);
+						bytes.flip();
+						bytes = grown.put(bytes);
+					}
+				}
+			} catch (CharacterCodingException e) {
+				ErrorUtilities.throwLexicalError("The document could not be " +
+						"decoded as " + decoder.charset() + ".", windowEnd);
+			} catch (IOException e) {
+				ErrorUtilities.throwError(e.toString());
+			}
+			length = normalize(length, chars.position());
+			
+			// End the last line with a new line if it has none
+			if (finished && lastCharacter != '\n') {
+				if (length == window.length) {
+					window = Arrays.copyOf(window, window.length * 2);
+				}
+				window[length++] = '\n';
+				lastCharacter = '\n';
+			}
+			windowEnd = windowStart + length;
+		}
+		return offset < windowEnd;
+	}
+	
+	/**
+	 * Replaces each carriage return that was just decoded into the window,
+	 * from the given start up to the given end, with a new line, dropping
+	 * any new line right after it. Returns the new end of the characters.
+	 */
+	private int normalize(int start, int end) {
+		int length = start;
+		for (int i = start; i < end; i++) {
+			char c = window[i];
+			if (c == '\n' && afterCarriageReturn) {
+				afterCarriageReturn = false;
+				continue;
+			}
+			afterCarriageReturn = c == '\r';
+			lastCharacter = afterCarriageReturn ? '\n' : c;
+			window[length++] = lastCharacter;
+		}
+		return length;
+	}
+}
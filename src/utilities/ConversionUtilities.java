@@ -81,13 +81,14 @@ public class ConversionUtilities {
 
 	public static Map<_Rule, Rule> convertRules(Collection<_Rule> oldRules) {
 
-		// Construct a Map of old _Rule objects to new Rule objects and
-		// initialize the result 
+		// Construct a Map of old _Rule objects to new Rule objects, numbering
+		// the new Rule objects as we go, and initialize the result 
 		HashMap<_Rule, Rule> ruleMapping = new HashMap<_Rule, Rule>();
 		for (_Rule key : oldRules) {
 			ruleMapping.put(key, new Rule(key.name,
 					new ArrayList<ArrayList<Object>>(),
-					new HashSet<TokenType>()));
+					new HashSet<TokenType>(),
+					ruleMapping.size()));
 		}
 
 		// Hydrate the rules list
@@ -103,7 +104,7 @@ public class ConversionUtilities {
 
 					if (item == null) {
 						String msg = oldRule.name + " contains a null value.";
-						ErrorUtilities.throwError(msg);
+						ErrorUtilities.throwGrammarError(msg);
 					}
 					
 					// If there's something unexpected, fail loud
@@ -112,7 +113,7 @@ public class ConversionUtilities {
 						String msg = "Expected a String or _Rule object, but " +
 							"got a " + item.getClass().getCanonicalName() +
 							" instead.";
-						ErrorUtilities.throwError(msg);
+						ErrorUtilities.throwGrammarError(msg);
 					}
 					
 					// Handle TokenType case
@@ -131,21 +132,9 @@ public class ConversionUtilities {
 			}
 		}
 
-		// At this point, all of the new Rule objects still have mutable
-		// fields. Here, we reconstruct the final mapping, making everything
-		// immutable.
-		HashMap<_Rule, Rule> result = new HashMap<_Rule, Rule>();
-		for (_Rule oldRule : ruleMapping.keySet()) {
-			// Get a reference to the new State object
-			Rule mutableNewRule = ruleMapping.get(oldRule);
-			Rule newState = new Rule(
-					mutableNewRule.name,
-					mutableNewRule.possibleChildren,
-					mutableNewRule.startingTokenTypes);
-			result.put(oldRule, newState);
-		}
-		
-		return result;
+		// The chains refer to these same Rule objects, so they are returned
+		// as they are rather than copied.
+		return ruleMapping;
 	}
 	
 	public static Map<_TokenType, TokenType> ConvertTokenType(
@@ -164,7 +153,7 @@ public class ConversionUtilities {
 			
 			
 			TokenType tokenType = new TokenType(language, name,
-					stateMachine, reservedWord);
+					stateMachine, reservedWord, -1);
 			
 			tokenTypeMap.put(oldTokenType, tokenType);
 		}
@@ -0,0 +1,118 @@
+package utilities;
+
+/**
+ * This class tracks a position within an immutable CharSequence. Rather than
+ * editing the contents of a document as it is consumed, the lexer and parser
+ * advance the offset of a Cursor, and backtrack by resetting that offset.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class Cursor {
+
+	/**
+	 * The contents of the document being read.
+	 */
+	private final CharSequence contents;
+
+	/**
+	 * The contents if they are a MappedCharSequence, which is asked whether
+	 * there are characters left without decoding the rest of its bytes to
+	 * find its length, or null otherwise.
+	 */
+	private final MappedCharSequence mappedContents;
+
+	/**
+	 * The offset of the next character to be read.
+	 */
+	private int offset;
+
+	/**
+	 * Constructs a Cursor positioned at the start of the given contents.
+	 */
+	public Cursor(CharSequence contents) {
+		this.contents = contents;
+		this.mappedContents = contents instanceof MappedCharSequence ?
+				(MappedCharSequence) contents : null;
+		this.offset = 0;
+	}
+
+	/**
+	 * Returns the document that this Cursor reads, which its offsets index
+	 * into, or null if the characters of the document are not kept once
+	 * they have been read.
+	 */
+	public CharSequence getContents() {
+		return contents;
+	}
+
+	/**
+	 * Returns the offset of the next character to be read.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Moves this Cursor to the given offset. This is how callers backtrack.
+	 */
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	/**
+	 * Returns true if there are characters left to read.
+	 */
+	public boolean hasRemaining() {
+		return hasRemaining(0);
+	}
+
+	/**
+	 * Returns true if there is a character the given distance ahead of the
+	 * current offset.
+	 */
+	public boolean hasRemaining(int ahead) {
+		if (mappedContents != null) {
+			return mappedContents.hasCharAt(offset + ahead);
+		}
+		return offset + ahead < contents.length();
+	}
+
+	/**
+	 * Returns the next character without consuming it.
+	 */
+	public char peek() {
+		return contents.charAt(offset);
+	}
+
+	/**
+	 * Returns the character the given distance ahead of the current offset
+	 * without consuming it.
+	 */
+	public char peek(int ahead) {
+		return contents.charAt(offset + ahead);
+	}
+
+	/**
+	 * Consumes the given number of characters.
+	 */
+	public void advance(int length) {
+		offset += length;
+	}
+
+	/**
+	 * Consumes the given number of characters and returns them.
+	 */
+	public String consume(int length) {
+		String result = contents.subSequence(offset, offset + length)
+				.toString();
+		offset += length;
+		return result;
+	}
+
+	/**
+	 * Returns the contents that have not been read yet.
+	 */
+	public String toString() {
+		return contents.subSequence(offset, contents.length()).toString();
+	}
+}
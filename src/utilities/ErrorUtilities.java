@@ -9,14 +9,44 @@ package utilities;
 public class ErrorUtilities {
 	
 	/**
-	 * Prints out an error message including the specified message and then
-	 * terminates the program.
+	 * Throws a ParserException with the specified message.
 	 */
 	public static void throwError(String string) {
-		System.out.println("\nERROR: " + string + "\n");
+		throw new ParserException(string);
+	}
+	
+	/**
+	 * Throws a LexicalException with the specified message, for the
+	 * character at the given offset.
+	 */
+	public static void throwLexicalError(String string, int offset) {
+		throw new LexicalException(string, offset);
+	}
+	
+	/**
+	 * Throws a SyntaxException with the specified message, for the token at
+	 * the given offset.
+	 */
+	public static void throwSyntaxError(String string, int offset) {
+		throw new SyntaxException(string, offset);
+	}
+	
+	/**
+	 * Throws a GrammarException with the specified message.
+	 */
+	public static void throwGrammarError(String string) {
+		throw new GrammarException(string);
+	}
+	
+	/**
+	 * Prints out the message of the given exception and where it was thrown,
+	 * and then terminates the program.
+	 */
+	public static void exit(ParserException exception) {
+		System.out.println("\nERROR: " + exception.getMessage() + "\n");
 		
 		System.out.println("Stack trace:");
-		StackTraceElement[] elements = new Throwable().getStackTrace();
+		StackTraceElement[] elements = exception.getStackTrace();
 		for (int i = 1; i < elements.length; i++)
 			System.out.println(elements[i]);
 		
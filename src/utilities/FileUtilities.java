@@ -1,9 +1,17 @@
 package utilities;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Scanner;
 
 /**
@@ -14,6 +22,12 @@ import java.util.Scanner;
  */
 public class FileUtilities {
 	
+	/**
+	 * The size in bytes from which getInputContents maps a file into memory
+	 * rather than reading it.
+	 */
+	public static final long MAPPING_THRESHOLD = 1 << 20;
+	
 	/**
 	 * An empty private constructor. This class is only intended to be used as a
 	 * collection of static methods, so we hide this constructor.
@@ -37,6 +51,110 @@ public class FileUtilities {
 		return result.toString();
 	}
 	
+	/**
+	 * Returns the contents of a given input file, which is read in the same
+	 * way as in getFileContents if it is smaller than MAPPING_THRESHOLD, and
+	 * mapped into memory as in mapFileContents otherwise.
+	 */
+	public static CharSequence getInputContents(String filePath) {
+		if (new File(filePath).length() < MAPPING_THRESHOLD) {
+			return getFileContents(filePath);
+		}
+		return mapFileContents(filePath);
+	}
+	
+	/**
+	 * Returns the contents of a given file by mapping it into memory, so that
+	 * it is read straight from the operating system's cache of the file. If
+	 * the default charset is UTF-8, US-ASCII or ISO-8859-1, the bytes are
+	 * decoded as they are read (see MappedCharSequence) and never copied;
+	 * otherwise they are decoded once into a single buffer. Either way, the
+	 * result is the same as that of getFileContents: every line ends with a
+	 * new line, including the last one.
+	 */
+	public static CharSequence mapFileContents(String filePath) {
+		ByteBuffer bytes = mapFile(filePath);
+		Charset charset = Charset.defaultCharset();
+		String name = charset.name();
+		if (name.equals("UTF-8") || name.equals("US-ASCII") ||
+				name.equals("ISO-8859-1")) {
+			byte lastByte = bytes.limit() > 0 ?
+					bytes.get(bytes.limit() - 1) : (byte) '\n';
+			return new MappedCharSequence(bytes,
+					lastByte != '\n' && lastByte != '\r', charset);
+		}
+
+		// Decode the bytes, leaving room for a final new line
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer result = CharBuffer.allocate((int) Math.min(
+				Integer.MAX_VALUE - 1,
+				(long) Math.ceil(bytes.limit() *
+						(double) decoder.maxCharsPerByte())) + 1);
+		decoder.decode(bytes, result, true);
+		decoder.flush(result);
+
+		// Replace each carriage return, alone or before a new line, with a
+		// new line
+		int decoded = result.position();
+		int length = 0;
+		for (int i = 0; i < decoded; i++) {
+			char c = result.get(i);
+			if (c == '\r') {
+				c = '\n';
+				if (i + 1 < decoded && result.get(i + 1) == '\n') {
+					i++;
+				}
+			}
+			result.put(length++, c);
+		}
+		result.position(length);
+		if (length > 0 && result.get(length - 1) != '\n') {
+			result.put('\n');
+		}
+		result.flip();
+		return result;
+	}
+	
+	/**
+	 * Returns the bytes of a given file, mapped into memory rather than read,
+	 * such as for lexing them without decoding them first.
+	 */
+	public static ByteBuffer mapFile(String filePath) {
+		try {
+			FileInputStream stream = new FileInputStream(filePath);
+			try {
+				FileChannel channel = stream.getChannel();
+				if (channel.size() >= Integer.MAX_VALUE) {
+					ErrorUtilities.throwError("The file " + filePath +
+							" is too large to be mapped into memory. Read " +
+							"it through getFileChannel instead.");
+				}
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			ErrorUtilities.throwError(e.toString());
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns a channel reading the given file, for reading it as it is
+	 * parsed rather than all at once.
+	 */
+	public static ReadableByteChannel getFileChannel(String filePath) {
+		try {
+			return new FileInputStream(filePath).getChannel();
+		} catch (IOException e) {
+			ErrorUtilities.throwError(e.toString());
+			return null;
+		}
+	}
+	
 	public static String getStreamContents(InputStream stream) {
 	    java.util.Scanner s = new java.util.Scanner(stream).useDelimiter("\\A");
 	    return s.hasNext() ? s.next() : "";
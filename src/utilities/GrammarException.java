@@ -0,0 +1,20 @@
+package utilities;
+
+/**
+ * This is the exception thrown when a Language or Grammar specification is
+ * invalid, or when a Grammar turns out to be ambiguous while parsing. Unlike
+ * the other errors, it is the same for every document.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class GrammarException extends ParserException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Standard constructor.
+	 */
+	public GrammarException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,25 @@
+package utilities;
+
+/**
+ * This is the exception thrown when the contents of a document cannot be
+ * split into tokens.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class LexicalException extends ParserException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The offset of the first character that could not be lexed.
+	 */
+	public final int offset;
+
+	/**
+	 * Standard constructor.
+	 */
+	public LexicalException(String message, int offset) {
+		super(message);
+		this.offset = offset;
+	}
+}
@@ -0,0 +1,484 @@
+package utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * This class is a CharSequence over the bytes of a file that has been mapped
+ * into memory. The characters are read straight from the mapped bytes as
+ * they are needed, so the document is never copied onto the heap; only the
+ * subsequences taken from it are.
+ *
+ * By default, every byte is a character of its own, as in ASCII or
+ * ISO-8859-1. If the bytes are UTF-8 instead, they are decoded on the fly,
+ * and every index is still that of a character, as with a String: charAt,
+ * subSequence and toString all read the same characters. A character that
+ * takes four bytes is a surrogate pair, and each malformed byte is read as
+ * the replacement character, U+FFFD, including those of overlong sequences,
+ * of surrogates and of code points past U+10FFFF. Unless it is told
+ * otherwise, every carriage return is read as a new line, and a carriage
+ * return and the new line after it are read as a single one, as
+ * FileUtilities.getFileContents reads them.
+ *
+ * Note: Finding the character at an index of UTF-8 bytes, or of bytes with
+ * carriage returns, means decoding them from the closest checkpoint before
+ * it, or from the last character found if that is closer, so reading the
+ * characters in order decodes each of them about once. The checkpoints are
+ * recorded every CHECKPOINT_INTERVAL characters, and take two ints each.
+ * They are recorded as the bytes are first read up to them rather than all
+ * at once, so the bytes past the last character read are never decoded
+ * unless length is called (see hasCharAt). Since even reading a character
+ * records them, a MappedCharSequence cannot be shared between threads.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class MappedCharSequence implements CharSequence {
+
+	/**
+	 * The number of characters between two checkpoints of UTF-8 bytes.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 64;
+
+	/**
+	 * The Charset in which every byte is the character with the same value.
+	 */
+	private static final Charset SINGLE_BYTE = Charset.forName("ISO-8859-1");
+
+	/**
+	 * The Charset in which every byte above 0x7F is malformed.
+	 */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/**
+	 * The character that a malformed byte is read as.
+	 */
+	private static final char REPLACEMENT = '\uFFFD';
+
+	/**
+	 * The bytes of the document.
+	 */
+	private final ByteBuffer bytes;
+
+	/**
+	 * The number of characters of the document, or -1 until the bytes have
+	 * been read up to their limit.
+	 */
+	private int length;
+
+	/**
+	 * True if the document is followed by one more new line than the bytes
+	 * hold.
+	 */
+	private final boolean newLineAppended;
+
+	/**
+	 * True if the bytes are decoded as UTF-8, and false if every byte is a
+	 * character of its own.
+	 */
+	private final boolean utf8;
+
+	/**
+	 * True if every byte is a character of its own, but those above 0x7F are
+	 * malformed, as in US-ASCII.
+	 */
+	private final boolean ascii;
+
+	/**
+	 * True if every carriage return is read as a new line, and the new line
+	 * after one is not read at all.
+	 */
+	private final boolean newLinesNormalized;
+
+	/**
+	 * The index of the character at each checkpoint, which is a multiple of
+	 * CHECKPOINT_INTERVAL, or one past it if that splits a surrogate pair.
+	 * Null if the index of every character is the offset of its byte.
+	 */
+	private int[] checkpointIndices;
+
+	/**
+	 * The offset of the byte that starts the character at each checkpoint.
+	 */
+	private int[] checkpointOffsets;
+
+	/**
+	 * The number of checkpoints recorded so far.
+	 */
+	private int checkpoints;
+
+	/**
+	 * The index of the first character that the checkpoints have not been
+	 * recorded past yet.
+	 */
+	private int scannedIndex;
+
+	/**
+	 * The offset of the byte that starts that character.
+	 */
+	private int scannedOffset;
+
+	/**
+	 * The index of the last character found.
+	 */
+	private int lastIndex;
+
+	/**
+	 * The offset of the byte that starts that character.
+	 */
+	private int lastOffset;
+
+	/**
+	 * Constructs a MappedCharSequence over the given bytes, which are read
+	 * from index 0 up to their limit. If newLineAppended is true, the
+	 * document is followed by one more new line than the bytes hold, in the
+	 * same way that FileUtilities.getFileContents ends every line with one.
+	 */
+	public MappedCharSequence(ByteBuffer bytes, boolean newLineAppended) {
+		this(bytes, newLineAppended, null);
+	}
+
+	/**
+	 * Constructs a MappedCharSequence in the same way, whose bytes are
+	 * decoded with the given Charset. Only UTF-8 and the Charsets in which
+	 * every byte is a character, ISO-8859-1 and US-ASCII, are supported; null
+	 * is the same as ISO-8859-1.
+	 */
+	public MappedCharSequence(ByteBuffer bytes, boolean newLineAppended,
+			Charset charset) {
+		this(bytes, newLineAppended, charset, true);
+	}
+
+	/**
+	 * Constructs a MappedCharSequence in the same way, which reads carriage
+	 * returns as new lines only if newLinesNormalized is true. Otherwise,
+	 * every line separator is read as it is.
+	 */
+	public MappedCharSequence(ByteBuffer bytes, boolean newLineAppended,
+			Charset charset, boolean newLinesNormalized) {
+		if (charset != null && charset.equals(SINGLE_BYTE) == false &&
+				charset.name().equals("US-ASCII") == false &&
+				charset.name().equals("UTF-8") == false) {
+			throw new IllegalArgumentException("Cannot decode the " +
+					charset.name() + " charset on the fly.");
+		}
+		this.bytes = bytes;
+		this.utf8 = charset != null && charset.name().equals("UTF-8");
+		this.ascii = charset != null && charset.name().equals("US-ASCII");
+		this.newLinesNormalized = newLinesNormalized;
+		this.newLineAppended = newLineAppended;
+		if (isIndexed() == false) {
+			this.length = bytes.limit() + (newLineAppended ? 1 : 0);
+			return;
+		}
+		this.length = -1;
+		this.checkpointIndices = new int[16];
+		this.checkpointOffsets = new int[16];
+		this.checkpoints = 1;
+	}
+
+	/**
+	 * Returns the number of characters of the document, which means decoding
+	 * all of the bytes that have not been read yet.
+	 */
+	public int length() {
+		if (length < 0) {
+			scan(Integer.MAX_VALUE, Integer.MAX_VALUE);
+		}
+		return length;
+	}
+
+	/**
+	 * Returns true if the given index is that of a character of the
+	 * document. Unlike comparing the index with length, this only decodes the
+	 * bytes up to the index, which is how a Cursor reads this.
+	 */
+	public boolean hasCharAt(int index) {
+		if (index < 0) {
+			return false;
+		}
+		if (length < 0) {
+			scan(index, -1);
+		}
+		return length < 0 || index < length;
+	}
+
+	public char charAt(int index) {
+		if (hasCharAt(index) == false) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Length: " + length());
+		}
+		if (isIndexed() == false) {
+			return index == bytes.limit() ? '\n' :
+					(char) getCodePoint(index, 1);
+		}
+
+		// Decode the character that holds the index, which is the high or
+		// the low surrogate of a pair if it takes four bytes
+		int offset = getOffset(index);
+		if (offset >= bytes.limit()) {
+			return '\n';
+		}
+		int codePoint = getCodePoint(offset, getSequenceLength(offset));
+		if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			return (char) codePoint;
+		}
+		return lastIndex == index ? Character.highSurrogate(codePoint) :
+				Character.lowSurrogate(codePoint);
+	}
+
+	/**
+	 * Returns a copy of the characters from start up to end, since the
+	 * subsequences of a document are taken as the text of its tokens.
+	 */
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || (end > 0 && hasCharAt(end - 1) ==
+				false)) {
+			throw new IndexOutOfBoundsException("Start: " + start +
+					", End: " + end + ", Length: " + length());
+		}
+		if (isIndexed() == false) {
+			// Copy the bytes in bulk and decode them, adding the new line if
+			// it is included
+			byte[] result = new byte[end - start];
+			ByteBuffer slice = bytes.duplicate();
+			slice.position(Math.min(start, bytes.limit()));
+			slice.get(result, 0,
+					Math.min(end, bytes.limit()) - slice.position());
+			if (end > bytes.limit() && start < end) {
+				result[result.length - 1] = '\n';
+			}
+			return new String(result, ascii ? ASCII : SINGLE_BYTE);
+		}
+
+		if (start == end) {
+			return "";
+		}
+
+		// Decode the characters from the one that holds the start
+		StringBuilder result = new StringBuilder(end - start);
+		int offset = getOffset(start);
+		int index = lastIndex;
+		while (index < end) {
+			if (offset >= bytes.limit()) {
+				result.append('\n');
+				break;
+			}
+			int sequenceLength = getSequenceLength(offset);
+			int codePoint = getCodePoint(offset, sequenceLength);
+			if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				result.append((char) codePoint);
+				index++;
+			} else {
+				if (index >= start) {
+					result.append(Character.highSurrogate(codePoint));
+				}
+				if (index + 1 < end) {
+					result.append(Character.lowSurrogate(codePoint));
+				}
+				index += 2;
+			}
+			offset += sequenceLength;
+		}
+
+		// The next character is likely the next one to be read
+		lastIndex = index;
+		lastOffset = offset;
+		return result.toString();
+	}
+
+	/**
+	 * Returns the index of the character that starts at the given offset of
+	 * the bytes, which must be the first byte of a character or the limit of
+	 * the bytes. Without UTF-8 or carriage returns to read as new lines, this
+	 * is the offset itself.
+	 */
+	public int getIndex(int offset) {
+		if (isIndexed() == false) {
+			return offset;
+		}
+		scan(-1, offset);
+		int checkpoint = Arrays.binarySearch(checkpointOffsets, 0,
+				checkpoints, offset);
+		if (checkpoint < 0) {
+			checkpoint = -checkpoint - 2;
+		}
+		int index = checkpointIndices[checkpoint];
+		int current = checkpointOffsets[checkpoint];
+		if (lastOffset <= offset && lastOffset > current) {
+			index = lastIndex;
+			current = lastOffset;
+		}
+		while (current < offset) {
+			int sequenceLength = getSequenceLength(current);
+			index += getWidth(sequenceLength);
+			current += sequenceLength;
+		}
+		lastIndex = index;
+		lastOffset = current;
+		return index;
+	}
+
+	/**
+	 * Returns the offset of the first byte of the character that holds the
+	 * given index of decoded bytes, or the limit of the bytes if the index is
+	 * that of the appended new line. The index of that character is left in
+	 * lastIndex, which differs from the given index only if it is that of
+	 * the low surrogate of a pair.
+	 */
+	private int getOffset(int index) {
+		scan(index, -1);
+		int checkpoint = Math.min(index / CHECKPOINT_INTERVAL,
+				checkpoints - 1);
+		if (checkpointIndices[checkpoint] > index) {
+			checkpoint--;
+		}
+		int current = checkpointIndices[checkpoint];
+		int offset = checkpointOffsets[checkpoint];
+		if (lastIndex <= index && lastIndex > current) {
+			current = lastIndex;
+			offset = lastOffset;
+		}
+		while (offset < bytes.limit()) {
+			int sequenceLength = getSequenceLength(offset);
+			int width = getWidth(sequenceLength);
+			if (current + width > index) {
+				break;
+			}
+			current += width;
+			offset += sequenceLength;
+		}
+		lastIndex = current;
+		lastOffset = offset;
+		return offset;
+	}
+
+	/**
+	 * Reads the bytes past those read so far, recording a checkpoint every
+	 * interval, until the character at the given index and the one at the
+	 * given offset have both been read, or until the limit of the bytes.
+	 */
+	private void scan(int index, int offset) {
+		if (isIndexed() == false) {
+			return;
+		}
+		while (scannedOffset < bytes.limit() && (scannedIndex <= index ||
+				scannedOffset <= offset)) {
+			if (scannedIndex >= checkpoints * CHECKPOINT_INTERVAL) {
+				if (checkpoints == checkpointIndices.length) {
+					checkpointIndices = Arrays.copyOf(checkpointIndices,
+							checkpoints * 2);
+					checkpointOffsets = Arrays.copyOf(checkpointOffsets,
+							checkpoints * 2);
+				}
+				checkpointIndices[checkpoints] = scannedIndex;
+				checkpointOffsets[checkpoints] = scannedOffset;
+				checkpoints++;
+			}
+			int sequenceLength = getSequenceLength(scannedOffset);
+			scannedIndex += getWidth(sequenceLength);
+			scannedOffset += sequenceLength;
+		}
+		if (scannedOffset >= bytes.limit() && length < 0) {
+			length = scannedIndex + (newLineAppended ? 1 : 0);
+		}
+	}
+
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+
+	/**
+	 * Returns true if the index of a character may differ from the offset of
+	 * its byte, which is why the checkpoints are kept.
+	 */
+	private boolean isIndexed() {
+		return utf8 || newLinesNormalized;
+	}
+
+	/**
+	 * Returns the number of characters that a character of the given number
+	 * of bytes is read as, which is 2 for the surrogate pair of a four byte
+	 * sequence of UTF-8.
+	 */
+	private int getWidth(int sequenceLength) {
+		return utf8 && sequenceLength == 4 ? 2 : 1;
+	}
+
+	/**
+	 * Returns the number of bytes of the character that starts at the given
+	 * offset: 2 for a carriage return and the new line after it if they are
+	 * read as one, the length of the UTF-8 sequence otherwise, or 1 if it is
+	 * malformed or every byte is a character of its own.
+	 */
+	private int getSequenceLength(int offset) {
+		int lead = bytes.get(offset) & 0xFF;
+		if (lead == '\r' && newLinesNormalized) {
+			return offset + 1 < bytes.limit() &&
+					bytes.get(offset + 1) == '\n' ? 2 : 1;
+		}
+		if (utf8 == false) {
+			return 1;
+		}
+
+		// Find the length and the range of the second byte, which rules out
+		// overlong sequences (E0 and F0), surrogates (ED) and code points
+		// past U+10FFFF (F4)
+		int sequenceLength;
+		int min = 0x80;
+		int max = 0xBF;
+		if (lead >= 0xC2 && lead <= 0xDF) {
+			sequenceLength = 2;
+		} else if (lead >= 0xE0 && lead <= 0xEF) {
+			sequenceLength = 3;
+			if (lead == 0xE0) {
+				min = 0xA0;
+			} else if (lead == 0xED) {
+				max = 0x9F;
+			}
+		} else if (lead >= 0xF0 && lead <= 0xF4) {
+			sequenceLength = 4;
+			if (lead == 0xF0) {
+				min = 0x90;
+			} else if (lead == 0xF4) {
+				max = 0x8F;
+			}
+		} else {
+			return 1;
+		}
+		if (offset + sequenceLength > bytes.limit()) {
+			return 1;
+		}
+		int second = bytes.get(offset + 1) & 0xFF;
+		if (second < min || second > max) {
+			return 1;
+		}
+		for (int i = 2; i < sequenceLength; i++) {
+			if ((bytes.get(offset + i) & 0xC0) != 0x80) {
+				return 1;
+			}
+		}
+		return sequenceLength;
+	}
+
+	/**
+	 * Returns the code point of the character of the given length that
+	 * starts at the given offset, or the replacement character if it is
+	 * malformed.
+	 */
+	private int getCodePoint(int offset, int sequenceLength) {
+		int lead = bytes.get(offset) & 0xFF;
+		if (lead == '\r' && newLinesNormalized) {
+			return '\n';
+		}
+		if (sequenceLength == 1) {
+			return lead < 0x80 || (utf8 == false && ascii == false) ?
+					lead : REPLACEMENT;
+		}
+		int codePoint = lead & (0x7F >> sequenceLength);
+		for (int i = 1; i < sequenceLength; i++) {
+			codePoint = (codePoint << 6) | (bytes.get(offset + i) & 0x3F);
+		}
+		return codePoint;
+	}
+}
@@ -0,0 +1,21 @@
+package utilities;
+
+/**
+ * This is the exception thrown for every error found while generating a
+ * Language or Grammar, or while parsing a document with one. Unlike exiting
+ * the program, it leaves the caller free to report the error and go on to
+ * the next document.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class ParserException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Standard constructor.
+	 */
+	public ParserException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,520 @@
+package utilities;
+
+import generators.GrammarGenerator;
+import generators.LanguageGenerator;
+import grammar._Grammar;
+import grammar._Rule;
+import grammar.defaults.RegExGrammar;
+import grammar.defaults.SimpleGrammar;
+import immutable.Grammar;
+import immutable.Language;
+import immutable.Rule;
+import immutable.State;
+import immutable.StateMachine;
+import immutable.TokenType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import language.Alphabet;
+import language.MatchingMode;
+import language._StateMachine;
+import language._TokenType;
+import language.defaults.RegExAlphabet;
+import language.defaults.RegExLanguage;
+
+/**
+ * This class contains static methods that read and write the bootstrap
+ * snapshot, which holds the RegExLanguage, the RegExGrammar, and the Grammar
+ * compiled from the token specification of grammar files. These objects are
+ * the same for every run, so loading them from a snapshot saves rebuilding
+ * them each time the JVM starts.
+ *
+ * The snapshot is a compact binary file written by SnapshotGenerator at build
+ * time. It stores the compiled state machines of each Language and the rules
+ * of each Grammar, so that loading it only has to lay out the tables. It is
+ * read all at once on first use, so that the Grammars share the TokenTypes of
+ * the Languages. If the snapshot is missing, disabled, unreadable, or was
+ * written from another token specification or by other code, none of it is
+ * used and the objects are built as usual.
+ *
+ * Note: The RegExLanguage and the RegExGrammar are defined in Java, so the
+ * snapshot records a digest of the class files of every class that defines
+ * or compiles its contents (see DEFINING_CLASSES) rather than their source.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class SnapshotUtilities {
+
+	/**
+	 * The classpath location of the snapshot.
+	 */
+	public static final String SNAPSHOT_FILE =
+			"/generators/resources/bootstrap.snapshot";
+
+	/**
+	 * The classpath location of the token specification of grammar files.
+	 */
+	public static final String TOKEN_SPEC_FILE =
+			"/generators/resources/token_spec";
+
+	/**
+	 * Setting this system property to true disables the snapshot.
+	 */
+	public static final String DISABLE_PROPERTY = "parser.snapshot.disable";
+
+	/**
+	 * The version of the snapshot format.
+	 */
+	private static final int SNAPSHOT_VERSION = 2;
+
+	/**
+	 * The classes whose code determines the contents of the snapshot. A
+	 * snapshot is stale once the class file of any of them changes.
+	 */
+	private static final Class<?>[] DEFINING_CLASSES = new Class<?>[] {
+		RegExAlphabet.class, RegExLanguage.class, RegExGrammar.class,
+		LanguageGenerator.class, GrammarGenerator.class, _StateMachine.class,
+		ConversionUtilities.class, SimpleGrammar.class };
+
+	/**
+	 * This value is written in place of the null (wild card) Character.
+	 */
+	private static final int NULL_CHARACTER = -1;
+
+	/**
+	 * These values tag the items of a chain of a Rule.
+	 */
+	private static final int RULE_ITEM = 0;
+	private static final int TOKEN_TYPE_ITEM = 1;
+
+	/**
+	 * An empty private constructor. This class is only intended to be used as a
+	 * collection of static methods, so we hide this constructor.
+	 */
+	private SnapshotUtilities() {}
+
+	/**
+	 * Returns the RegExLanguage from the snapshot, or null if the snapshot is
+	 * not available.
+	 */
+	public static Language getRegExLanguage() {
+		Snapshot snapshot = SnapshotHolder.snapshot;
+		return snapshot == null ? null : snapshot.languages.get(0);
+	}
+
+	/**
+	 * Returns the RegExGrammar from the snapshot, or null if the snapshot is
+	 * not available.
+	 */
+	public static Grammar getRegExGrammar() {
+		Snapshot snapshot = SnapshotHolder.snapshot;
+		return snapshot == null ? null : snapshot.grammars.get(0);
+	}
+
+	/**
+	 * Returns the Grammar of the token specification of grammar files from
+	 * the snapshot, or null if the snapshot is not available.
+	 */
+	public static Grammar getTokenSpecGrammar() {
+		Snapshot snapshot = SnapshotHolder.snapshot;
+		return snapshot == null ? null : snapshot.grammars.get(1);
+	}
+
+	/**
+	 * Writes a snapshot of the given objects to the given file, along with
+	 * every Language whose TokenTypes the Grammars refer to.
+	 */
+	public static void writeSnapshot(String filePath, Language regExLanguage,
+			Grammar regExGrammar, Grammar tokenSpecGrammar) {
+		// Collect the Languages, starting with the RegExLanguage
+		List<Language> languages = new ArrayList<Language>();
+		languages.add(regExLanguage);
+		List<Grammar> grammars = new ArrayList<Grammar>();
+		grammars.add(regExGrammar);
+		grammars.add(tokenSpecGrammar);
+		for (Grammar grammar : grammars) {
+			for (Rule rule : grammar.rules) {
+				for (List<Object> chain : rule.possibleChildren) {
+					for (Object item : chain) {
+						if (item instanceof TokenType &&
+								languages.contains(
+										((TokenType)item).language) == false) {
+							languages.add(((TokenType)item).language);
+						}
+					}
+				}
+			}
+		}
+
+		try {
+			DataOutputStream stream = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(filePath)));
+			try {
+				stream.writeInt(SNAPSHOT_VERSION);
+				stream.writeUTF(getTokenSpec());
+				stream.writeUTF(getDefinitionDigest());
+				stream.writeInt(languages.size());
+				for (Language language : languages) {
+					writeLanguage(stream, language);
+				}
+				stream.writeInt(grammars.size());
+				for (Grammar grammar : grammars) {
+					writeGrammar(stream, grammar, languages);
+				}
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			ErrorUtilities.throwError(e.toString());
+		}
+	}
+
+	/**
+	 * Writes the TokenTypes of a Language.
+	 */
+	private static void writeLanguage(DataOutputStream stream,
+			Language language) throws IOException {
+		stream.writeInt(language.alphabet.length);
+		stream.writeInt(language.tokenTypes.size());
+		for (TokenType tokenType : language.tokenTypes.values()) {
+			stream.writeUTF(tokenType.name);
+			stream.writeBoolean(tokenType.reservedWord);
+			stream.writeUTF(tokenType.mode.name());
+			writeStateMachine(stream, tokenType.stateMachine);
+		}
+	}
+
+	/**
+	 * Writes a StateMachine, in which States refer to each other by their
+	 * position in the list of States.
+	 */
+	private static void writeStateMachine(DataOutputStream stream,
+			StateMachine stateMachine) throws IOException {
+		// Number the States. Transitions may refer to other State objects of
+		// the same name, which are equal to the ones in the list.
+		Map<State, Integer> identifiers = new HashMap<State, Integer>();
+		for (State state : stateMachine.states) {
+			identifiers.put(state, identifiers.size());
+		}
+
+		stream.writeInt(stateMachine.states.size());
+		stream.writeInt(identifiers.get(stateMachine.initialState));
+		stream.writeInt(identifiers.get(stateMachine.finalState));
+		for (State state : stateMachine.states) {
+			int transitionCount = 0;
+			for (Set<State> destinations :
+					state.charToStateSetMap.values()) {
+				transitionCount += destinations.size();
+			}
+			stream.writeInt(transitionCount);
+			for (Map.Entry<Character, Set<State>> entry :
+					state.charToStateSetMap.entrySet()) {
+				for (State destination : entry.getValue()) {
+					writeCharacter(stream, entry.getKey());
+					stream.writeInt(identifiers.get(destination));
+				}
+			}
+			stream.writeInt(state.epsilonTransitions.size());
+			for (State epsilonState : state.epsilonTransitions) {
+				stream.writeInt(identifiers.get(epsilonState));
+			}
+		}
+
+		stream.writeInt(stateMachine.startingCharacters.size());
+		for (Character c : stateMachine.startingCharacters) {
+			writeCharacter(stream, c);
+		}
+	}
+
+	/**
+	 * Writes the Rules of a Grammar, in which TokenTypes are referred to by
+	 * the position of their Language and their name.
+	 */
+	private static void writeGrammar(DataOutputStream stream, Grammar grammar,
+			List<Language> languages) throws IOException {
+		// Number the Rules
+		List<Rule> rules = new ArrayList<Rule>(grammar.rules);
+		Map<Rule, Integer> identifiers = new HashMap<Rule, Integer>();
+		for (Rule rule : rules) {
+			identifiers.put(rule, identifiers.size());
+		}
+
+		stream.writeUTF(grammar.name);
+		stream.writeInt(rules.size());
+		stream.writeInt(identifiers.get(grammar.root));
+		for (Rule rule : rules) {
+			stream.writeUTF(rule.name);
+		}
+		for (Rule rule : rules) {
+			stream.writeInt(rule.possibleChildren.size());
+			for (List<Object> chain : rule.possibleChildren) {
+				stream.writeInt(chain.size());
+				for (Object item : chain) {
+					if (item instanceof Rule) {
+						stream.writeByte(RULE_ITEM);
+						stream.writeInt(identifiers.get(item));
+					} else {
+						TokenType tokenType = (TokenType)item;
+						stream.writeByte(TOKEN_TYPE_ITEM);
+						stream.writeInt(languages.indexOf(tokenType.language));
+						stream.writeUTF(tokenType.name);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a Character, which may be null.
+	 */
+	private static void writeCharacter(DataOutputStream stream, Character c)
+			throws IOException {
+		stream.writeInt(c == null ? NULL_CHARACTER : c.charValue());
+	}
+
+	/**
+	 * Reads the snapshot, or returns null if it is not available.
+	 */
+	private static Snapshot readSnapshot() {
+		if (Boolean.getBoolean(DISABLE_PROPERTY)) {
+			return null;
+		}
+		InputStream input =
+				SnapshotUtilities.class.getResourceAsStream(SNAPSHOT_FILE);
+		if (input == null) {
+			return null;
+		}
+
+		try {
+			DataInputStream stream = new DataInputStream(
+					new BufferedInputStream(input));
+			try {
+				// Reject snapshots of another format, token specification, or
+				// definition
+				if (stream.readInt() != SNAPSHOT_VERSION ||
+						stream.readUTF().equals(getTokenSpec()) == false ||
+						stream.readUTF().equals(getDefinitionDigest())
+						== false) {
+					LogUtilities.logln("Ignoring a stale bootstrap snapshot.");
+					return null;
+				}
+
+				Snapshot snapshot = new Snapshot();
+				int languageCount = stream.readInt();
+				for (int i = 0; i < languageCount; i++) {
+					snapshot.languages.add(readLanguage(stream));
+				}
+				int grammarCount = stream.readInt();
+				for (int i = 0; i < grammarCount; i++) {
+					snapshot.grammars.add(
+							readGrammar(stream, snapshot.languages));
+				}
+				return snapshot;
+			} finally {
+				stream.close();
+			}
+		} catch (Exception e) {
+			LogUtilities.logln("Ignoring an unreadable bootstrap snapshot: " +
+					e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a Language.
+	 */
+	private static Language readLanguage(DataInputStream stream)
+			throws IOException {
+		int alphabetLength = stream.readInt();
+		Alphabet alphabet = RegExAlphabet.DEFAULT_ALPHABET;
+		if (alphabetLength != alphabet.length) {
+			alphabet = new Alphabet(alphabetLength);
+		}
+
+		// Read the TokenTypes. The _TokenTypes only carry their names,
+		// reserved word status and matching modes.
+		Map<String, _TokenType> tokenTypes = new HashMap<String, _TokenType>();
+		Map<String, StateMachine> stateMachines =
+				new HashMap<String, StateMachine>();
+		int tokenTypeCount = stream.readInt();
+		for (int i = 0; i < tokenTypeCount; i++) {
+			_TokenType tokenType = new _TokenType(stream.readUTF());
+			tokenType.reservedWord = stream.readBoolean();
+			tokenType.matchingMode = MatchingMode.valueOf(stream.readUTF());
+			tokenTypes.put(tokenType.name, tokenType);
+			stateMachines.put(tokenType.name, readStateMachine(stream));
+		}
+		return new Language(alphabet, tokenTypes, stateMachines);
+	}
+
+	/**
+	 * Reads a StateMachine.
+	 */
+	private static StateMachine readStateMachine(DataInputStream stream)
+			throws IOException {
+		// Construct the States
+		int stateCount = stream.readInt();
+		int initialState = stream.readInt();
+		int finalState = stream.readInt();
+		List<State> states = new ArrayList<State>();
+		for (int i = 0; i < stateCount; i++) {
+			states.add(new State(
+					"State" + i,
+					new HashMap<Character, Set<State>>(),
+					new HashMap<State, Set<Character>>(),
+					new HashSet<State>()));
+		}
+
+		// Hydrate their transitions
+		for (State state : states) {
+			int transitionCount = stream.readInt();
+			for (int i = 0; i < transitionCount; i++) {
+				Character c = readCharacter(stream);
+				State destination = states.get(stream.readInt());
+				if (state.charToStateSetMap.containsKey(c) == false) {
+					state.charToStateSetMap.put(c, new HashSet<State>());
+				}
+				state.charToStateSetMap.get(c).add(destination);
+				if (state.stateToCharSetMap.containsKey(destination) == false) {
+					state.stateToCharSetMap.put(destination,
+							new HashSet<Character>());
+				}
+				state.stateToCharSetMap.get(destination).add(c);
+			}
+			int epsilonCount = stream.readInt();
+			for (int i = 0; i < epsilonCount; i++) {
+				state.epsilonTransitions.add(states.get(stream.readInt()));
+			}
+		}
+
+		Set<Character> startingCharacters = new HashSet<Character>();
+		int startingCharacterCount = stream.readInt();
+		for (int i = 0; i < startingCharacterCount; i++) {
+			startingCharacters.add(readCharacter(stream));
+		}
+
+		return new StateMachine(states.get(initialState),
+				states.get(finalState), states, startingCharacters);
+	}
+
+	/**
+	 * Reads a Grammar whose TokenTypes belong to the given Languages.
+	 */
+	private static Grammar readGrammar(DataInputStream stream,
+			List<Language> languages) throws IOException {
+		_Grammar grammar = new _Grammar(stream.readUTF());
+		int ruleCount = stream.readInt();
+		int root = stream.readInt();
+		List<_Rule> rules = new ArrayList<_Rule>();
+		for (int i = 0; i < ruleCount; i++) {
+			rules.add(new _Rule(stream.readUTF()));
+		}
+		for (_Rule rule : rules) {
+			int chainCount = stream.readInt();
+			for (int i = 0; i < chainCount; i++) {
+				rule.addNewList();
+				int itemCount = stream.readInt();
+				for (int j = 0; j < itemCount; j++) {
+					if (stream.readByte() == RULE_ITEM) {
+						rule.addToTail(rules.get(stream.readInt()));
+					} else {
+						Language language = languages.get(stream.readInt());
+						String name = stream.readUTF();
+						TokenType tokenType = language.tokenTypes.get(name);
+						if (tokenType == null) {
+							throw new IOException("Unknown token type " + name);
+						}
+						rule.addToTail(tokenType);
+					}
+				}
+			}
+		}
+		grammar.rules.addAll(rules);
+		grammar.root = rules.get(root);
+		return new Grammar(grammar);
+	}
+
+	/**
+	 * Reads a Character, which may be null.
+	 */
+	private static Character readCharacter(DataInputStream stream)
+			throws IOException {
+		int c = stream.readInt();
+		return c == NULL_CHARACTER ? null : Character.valueOf((char)c);
+	}
+
+	/**
+	 * Returns the contents of the token specification of grammar files.
+	 */
+	private static String getTokenSpec() {
+		return FileUtilities.getStreamContents(
+				SnapshotUtilities.class.getResourceAsStream(TOKEN_SPEC_FILE));
+	}
+
+	/**
+	 * Returns a hexadecimal SHA-1 digest of the class files of the
+	 * DEFINING_CLASSES.
+	 */
+	private static String getDefinitionDigest() throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.toString());
+		}
+		byte[] buffer = new byte[8192];
+		for (Class<?> definingClass : DEFINING_CLASSES) {
+			String name = definingClass.getName();
+			InputStream input = definingClass.getResourceAsStream(
+					name.substring(name.lastIndexOf('.') + 1) + ".class");
+			if (input == null) {
+				throw new IOException("Cannot read the class file of " +
+						name + ".");
+			}
+			try {
+				int length;
+				while ((length = input.read(buffer)) != -1) {
+					digest.update(buffer, 0, length);
+				}
+			} finally {
+				input.close();
+			}
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest()) {
+			result.append(String.format("%02x", b));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * This class holds the Languages and Grammars read from a snapshot.
+	 */
+	private static class Snapshot {
+		private final List<Language> languages = new ArrayList<Language>();
+		private final List<Grammar> grammars = new ArrayList<Grammar>();
+	}
+
+	/**
+	 * This class holds the snapshot, which is read the first time that it is
+	 * referenced.
+	 */
+	private static class SnapshotHolder {
+		private static final Snapshot snapshot = readSnapshot();
+	}
+}
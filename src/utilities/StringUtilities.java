@@ -77,11 +77,15 @@ public class StringUtilities {
 		return 0;
 	}
 	
-	public static void removeLeadingWhitespace(StringBuffer strbuf) {
-		while (strbuf.length() > 0 &&
-				Character.isWhitespace(strbuf.charAt(0)) &&
-				strbuf.charAt(0) != '\n') {
-			strbuf.deleteCharAt(0);
+	/**
+	 * Advances the given Cursor past any whitespace other than newline
+	 * characters.
+	 */
+	public static void removeLeadingWhitespace(Cursor cursor) {
+		while (cursor.hasRemaining() &&
+				Character.isWhitespace(cursor.peek()) &&
+				cursor.peek() != '\n') {
+			cursor.advance(1);
 		}
 	}
 	
@@ -0,0 +1,69 @@
+package utilities;
+
+/**
+ * This class is a view of the characters of another CharSequence from a
+ * start offset up to an end offset. Unlike String.subSequence, it reads
+ * them from the original rather than copying them.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class SubSequence implements CharSequence {
+
+	/**
+	 * The CharSequence that this is a view of.
+	 */
+	private final CharSequence contents;
+
+	/**
+	 * The offset of the first character of this view within the contents.
+	 */
+	private final int start;
+
+	/**
+	 * The offset just past the last character of this view within the
+	 * contents.
+	 */
+	private final int end;
+
+	/**
+	 * Constructs a view of the characters of the contents from start up to
+	 * end.
+	 */
+	public SubSequence(CharSequence contents, int start, int end) {
+		if (start < 0 || end > contents.length() || start > end) {
+			throw new IndexOutOfBoundsException("Start: " + start +
+					", End: " + end + ", Length: " + contents.length());
+		}
+		this.contents = contents;
+		this.start = start;
+		this.end = end;
+	}
+
+	public int length() {
+		return end - start;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= end - start) {
+			throw new IndexOutOfBoundsException("Index: " + index +
+					", Length: " + (end - start));
+		}
+		return contents.charAt(start + index);
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > this.end - this.start || start > end) {
+			throw new IndexOutOfBoundsException("Start: " + start +
+					", End: " + end + ", Length: " + (this.end - this.start));
+		}
+		return new SubSequence(contents, this.start + start,
+				this.start + end);
+	}
+
+	/**
+	 * Returns a copy of the characters of this view.
+	 */
+	public String toString() {
+		return contents.subSequence(start, end).toString();
+	}
+}
@@ -0,0 +1,26 @@
+package utilities;
+
+/**
+ * This is the exception thrown when the tokens of a document do not match
+ * the Grammar they are parsed with.
+ *
+ * @author Trironk Kiatkungwanglai
+ */
+public class SyntaxException extends ParserException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The offset of the first character of the token where the error was
+	 * found, or the length of the contents if it was found at their end.
+	 */
+	public final int offset;
+
+	/**
+	 * Standard constructor.
+	 */
+	public SyntaxException(String message, int offset) {
+		super(message);
+		this.offset = offset;
+	}
+}
@@ -0,0 +1,9 @@
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser buffer -recover | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser tree -recover | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser buffer -recover | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser tree -recover | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_syntax -parser buffer -recover | diff expected_syntax - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_syntax -parser tree -recover | diff expected_syntax - &&
+java -Dparser.snapshot.disable=true -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_syntax -parser buffer -recover | diff expected_syntax - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input_fail -parser buffer -recover | diff expected_fail - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input_fail -parser tree -recover | diff expected_fail -
\ No newline at end of file
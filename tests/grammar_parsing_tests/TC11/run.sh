@@ -0,0 +1,10 @@
+java -jar ../../../GrammarParser.jar ../TC1/tokenSpec ../TC1/grammarSpec ../TC1/input -parser channel | diff ../TC1/expected - &&
+java -jar ../../../GrammarParser.jar ../TC1/tokenSpec ../TC1/grammarSpec ../TC1/input -parser channel -window 3 | diff ../TC1/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser channel | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser channel -window 3 | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser channel -window 1 | diff ../TC4/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser channel | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser channel -window 1 | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser channel -window 2 | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser channel -window 3 | diff expected -
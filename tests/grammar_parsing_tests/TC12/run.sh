@@ -0,0 +1,16 @@
+java -jar ../../../GrammarParser.jar ../TC1/tokenSpec ../TC1/grammarSpec ../TC1/input | diff ../TC1/expected - &&
+java -jar ../../../GrammarParser.jar ../TC1/tokenSpec ../TC1/grammarSpec ../TC1/input -map | diff ../TC1/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -map | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -map | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_crlf | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_crlf -map | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_crlf -map -parser buffer | diff ../TC2/expected - &&
+crlf=$(mktemp) && lf=$(mktemp) && expected=$(mktemp) && trap 'rm -f "$crlf" "$lf" "$expected"' EXIT &&
+awk 'BEGIN { for (i = 0; i < 50000; i++) printf "1é2 3中4\r\n5😀6\r\n7§8\r" }' > "$crlf" &&
+awk 'BEGIN { for (i = 0; i < 50000; i++) printf "1é2 3中4\n5😀6\n7§8\n" }' > "$lf" &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec "$lf" -parser channel > "$expected" &&
+tail -n 4 "$expected" | diff expected_tail - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec "$crlf" | diff "$expected" - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec "$crlf" -map -parser buffer | diff "$expected" -
\ No newline at end of file
@@ -0,0 +1,3 @@
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser listener | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input_fail | sed '/^Stack trace:/,$d' | diff expected_fail -
\ No newline at end of file
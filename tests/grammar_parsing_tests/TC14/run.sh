@@ -0,0 +1,3 @@
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser buffer | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser channel -window 2 | diff expected -
\ No newline at end of file
@@ -0,0 +1,4 @@
+input=$(mktemp) && trap 'rm -f "$input"' EXIT &&
+awk 'BEGIN { for (i = 0; i < 140000; i++) printf "a b "; print "" }' > "$input" &&
+java -Xss512k -jar ../../../GrammarParser.jar tokenSpec grammarSpec "$input" | tail -n 3 | diff expected_tail - &&
+java -Xss512k -jar ../../../GrammarParser.jar tokenSpec grammarSpec "$input" -parser buffer | tail -n 3 | diff expected_tail -
\ No newline at end of file
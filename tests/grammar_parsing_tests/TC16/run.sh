@@ -0,0 +1,4 @@
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec input | diff expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec input -parser buffer | diff expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec input_syntax -parser buffer | sed '/^Stack trace:/,$d' | diff expected_syntax - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec input_lexical -parser buffer | sed '/^Stack trace:/,$d' | diff expected_lexical -
\ No newline at end of file
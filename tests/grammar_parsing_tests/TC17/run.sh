@@ -0,0 +1,7 @@
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -analyze | diff expected_analysis - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser earley | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser auto | diff expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -analyze | diff expected_analysis_TC4 - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser auto | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC5/tokenSpec ../TC5/grammarSpec_nested ../TC5/input_nested -analyze | diff expected_analysis_TC5 - &&
+java -jar ../../../GrammarParser.jar ../TC5/tokenSpec ../TC5/grammarSpec_nested ../TC5/input_nested -parser auto | diff ../TC5/expected_nested -
\ No newline at end of file
@@ -0,0 +1,3 @@
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -map | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -map -parser listener | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -map -parser buffer | diff expected -
\ No newline at end of file
@@ -0,0 +1,11 @@
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -map | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -map -parser buffer | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -map -parser listener | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -parser listener | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -parser channel | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -parser channel -window 1 | diff ../TC11/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input_edit | diff expected_edit - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -edit 4 3 "3x4 5y6" | diff expected_edit - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -map -edit 4 3 "3x4 5y6" | diff expected_edit - &&
+java -Dfile.encoding=UTF-8 -jar ../../../GrammarParser.jar ../TC11/tokenSpec ../TC11/grammarSpec input -map -edit 4 3 "3x4 5y6" -v | grep '^Reparse:' | diff expected_reuse -
\ No newline at end of file
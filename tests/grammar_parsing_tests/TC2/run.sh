@@ -1 +1 @@
-java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input
\ No newline at end of file
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input | diff expected -
@@ -0,0 +1 @@
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input | diff expected -
@@ -0,0 +1,11 @@
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser packrat | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser packrat -memo 1 | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser packrat | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser packrat -memo 1 | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser packrat | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser packrat -memo 1 | diff expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec_nested input_nested -parser earley | diff expected_nested - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec_nested input_nested -parser packrat -memo 1 | diff expected_nested - &&
+(java -jar ../../../GrammarParser.jar tokenSpec grammarSpec_nested input_nested -parser packrat -v | grep '^Memo:' &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec_nested input_nested -parser packrat -memo 2 -v | grep '^Memo:' &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec_nested input_nested -parser packrat -memo 1 -v | grep '^Memo:') | diff expected_memo -
\ No newline at end of file
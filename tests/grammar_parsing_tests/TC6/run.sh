@@ -0,0 +1,3 @@
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser earley | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser earley | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar tokenSpec grammarSpec input -parser earley -forest | diff expected -
\ No newline at end of file
@@ -0,0 +1,5 @@
+java -jar ../../../GrammarParser.jar ../TC1/tokenSpec ../TC1/grammarSpec ../TC1/input -parser listener | diff ../TC1/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -parser listener | diff ../TC2/expected - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -parser listener | diff ../TC4/expected - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input_fail -parser listener | diff expected_fail - &&
+java -Dparser.snapshot.disable=true -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input_fail -parser listener | diff expected_fail -
\ No newline at end of file
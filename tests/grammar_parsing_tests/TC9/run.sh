@@ -0,0 +1,14 @@
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec input_insert | diff expected_insert - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -edit 2 0 " -7 8" | diff expected_insert - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -edit 2 0 " -7 8" -tree | diff expected_insert_tree - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec input_delete | diff expected_delete - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -edit 3 1 "" | diff expected_delete - &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -edit 3 1 "" -tree | diff expected_delete_tree - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec input_replace | diff expected_replace - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -edit 24 7 "zzz9999" | diff expected_replace - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -edit 24 7 "zzz9999" -tree | diff expected_replace_tree - &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -edit 0 5 "hello" | diff ../TC2/expected - &&
+(java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -edit 2 0 " -7 8" -v | grep '^Reparse:' &&
+java -jar ../../../GrammarParser.jar ../TC4/tokenSpec ../TC4/grammarSpec ../TC4/input -edit 3 1 "" -v | grep '^Reparse:' &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -edit 24 7 "zzz9999" -v | grep '^Reparse:' &&
+java -jar ../../../GrammarParser.jar ../TC2/tokenSpec ../TC2/grammarSpec ../TC2/input -edit 0 5 "hello" -v | grep '^Reparse:') | diff expected_reuse -
\ No newline at end of file
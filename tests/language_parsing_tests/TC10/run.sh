@@ -0,0 +1,3 @@
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode NFA | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode LAZY_DFA | diff expected -
\ No newline at end of file
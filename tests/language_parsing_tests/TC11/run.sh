@@ -0,0 +1,7 @@
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode NFA | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode LAZY_DFA -cache 2 | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -bytes | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input input_fail | diff expected_fail - &&
+java -jar ../../../LanguageParser.jar languageSpec input input_fail -mode NFA | diff expected_fail - &&
+java -jar ../../../LanguageParser.jar languageSpec input input_fail -bytes | diff expected_fail -
\ No newline at end of file
@@ -0,0 +1,12 @@
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_crlf | diff ../TC7/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_crlf -mode NFA | diff ../TC7/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_crlf -stream | diff ../TC7/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_crlf -bytes | diff ../TC7/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_eof | diff ../TC7/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_eof -stream | diff ../TC7/expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec input_eof -bytes | diff expected_eof_bytes - &&
+input=$(mktemp) && expected=$(mktemp) && trap 'rm -f "$input" "$expected"' EXIT &&
+awk 'BEGIN { for (i = 0; i < 30000; i++) printf "caf 1é2 na 3ï4 ve\r\n5中6 end 7§8\r\n" }' > "$input" &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec "$input" -stream | tail -n 3 | diff expected_tail - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec "$input" | tail -n 3 > "$expected" &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar ../TC7/languageSpec "$input" -bytes | tail -n 3 | diff "$expected" -
\ No newline at end of file
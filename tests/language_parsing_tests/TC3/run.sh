@@ -1 +1 @@
-java -jar ../../../LanguageParser.jar languageSpec input
\ No newline at end of file
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected -
\ No newline at end of file
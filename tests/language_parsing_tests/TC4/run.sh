@@ -0,0 +1,3 @@
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode NFA | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode '$WILD=NFA' | diff expected -
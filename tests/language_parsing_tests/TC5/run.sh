@@ -0,0 +1,3 @@
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode LAZY_DFA -cache 4 | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode '$TAIL=LAZY_DFA' -cache 2 | diff expected -
@@ -0,0 +1,2 @@
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode NFA | diff expected -
@@ -0,0 +1,4 @@
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar languageSpec input -bytes | diff expected - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar languageSpec input input_fail | diff expected_fail - &&
+java -Dfile.encoding=UTF-8 -jar ../../../LanguageParser.jar languageSpec input input_fail -bytes | diff expected_fail -
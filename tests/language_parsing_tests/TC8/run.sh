@@ -0,0 +1,11 @@
+java -jar ../../../LanguageParser.jar ../TC1/languageSpec ../TC1/input | diff ../TC1/expected - &&
+java -jar ../../../LanguageParser.jar ../TC1/languageSpec ../TC1/input -stream | diff ../TC1/expected - &&
+java -jar ../../../LanguageParser.jar ../TC2/languageSpec ../TC2/input | diff ../TC2/expected - &&
+java -jar ../../../LanguageParser.jar ../TC2/languageSpec ../TC2/input -stream | diff expected_stream_TC2 - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec ../TC3/input | diff ../TC3/expected - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec ../TC3/input -stream | diff ../TC3/expected - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec ../TC3/input input_fail | diff expected_fail - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec ../TC3/input input_fail -stream | diff expected_fail - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec input_fail -stream 2>&1 | sed '/^Stack trace:/,$d' | diff expected_stream_fail - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec input_fail -stream -limit 2 | diff expected_limit - &&
+java -jar ../../../LanguageParser.jar ../TC3/languageSpec ../TC3/input input_fail -stream -limit 2 | diff expected_limit_fail -
\ No newline at end of file
@@ -0,0 +1,5 @@
+java -jar ../../../LanguageParser.jar languageSpec input | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -mode NFA | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input -stream | diff expected - &&
+java -jar ../../../LanguageParser.jar languageSpec input input_fail | diff expected_fail - &&
+java -jar ../../../LanguageParser.jar languageSpec input input_fail -stream | diff expected_fail -
\ No newline at end of file